@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The interval between the rounds of a periodic protocol, adapted to the work the rounds accomplish and bounded by a
+ * minimum and maximum interval.
+ * <p>
+ * The interval stretches geometrically toward the maximum with each round that accomplishes nothing, shrinks
+ * geometrically toward the minimum with each round that does, and returns immediately to the minimum when new work
+ * arrives. The cadence starts at the minimum interval, and a cadence with equal bounds is a fixed interval.
+ *
+ * @author hal.hildebrand
+ */
+public class AdaptiveCadence {
+    public static final double DEFAULT_SHRINK  = 0.5;
+    public static final double DEFAULT_STRETCH = 1.5;
+
+    private final AtomicLong interval;
+    private final long       max;
+    private final long       min;
+    private final double     shrink;
+    private final double     stretch;
+
+    /**
+     * A fixed cadence
+     */
+    public AdaptiveCadence(Duration interval) {
+        this(interval, interval);
+    }
+
+    public AdaptiveCadence(Duration min, Duration max) {
+        this(min, max, DEFAULT_STRETCH, DEFAULT_SHRINK);
+    }
+
+    /**
+     * @param min     - the minimum interval, > 0
+     * @param max     - the maximum interval, >= min
+     * @param stretch - the factor the interval grows by for each round that accomplishes nothing, >= 1
+     * @param shrink  - the factor the interval is reduced by for each round that accomplishes work, 0 < shrink <= 1
+     */
+    public AdaptiveCadence(Duration min, Duration max, double stretch, double shrink) {
+        if (min.isNegative() || min.isZero()) {
+            throw new IllegalArgumentException("min must be > 0 : " + min);
+        }
+        if (max.compareTo(min) < 0) {
+            throw new IllegalArgumentException("max must be >= min : " + max + " < " + min);
+        }
+        if (stretch < 1.0) {
+            throw new IllegalArgumentException("stretch must be >= 1 : " + stretch);
+        }
+        if (shrink <= 0.0 || shrink > 1.0) {
+            throw new IllegalArgumentException("shrink must be > 0 and <= 1 : " + shrink);
+        }
+        this.min = min.toNanos();
+        this.max = max.toNanos();
+        this.stretch = stretch;
+        this.shrink = shrink;
+        this.interval = new AtomicLong(this.min);
+    }
+
+    /**
+     * A round accomplished work: shrink the interval toward the minimum
+     *
+     * @return the adapted interval
+     */
+    public Duration active() {
+        return Duration.ofNanos(interval.updateAndGet(i -> Math.max(min, (long) (i * shrink))));
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(max);
+    }
+
+    public Duration getMin() {
+        return Duration.ofNanos(min);
+    }
+
+    /**
+     * A round accomplished nothing: stretch the interval toward the maximum
+     *
+     * @return the adapted interval
+     */
+    public Duration idle() {
+        return Duration.ofNanos(interval.updateAndGet(i -> (long) Math.min(max, Math.ceil(i * stretch))));
+    }
+
+    /**
+     * @return the current interval between rounds
+     */
+    public Duration interval() {
+        return Duration.ofNanos(interval.get());
+    }
+
+    /**
+     * New work has arrived: return the interval to the minimum
+     *
+     * @return the adapted interval
+     */
+    public Duration pulse() {
+        interval.set(min);
+        return Duration.ofNanos(min);
+    }
+
+    /**
+     * Adapt the interval to the work accomplished by a round
+     *
+     * @param volume - the amount of work accomplished by the round
+     * @return the adapted interval
+     */
+    public Duration round(long volume) {
+        return volume > 0 ? active() : idle();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.netflix.concurrency.limits.Limit;
+import com.netflix.concurrency.limits.MetricRegistry;
+import com.netflix.concurrency.limits.executors.BlockingAdaptiveExecutor;
+import com.netflix.concurrency.limits.executors.UncheckedTimeoutException;
+import com.netflix.concurrency.limits.internal.EmptyMetricRegistry;
+import com.netflix.concurrency.limits.limit.AIMDLimit;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Queue delay aware admission control for the dispatch of a routing label's inbound calls. Dispatch is bounded by a
+ * BlockingAdaptiveExecutor, which rejects calls once the adaptive concurrency limit is reached. In addition, the
+ * sojourn time of each call - the time it spent queued before the executor ran it - is controlled CoDel style: once
+ * sojourn times have stayed above the target for an interval, calls are shed at an increasing rate until the sojourn
+ * time drops below the target again. Shed calls are reported to the limiter as dropped, reducing the concurrency limit.
+ *
+ * @author hal.hildebrand
+ */
+public class AdmissionExecutor {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionExecutor.class);
+
+    private final BlockingAdaptiveExecutor      delegate;
+    private final AtomicInteger                 depth    = new AtomicInteger();
+    private final long                          interval;
+    private final String                        label;
+    private final ReentrantLock                 lock     = new ReentrantLock();
+    private final MetricRegistry.Counter        rejected;
+    private final MetricRegistry.Counter        shed;
+    private final MetricRegistry.SampleListener sojourn;
+    private final long                          target;
+    private       int                           count;
+    private       long                          dropNext;
+    private       boolean                       dropping = false;
+    private       long                          firstAbove;
+
+    public AdmissionExecutor(String label, Executor executor, Limit limit, Duration target, Duration interval,
+                             MetricRegistry registry) {
+        this.label = label;
+        this.target = target.toNanos();
+        this.interval = interval.toNanos();
+        delegate = BlockingAdaptiveExecutor.newBuilder()
+                                           .name(label)
+                                           .executor(executor)
+                                           .metricRegistry(registry)
+                                           .limiter(SimpleLimiter.newBuilder()
+                                                                 .named(label)
+                                                                 .metricRegistry(registry)
+                                                                 .limit(limit)
+                                                                 .build())
+                                           .build();
+        registry.gauge("dispatch.queue.depth", () -> depth.get(), "label", label);
+        sojourn = registry.distribution("dispatch.sojourn", "label", label);
+        shed = registry.counter("dispatch.shed", "label", label);
+        rejected = registry.counter("dispatch.rejected", "label", label);
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Execute the command, unless admission is denied, in which case the shed action is run instead
+     */
+    public void execute(Runnable command, Runnable onShed) {
+        final var enqueued = System.nanoTime();
+        depth.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                depth.decrementAndGet();
+                final var now = System.nanoTime();
+                final var queued = now - enqueued;
+                sojourn.addSample(queued);
+                if (shouldDrop(queued, now)) {
+                    log.trace("Shedding: {} sojourn: {} target: {}", label, queued, target);
+                    shed.increment();
+                    onShed.run();
+                    throw new UncheckedTimeoutException("Sojourn time exceeded", null);
+                }
+                command.run();
+            });
+        } catch (RejectedExecutionException e) {
+            depth.decrementAndGet();
+            log.trace("Rejected: {} depth: {}", label, depth.get());
+            rejected.increment();
+            onShed.run();
+        }
+    }
+
+    /**
+     * @return the number of calls queued for dispatch
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * The CoDel control law, evaluated as each call is dequeued
+     */
+    private boolean shouldDrop(long queued, long now) {
+        lock.lock();
+        try {
+            if (queued < target) {
+                firstAbove = 0;
+                dropping = false;
+                return false;
+            }
+            if (firstAbove == 0) {
+                firstAbove = now + interval;
+                return false;
+            }
+            if (now < firstAbove) {
+                return false;
+            }
+            if (!dropping) {
+                dropping = true;
+                // resume near the previous drop rate if we were dropping recently
+                count = count > 2 && now - dropNext < 16 * interval ? count - 2 : 1;
+                dropNext = controlLaw(now);
+                return true;
+            }
+            if (now >= dropNext) {
+                count++;
+                dropNext = controlLaw(dropNext);
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long controlLaw(long t) {
+        return t + (long) (interval / Math.sqrt(count));
+    }
+
+    public static class Builder {
+        private Duration        interval = Duration.ofMillis(100);
+        private Supplier<Limit> limit    = () -> AIMDLimit.newBuilder()
+                                                          .initialLimit(100)
+                                                          .maxLimit(1000)
+                                                          .timeout(500, TimeUnit.MILLISECONDS)
+                                                          .build();
+        private MetricRegistry  metrics  = EmptyMetricRegistry.INSTANCE;
+        private Duration        target   = Duration.ofMillis(5);
+
+        public AdmissionExecutor build(String label, Executor executor) {
+            return new AdmissionExecutor(label, executor, limit.get(), target, interval, metrics);
+        }
+
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public Builder setInterval(Duration interval) {
+            this.interval = interval;
+            return this;
+        }
+
+        public Supplier<Limit> getLimit() {
+            return limit;
+        }
+
+        public Builder setLimit(Supplier<Limit> limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public MetricRegistry getMetrics() {
+            return metrics;
+        }
+
+        public Builder setMetrics(MetricRegistry metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        public Duration getTarget() {
+            return target;
+        }
+
+        public Builder setTarget(Duration target) {
+            this.target = target;
+            return this;
+        }
+    }
+}
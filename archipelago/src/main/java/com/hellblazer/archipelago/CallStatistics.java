@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.hellblazer.archipelago.membership.PeerLoad;
+import com.hellblazer.cryptography.hash.Digest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per member statistics of the calls made through the channels of a ServerConnectionCache: the number of calls in
+ * flight, and the exponentially weighted moving average of their round trip times. Serves as the PeerLoad feedback for
+ * load aware PeerSelectors
+ *
+ * @author hal.hildebrand
+ */
+public class CallStatistics implements PeerLoad {
+    private static final double DEFAULT_WEIGHT = 0.2;
+
+    private final Map<Digest, Calls> calls = new ConcurrentHashMap<>();
+    private final double             weight;
+
+    public CallStatistics() {
+        this(DEFAULT_WEIGHT);
+    }
+
+    /**
+     * @param weight - the weight of each new round trip time in the moving average, 0 < weight <= 1
+     */
+    public CallStatistics(double weight) {
+        if (weight <= 0.0 || weight > 1.0) {
+            throw new IllegalArgumentException("weight must be > 0 and <= 1 : " + weight);
+        }
+        this.weight = weight;
+    }
+
+    /**
+     * A call to the member has completed with a response from the member, successful or not
+     *
+     * @param nanos - the round trip time of the call
+     */
+    public void completed(Digest member, long nanos) {
+        var current = calls(member);
+        current.inFlight.updateAndGet(i -> Math.max(0, i - 1));
+        current.latency.updateAndGet(
+        previous -> previous < 0 ? nanos : Math.round(previous + weight * (nanos - previous)));
+    }
+
+    /**
+     * A call to the member has ended without a response from the member - e.g. unavailable, past its deadline or
+     * cancelled. The call is no longer in flight, but its duration is not a round trip time, and is not averaged into
+     * the latency, so that members failing fast do not appear fast
+     */
+    public void failed(Digest member) {
+        calls(member).inFlight.updateAndGet(i -> Math.max(0, i - 1));
+    }
+
+    @Override
+    public int inFlight(Digest member) {
+        var current = calls.get(member);
+        return current == null ? 0 : current.inFlight.get();
+    }
+
+    @Override
+    public long latency(Digest member) {
+        var current = calls.get(member);
+        return current == null ? -1 : current.latency.get();
+    }
+
+    /**
+     * Forget the statistics of the member, e.g. on its departure from the view, so that the statistics of departed
+     * members do not accumulate
+     */
+    public void remove(Digest member) {
+        calls.remove(member);
+    }
+
+    /**
+     * A call to the member has started
+     */
+    public void started(Digest member) {
+        calls(member).inFlight.incrementAndGet();
+    }
+
+    private Calls calls(Digest member) {
+        return calls.computeIfAbsent(member, m -> new Calls());
+    }
+
+    private static class Calls {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong    latency  = new AtomicLong(-1);
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for the operations of the ServerConnectionCache. The event duration covers the operation,
+ * including time spent waiting on the cache lock.
+ *
+ * @author hal.hildebrand
+ */
+@Name("com.hellblazer.archipelago.ConnectionCache")
+@Label("Connection Cache")
+@Category({ "Archipelago", "Connections" })
+@Description("Borrow, release, open and close of cached server connections")
+@StackTrace(false)
+public class ConnectionCacheEvent extends Event {
+    public static final String BORROW  = "borrow";
+    public static final String CLOSE   = "close";
+    public static final String OPEN    = "open";
+    public static final String RELEASE = "release";
+
+    @Label("Borrowed")
+    @Description("Outstanding borrows of the connection after the operation")
+    public int    borrowed;
+    @Label("Context")
+    public String context;
+    @Label("Member")
+    public String member;
+    @Label("Open Connections")
+    public int    openConnections;
+    @Label("Operation")
+    public String operation;
+}
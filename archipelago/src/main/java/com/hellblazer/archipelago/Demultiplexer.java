@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -20,7 +21,8 @@ import java.util.function.Function;
 
 /**
  * GRPC demultiplexer. Maps from one inbound endpoint to multiple outbound servers via a routing function. Supplied
- * Metadata key provides the routing key.
+ * Metadata key provides the routing key. Routes replicated across several endpoints are balanced by a RouteBalancer.
+ * The routed traffic may optionally be recorded by a TrafficCapture, for replay by TrafficReplay.
  *
  * @author hal.hildebrand
  */
@@ -33,6 +35,17 @@ public class Demultiplexer {
 
     public Demultiplexer(ServerBuilder<?> serverBuilder, Metadata.Key<String> routing,
                          Function<String, ManagedChannel> dmux) {
+        this(serverBuilder, routing, dmux, null);
+    }
+
+    /**
+     * Demultiplexer recording the routed traffic in the supplied capture, if not null
+     */
+    public Demultiplexer(ServerBuilder<?> serverBuilder, Metadata.Key<String> routing,
+                         Function<String, ManagedChannel> dmux, TrafficCapture capture) {
+        if (capture != null) {
+            serverBuilder.intercept(capture);
+        }
         var serverInterceptor = new ServerInterceptor() {
             @Override
             public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
@@ -56,6 +69,12 @@ public class Demultiplexer {
         }.newRegistry()).build();
     }
 
+    public <T> Demultiplexer(ServerBuilder<?> serverBuilder, Metadata.Key<String> routing,
+                             Function<String, List<T>> resolver, Function<T, ManagedChannel> connector,
+                             RouteBalancer.Policy policy) {
+        this(serverBuilder, routing, RouteBalancer.newBuilder().setPolicy(policy).build(resolver, connector));
+    }
+
     public void close(Duration await) {
         if (!started.compareAndSet(true, false)) {
             return;
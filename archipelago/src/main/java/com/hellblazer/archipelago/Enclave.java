@@ -72,7 +72,7 @@ public class Enclave implements RouterSupplier {
 
     @Override
     public RouterImpl router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
-                             LimitsRegistry limitsRegistry) {
+                             LimitsRegistry limitsRegistry, AdmissionExecutor.Builder admission) {
         var limitsBuilder = new GrpcServerLimiterBuilder().limit(serverLimit.get());
         if (limitsRegistry != null) {
             limitsBuilder.metricRegistry(limitsRegistry);
@@ -101,7 +101,7 @@ public class Enclave implements RouterSupplier {
                                   public Digest getFrom() {
                                       return Router.SERVER_CLIENT_ID_KEY.get();
                                   }
-                              }, contextRegistration, executor);
+                              }, contextRegistration, executor, admission);
     }
 
     private ManagedChannel connectTo(Member to) {
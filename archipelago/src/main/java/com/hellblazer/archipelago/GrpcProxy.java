@@ -55,7 +55,7 @@ abstract public class GrpcProxy implements ServerCallHandler<byte[], byte[]> {
 
     protected abstract ManagedChannel getChannel();
 
-    private static class ByteMarshaller implements MethodDescriptor.Marshaller<byte[]> {
+    static class ByteMarshaller implements MethodDescriptor.Marshaller<byte[]> {
         @Override
         public byte[] parse(InputStream stream) {
             try {
@@ -67,7 +67,7 @@ public class LocalServer implements RouterSupplier {
 
     @Override
     public RouterImpl router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
-                             LimitsRegistry limitsRegistry) {
+                             LimitsRegistry limitsRegistry, AdmissionExecutor.Builder admission) {
         String name = String.format(NAME_TEMPLATE, prefix, qb64(from.getId()));
         var limitsBuilder = new GrpcServerLimiterBuilder().limit(serverLimit.get());
         if (limitsRegistry != null) {
@@ -87,10 +87,11 @@ public class LocalServer implements RouterSupplier {
             public Digest getFrom() {
                 return Router.SERVER_CLIENT_ID_KEY.get();
             }
-        }, executor);
+        }, d -> {
+        }, executor, admission);
     }
 
-    private ManagedChannel connectTo(Member to) {
+    protected InProcessChannelBuilder channelFor(Member to) {
         final var name = String.format(NAME_TEMPLATE, prefix, qb64(to.getId()));
         final InProcessChannelBuilder builder = InProcessChannelBuilder.forName(name)
                                                                        .executor(executor)
@@ -98,7 +99,11 @@ public class LocalServer implements RouterSupplier {
                                                                        .intercept(clientInterceptor);
         disableTrash(builder);
         InternalInProcessChannelBuilder.setStatsEnabled(builder, false);
-        return builder.build();
+        return builder;
+    }
+
+    private ManagedChannel connectTo(Member to) {
+        return channelFor(to).build();
     }
 
     private void disableTrash(final InProcessChannelBuilder builder) {
@@ -11,6 +11,7 @@ import com.hellblazer.archipelago.membership.Member;
 import com.hellblazer.cryptography.hash.Digest;
 import io.grpc.*;
 import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
 
 import java.util.concurrent.TimeUnit;
 
@@ -67,9 +68,23 @@ public class ManagedServerChannel extends ManagedChannel {
         delegate.getChannel().newCall(methodDescriptor, callOptions)) {
             @Override
             public void start(Listener<ResponseT> responseListener, Metadata headers) {
+                var target = delegate.getMember().getId();
                 headers.put(Router.METADATA_CONTEXT_KEY, qb64(context));
-                headers.put(Router.METADATA_TARGET_KEY, qb64(delegate.getMember().getId()));
-                super.start(responseListener, headers);
+                headers.put(Router.METADATA_TARGET_KEY, qb64(target));
+                var started = System.nanoTime();
+                delegate.started();
+                try {
+                    super.start(new SimpleForwardingClientCallListener<ResponseT>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            delegate.completed(System.nanoTime() - started, status);
+                            super.onClose(status, trailers);
+                        }
+                    }, headers);
+                } catch (RuntimeException e) {
+                    delegate.completed(System.nanoTime() - started, Status.fromThrowable(e));
+                    throw e;
+                }
             }
         };
     }
@@ -134,7 +134,7 @@ public class MtlsServer implements RouterSupplier {
 
     @Override
     public RouterImpl router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
-                             LimitsRegistry limitsRegistry) {
+                             LimitsRegistry limitsRegistry, AdmissionExecutor.Builder admission) {
         var limitsBuilder = new GrpcServerLimiterBuilder().limit(serverLimit.get());
         if (limitsRegistry != null) {
             limitsBuilder.metricRegistry(limitsRegistry);
@@ -157,7 +157,8 @@ public class MtlsServer implements RouterSupplier {
                 throw new IllegalStateException("Unable to derive member id from cert", e.getCause());
             }
         };
-        return new RouterImpl(from, serverBuilder, cacheBuilder.setFactory(t -> connectTo(t)), identity);
+        return new RouterImpl(from, serverBuilder, cacheBuilder.setFactory(t -> connectTo(t)), identity, d -> {
+        }, r -> r.run(), admission);
     }
 
     private ManagedChannel connectTo(Member to) {
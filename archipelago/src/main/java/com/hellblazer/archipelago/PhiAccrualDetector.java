@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.hellblazer.archipelago.membership.Suspicion;
+import com.hellblazer.cryptography.hash.Digest;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Latency driven phi accrual failure suspicion, fed by the outcomes of the calls made through the channels of a
+ * ServerConnectionCache.
+ * <p>
+ * For each member the detector keeps a moving estimate of the mean and variance of the round trip time of its calls,
+ * and notes when it began waiting on the member: the start of a call while none were outstanding, or the last failed
+ * call. Phi is the suspicion that the member has failed, given that no response has arrived in the time waited,
+ * -log10(P(rtt > waited)) under a normal approximation of the round trip times. A member with no outstanding or failed
+ * calls has a phi of 0, so idle members are never suspected. Any response, successful or not, is evidence that the
+ * member is alive; calls failing as unavailable or past their deadline are not.
+ * <p>
+ * The member is suspected while phi is at or above the threshold. Install the detector on a Context with
+ * setSuspicion(Suspicion) to have ring traversals route around suspected members.
+ * <p>
+ * Routing around a suspected member starves it of the calls whose responses would clear the suspicion, so a failure
+ * counts toward suspicion only for the quarantine: once a failed member has waited the quarantine with no calls
+ * outstanding, its failure expires and its phi returns to 0. Ring traversals also probe suspected members at a low
+ * rate, so a member that has recovered is usually cleared by a response well before its quarantine expires.
+ *
+ * @author hal.hildebrand
+ */
+public class PhiAccrualDetector implements Suspicion {
+    public static final  double   DEFAULT_THRESHOLD   = 8.0;
+    private static final Duration DEFAULT_FIRST_RTT   = Duration.ofMillis(500);
+    private static final Duration DEFAULT_MIN_STD_DEV = Duration.ofMillis(10);
+    private static final Duration DEFAULT_QUARANTINE  = Duration.ofSeconds(30);
+    private static final double   DEFAULT_WEIGHT      = 0.1;
+
+    private final LongSupplier         clock;
+    private final double               firstRtt;
+    private final Map<Digest, History> histories = new ConcurrentHashMap<>();
+    private final double               minStdDev;
+    private final long                 quarantine;
+    private final double               threshold;
+    private final double               weight;
+
+    public PhiAccrualDetector() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public PhiAccrualDetector(double threshold) {
+        this(threshold, DEFAULT_FIRST_RTT, DEFAULT_MIN_STD_DEV, DEFAULT_WEIGHT, System::nanoTime);
+    }
+
+    public PhiAccrualDetector(double threshold, Duration firstRtt, Duration minStdDev, double weight,
+                              LongSupplier clock) {
+        this(threshold, firstRtt, minStdDev, weight, DEFAULT_QUARANTINE, clock);
+    }
+
+    /**
+     * @param threshold  - the phi at which members are suspected
+     * @param firstRtt   - the round trip time assumed for members with no recorded responses
+     * @param minStdDev  - the minimum standard deviation of round trip times, so that members with very regular
+     *                   responses are not suspected on slight delays
+     * @param weight     - the weight of each new round trip time in the moving estimates, 0 < weight <= 1
+     * @param quarantine - the time a failure counts toward the suspicion of a member with no calls outstanding
+     * @param clock      - the source of nanosecond time
+     */
+    public PhiAccrualDetector(double threshold, Duration firstRtt, Duration minStdDev, double weight,
+                              Duration quarantine, LongSupplier clock) {
+        if (weight <= 0.0 || weight > 1.0) {
+            throw new IllegalArgumentException("weight must be > 0 and <= 1 : " + weight);
+        }
+        this.threshold = threshold;
+        this.firstRtt = firstRtt.toNanos();
+        this.minStdDev = minStdDev.toNanos();
+        this.weight = weight;
+        this.quarantine = quarantine.toNanos();
+        this.clock = clock;
+    }
+
+    /**
+     * A call to the member was cancelled by the caller, which is evidence of neither failure nor liveness
+     */
+    public void cancelled(Digest member) {
+        history(member).cancelled();
+    }
+
+    /**
+     * A call to the member failed without a response from the member
+     */
+    public void failed(Digest member) {
+        history(member).failed(clock.getAsLong());
+    }
+
+    @Override
+    public boolean isSuspected(Digest member) {
+        return phi(member) >= threshold;
+    }
+
+    /**
+     * @return the current suspicion of the member's failure
+     */
+    public double phi(Digest member) {
+        var history = histories.get(member);
+        return history == null ? 0.0 : history.phi(clock.getAsLong());
+    }
+
+    /**
+     * Forget the history of the member, e.g. on its departure from the view, so that the histories of departed members
+     * do not accumulate
+     */
+    public void remove(Digest member) {
+        histories.remove(member);
+    }
+
+    /**
+     * The member responded to a call
+     *
+     * @param nanos - the round trip time of the call
+     */
+    public void responded(Digest member, long nanos) {
+        history(member).responded(clock.getAsLong(), nanos);
+    }
+
+    /**
+     * A call to the member started
+     */
+    public void started(Digest member) {
+        history(member).started(clock.getAsLong());
+    }
+
+    private History history(Digest member) {
+        return histories.computeIfAbsent(member, m -> new History());
+    }
+
+    private class History {
+        private boolean failing;
+        private int     inFlight;
+        private double  mean     = firstRtt;
+        private long    samples;
+        private double  variance = (firstRtt / 4) * (firstRtt / 4);
+        private long    waiting  = -1;
+
+        private synchronized void cancelled() {
+            inFlight = Math.max(0, inFlight - 1);
+            if (inFlight == 0 && !failing) {
+                waiting = -1;
+            }
+        }
+
+        private synchronized void failed(long now) {
+            inFlight = Math.max(0, inFlight - 1);
+            failing = true;
+            if (waiting < 0) {
+                waiting = now;
+            }
+        }
+
+        private synchronized double phi(long now) {
+            if (waiting < 0) {
+                return 0.0;
+            }
+            if (failing && inFlight == 0 && now - waiting >= quarantine) {
+                failing = false;
+                waiting = -1;
+                return 0.0;
+            }
+            var stdDev = Math.max(Math.sqrt(variance), minStdDev);
+            var y = ((now - waiting) - mean) / stdDev;
+            var e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            return y > 0 ? -Math.log10(e / (1.0 + e)) : -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+
+        private synchronized void responded(long now, long rtt) {
+            inFlight = Math.max(0, inFlight - 1);
+            if (samples++ == 0) {
+                mean = rtt;
+                variance = (rtt / 4.0) * (rtt / 4.0);
+            } else {
+                var delta = rtt - mean;
+                mean += weight * delta;
+                variance = (1.0 - weight) * (variance + weight * delta * delta);
+            }
+            failing = false;
+            waiting = inFlight > 0 ? now : -1;
+        }
+
+        private synchronized void started(long now) {
+            if (inFlight++ == 0 && waiting < 0) {
+                waiting = now;
+            }
+        }
+    }
+}
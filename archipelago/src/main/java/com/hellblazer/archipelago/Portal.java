@@ -45,7 +45,17 @@ public class Portal<To extends Member> {
     public Portal(Digest agent, ServerBuilder<?> inbound, Function<String, ManagedChannel> outbound,
                   DomainSocketAddress bridge, Executor executor, Duration keepAlive,
                   Function<String, DomainSocketAddress> router) {
-        this.inbound = new Demultiplexer(inbound, Router.METADATA_CONTEXT_KEY, d -> handler(router.apply(d)));
+        this(agent, inbound, outbound, bridge, executor, keepAlive, router, null);
+    }
+
+    /**
+     * Portal recording its inbound traffic in the supplied capture, if not null
+     */
+    public Portal(Digest agent, ServerBuilder<?> inbound, Function<String, ManagedChannel> outbound,
+                  DomainSocketAddress bridge, Executor executor, Duration keepAlive,
+                  Function<String, DomainSocketAddress> router, TrafficCapture capture) {
+        this.inbound = new Demultiplexer(inbound, Router.METADATA_CONTEXT_KEY, d -> handler(router.apply(d)),
+                                         capture);
         this.outbound = new Demultiplexer(NettyServerBuilder.forAddress(bridge)
                                                             .executor(executor)
                                                             .protocolNegotiator(new DomainSocketNegotiator())
@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 import static com.hellblazer.archipelago.Router.SERVER_CONTEXT_KEY;
@@ -28,11 +29,18 @@ import static com.hellblazer.archipelago.Router.SERVER_CONTEXT_KEY;
 public class RoutableService<Service> {
     private static final Logger log = LoggerFactory.getLogger(RoutableService.class);
 
+    private final AdmissionExecutor    admission;
     private final Executor             executor;
     private final Map<Digest, Service> services = new ConcurrentHashMap<>();
 
+    public RoutableService(AdmissionExecutor admission) {
+        this.admission = admission;
+        this.executor = null;
+    }
+
     public RoutableService(Executor executor) {
         this.executor = executor;
+        this.admission = null;
     }
 
     public void bind(Digest context, Service service) {
@@ -40,24 +48,47 @@ public class RoutableService<Service> {
     }
 
     public void evaluate(StreamObserver<?> responseObserver, Consumer<Service> c) {
+        var event = new RoutingEvent();
+        event.begin();
         var context = SERVER_CONTEXT_KEY.get();
         if (context == null) {
             responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND));
             log.error("Null context");
+            commit(event, null, false, false, 0);
         } else {
             Service service = services.get(context);
             if (service == null) {
                 log.trace("No service for context {}", context);
                 responseObserver.onError(new StatusRuntimeException(Status.NOT_FOUND));
+                commit(event, context, false, false, 0);
             } else {
-                executor.execute(() -> {
+                final var routed = event.isEnabled() ? System.nanoTime() : 0L;
+                Runnable evaluation = () -> {
+                    final var queued = routed == 0L ? 0L : System.nanoTime() - routed;
                     try {
                         c.accept(service);
+                        commit(event, context, true, false, queued);
                     } catch (Throwable t) {
                         log.error("Uncaught exception in service evaluation for context: {}", context, t);
                         responseObserver.onError(t);
+                        commit(event, context, true, true, queued);
+                    }
+                };
+                Runnable shed = () -> {
+                    log.trace("Shedding evaluation for context: {}", context);
+                    responseObserver.onError(new StatusRuntimeException(
+                    Status.RESOURCE_EXHAUSTED.withDescription("Server dispatch queue delay exceeded")));
+                    commit(event, context, true, true, 0);
+                };
+                try {
+                    if (admission != null) {
+                        admission.execute(evaluation, shed);
+                    } else {
+                        executor.execute(evaluation);
                     }
-                });
+                } catch (RejectedExecutionException e) {
+                    shed.run();
+                }
             }
         }
     }
@@ -65,4 +96,15 @@ public class RoutableService<Service> {
     public void unbind(Digest context) {
         services.remove(context);
     }
+
+    private void commit(RoutingEvent event, Digest context, boolean found, boolean failed, long queued) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.context = context == null ? null : context.toString();
+            event.found = found;
+            event.failed = failed;
+            event.queued = queued;
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import io.grpc.*;
+import io.grpc.ForwardingClientCall.SimpleForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Balances the calls of a route across the replicated endpoints resolved for the route. Used as the routing function
+ * of a Demultiplexer, the balancer selects one of the endpoints for each call according to its Policy, tracking the
+ * outstanding calls of each endpoint. The status of each completed call feeds back into the health of the endpoint;
+ * endpoints failing consecutive calls are ejected from selection for a period, unless no healthy endpoint remains.
+ *
+ * @author hal.hildebrand
+ */
+public class RouteBalancer<T> implements Function<String, ManagedChannel> {
+    private static final Logger log = LoggerFactory.getLogger(RouteBalancer.class);
+
+    private final Clock                       clock;
+    private final Function<T, ManagedChannel> connector;
+    private final Map<String, AtomicInteger>  cursors   = new ConcurrentHashMap<>();
+    private final Duration                    ejection;
+    private final Map<T, Endpoint<T>>         endpoints = new ConcurrentHashMap<>();
+    private final int                         failureThreshold;
+    private final Policy                      policy;
+    private final Function<String, List<T>>   resolver;
+
+    public RouteBalancer(Function<String, List<T>> resolver, Function<T, ManagedChannel> connector, Policy policy,
+                         int failureThreshold, Duration ejection, Clock clock) {
+        this.resolver = resolver;
+        this.connector = connector;
+        this.policy = policy;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.ejection = ejection;
+        this.clock = clock;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Answer true if the status of a completed call indicates the endpoint itself is unhealthy, rather than the call.
+     * Only transport level statuses count; UNKNOWN and INTERNAL are usually application errors raised by a healthy
+     * server, and must not eject it
+     */
+    static boolean isFailure(Status status) {
+        return switch (status.getCode()) {
+            case UNAVAILABLE, DEADLINE_EXCEEDED, RESOURCE_EXHAUSTED -> true;
+            default -> false;
+        };
+    }
+
+    @Override
+    public ManagedChannel apply(String route) {
+        var resolved = resolver.apply(route);
+        if (resolved == null || resolved.isEmpty()) {
+            log.trace("No endpoints for route: {}", route);
+            throw new StatusRuntimeException(Status.UNAVAILABLE.withDescription("No endpoints for route: " + route));
+        }
+        var now = clock.millis();
+        var all = new ArrayList<Endpoint<T>>(resolved.size());
+        var candidates = new ArrayList<Endpoint<T>>(resolved.size());
+        for (T address : resolved) {
+            var endpoint = endpoints.computeIfAbsent(address, a -> new Endpoint<>(a));
+            all.add(endpoint);
+            if (endpoint.isHealthy(now)) {
+                candidates.add(endpoint);
+            }
+        }
+        if (candidates.isEmpty()) {
+            log.trace("No healthy endpoints for route: {}, selecting from all: {}", route, all.size());
+        }
+        var selected = select(route, candidates.isEmpty() ? all : candidates);
+        return new BalancedChannel(selected, connector.apply(selected.address));
+    }
+
+    /**
+     * Answer the number of outstanding calls on the endpoint
+     */
+    public int outstanding(T address) {
+        var endpoint = endpoints.get(address);
+        return endpoint == null ? 0 : endpoint.outstanding.get();
+    }
+
+    /**
+     * Forget the tracked state of the endpoint, which is no longer resolved by any route
+     */
+    public void remove(T address) {
+        endpoints.remove(address);
+    }
+
+    private Endpoint<T> select(String route, List<Endpoint<T>> candidates) {
+        final var size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        return switch (policy) {
+            case PICK_FIRST -> candidates.get(0);
+            case ROUND_ROBIN -> candidates.get(next(route, size));
+            case POWER_OF_TWO_CHOICES -> {
+                var random = ThreadLocalRandom.current();
+                int first = random.nextInt(size);
+                int second = random.nextInt(size - 1);
+                if (second >= first) {
+                    second++;
+                }
+                var a = candidates.get(first);
+                var b = candidates.get(second);
+                yield b.outstanding.get() < a.outstanding.get() ? b : a;
+            }
+            case LEAST_OUTSTANDING -> {
+                // start from a rotating offset so ties do not herd onto the first endpoint
+                int start = next(route, size);
+                var least = candidates.get(start);
+                for (int i = 1; i < size; i++) {
+                    var candidate = candidates.get((start + i) % size);
+                    if (candidate.outstanding.get() < least.outstanding.get()) {
+                        least = candidate;
+                    }
+                }
+                yield least;
+            }
+        };
+    }
+
+    private int next(String route, int size) {
+        return Math.floorMod(cursors.computeIfAbsent(route, r -> new AtomicInteger()).getAndIncrement(), size);
+    }
+
+    public enum Policy {
+        /**
+         * Always the first healthy endpoint, in resolved order
+         */
+        PICK_FIRST,
+        /**
+         * The healthy endpoints in turn
+         */
+        ROUND_ROBIN,
+        /**
+         * The less loaded of two healthy endpoints chosen at random
+         */
+        POWER_OF_TWO_CHOICES,
+        /**
+         * The healthy endpoint with the least outstanding calls
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private static class Endpoint<T> {
+        private final    T             address;
+        private final    AtomicInteger failures    = new AtomicInteger();
+        private final    AtomicInteger outstanding = new AtomicInteger();
+        private volatile long          ejectedUntil;
+
+        private Endpoint(T address) {
+            this.address = address;
+        }
+
+        private boolean isHealthy(long now) {
+            return ejectedUntil <= now;
+        }
+    }
+
+    public static class Builder {
+        private Clock    clock            = Clock.systemUTC();
+        private Duration ejection         = Duration.ofSeconds(5);
+        private int      failureThreshold = 3;
+        private Policy   policy           = Policy.ROUND_ROBIN;
+
+        public <T> RouteBalancer<T> build(Function<String, List<T>> resolver, Function<T, ManagedChannel> connector) {
+            return new RouteBalancer<>(resolver, connector, policy, failureThreshold, ejection, clock);
+        }
+
+        public Clock getClock() {
+            return clock;
+        }
+
+        public Builder setClock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Duration getEjection() {
+            return ejection;
+        }
+
+        public Builder setEjection(Duration ejection) {
+            this.ejection = ejection;
+            return this;
+        }
+
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        public Builder setFailureThreshold(int failureThreshold) {
+            this.failureThreshold = failureThreshold;
+            return this;
+        }
+
+        public Policy getPolicy() {
+            return policy;
+        }
+
+        public Builder setPolicy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+    }
+
+    /**
+     * Channel to a selected endpoint, tracking the endpoint's outstanding calls and health
+     */
+    private class BalancedChannel extends ManagedChannel {
+        private final ManagedChannel delegate;
+        private final Endpoint<T>    endpoint;
+
+        private BalancedChannel(Endpoint<T> endpoint, ManagedChannel delegate) {
+            this.endpoint = endpoint;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String authority() {
+            return delegate.authority();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public <RequestT, ResponseT> ClientCall<RequestT, ResponseT> newCall(
+        MethodDescriptor<RequestT, ResponseT> methodDescriptor, CallOptions callOptions) {
+            return new SimpleForwardingClientCall<>(delegate.newCall(methodDescriptor, callOptions)) {
+                @Override
+                public void start(Listener<ResponseT> responseListener, Metadata headers) {
+                    endpoint.outstanding.incrementAndGet();
+                    try {
+                        super.start(new SimpleForwardingClientCallListener<>(responseListener) {
+                            @Override
+                            public void onClose(Status status, Metadata trailers) {
+                                completed(status);
+                                super.onClose(status, trailers);
+                            }
+                        }, headers);
+                    } catch (RuntimeException e) {
+                        completed(Status.fromThrowable(e));
+                        throw e;
+                    }
+                }
+            };
+        }
+
+        @Override
+        public ManagedChannel shutdown() {
+            delegate.shutdown();
+            return this;
+        }
+
+        @Override
+        public ManagedChannel shutdownNow() {
+            delegate.shutdownNow();
+            return this;
+        }
+
+        private void completed(Status status) {
+            endpoint.outstanding.decrementAndGet();
+            if (!isFailure(status)) {
+                endpoint.failures.set(0);
+                return;
+            }
+            if (endpoint.failures.incrementAndGet() >= failureThreshold) {
+                endpoint.failures.set(0);
+                endpoint.ejectedUntil = clock.millis() + ejection.toMillis();
+                log.debug("Ejecting endpoint: {} for: {} status: {}", endpoint.address, ejection, status);
+            }
+        }
+    }
+}
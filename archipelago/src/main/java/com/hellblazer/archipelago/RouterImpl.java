@@ -38,6 +38,7 @@ import static com.hellblazer.cryptography.QualifiedBase64.qb64;
 public class RouterImpl implements Router {
 
     private final static Logger                          log      = LoggerFactory.getLogger(RouterImpl.class);
+    private final        AdmissionExecutor.Builder       admission;
     private final        ServerConnectionCache           cache;
     private final        ClientIdentity                  clientIdentityProvider;
     private final        Consumer<Digest>                contextRegistration;
@@ -55,6 +56,17 @@ public class RouterImpl implements Router {
 
     public RouterImpl(Member from, ServerBuilder<?> serverBuilder, ServerConnectionCache.Builder cacheBuilder,
                       ClientIdentity clientIdentityProvider, Consumer<Digest> contextRegistration, Executor executor) {
+        this(from, serverBuilder, cacheBuilder, clientIdentityProvider, contextRegistration, executor, null);
+    }
+
+    /**
+     * @param admission - if not null, the admission control applied to the dispatch of each routing label's inbound
+     *                  calls
+     */
+    public RouterImpl(Member from, ServerBuilder<?> serverBuilder, ServerConnectionCache.Builder cacheBuilder,
+                      ClientIdentity clientIdentityProvider, Consumer<Digest> contextRegistration, Executor executor,
+                      AdmissionExecutor.Builder admission) {
+        this.admission = admission;
         this.server = serverBuilder.fallbackHandlerRegistry(registry).intercept(serverInterceptor()).build();
         this.cache = cacheBuilder.build();
         this.clientIdentityProvider = clientIdentityProvider;
@@ -136,7 +148,7 @@ public class RouterImpl implements Router {
                                                                                        Function<RoutableService<Service>, BindableService> factory) {
         @SuppressWarnings("unchecked")
         RoutableService<Service> routing = (RoutableService<Service>) services.computeIfAbsent(routingLabel, c -> {
-            var route = new RoutableService<Service>(executor);
+            RoutableService<Service> route = routableService(routingLabel);
             BindableService bindableService = factory.apply(route);
             registry.addService(bindableService);
             return route;
@@ -156,7 +168,7 @@ public class RouterImpl implements Router {
                                                                                        Client localLoopback) {
         @SuppressWarnings("unchecked")
         RoutableService<Service> routing = (RoutableService<Service>) services.computeIfAbsent(routingLabel, c -> {
-            var route = new RoutableService<Service>(executor);
+            RoutableService<Service> route = routableService(routingLabel);
             BindableService bindableService = factory.apply(route);
             registry.addService(bindableService);
             return route;
@@ -190,6 +202,11 @@ public class RouterImpl implements Router {
         log.info("Started router: {}", server.getListenSockets());
     }
 
+    private <Service> RoutableService<Service> routableService(String routingLabel) {
+        return admission == null ? new RoutableService<Service>(executor)
+                                 : new RoutableService<Service>(admission.build(routingLabel, executor));
+    }
+
     public class CommonCommunications<Client extends Link, Service> implements Router.ClientConnector<Client> {
         private final Digest                                                   context;
         private final ServerConnectionCache.CreateClientCommunications<Client> createFunction;
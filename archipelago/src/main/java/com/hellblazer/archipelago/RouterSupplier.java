@@ -25,7 +25,15 @@ public interface RouterSupplier {
         return router(cacheBuilder, () -> RouterImpl.defaultServerLimit(), executor, null);
     }
 
+    default Router router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
+                          LimitsRegistry limitsRegistry) {
+        return router(cacheBuilder, serverLimit, executor, limitsRegistry, null);
+    }
+
+    /**
+     * @param admission - if not null, the admission control applied to the dispatch of inbound calls
+     */
     Router router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
-                  LimitsRegistry limitsRegistry);
+                  LimitsRegistry limitsRegistry, AdmissionExecutor.Builder admission);
 
 }
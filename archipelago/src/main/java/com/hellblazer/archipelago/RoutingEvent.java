@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for the dispatch of an inbound call by a RoutableService. The event duration covers the
+ * evaluation, from routing until the service returns.
+ *
+ * @author hal.hildebrand
+ */
+@Name("com.hellblazer.archipelago.Routing")
+@Label("Routable Service Dispatch")
+@Category({ "Archipelago", "Routing" })
+@Description("Dispatch of an inbound call to the service bound to the call's context")
+@StackTrace(false)
+public class RoutingEvent extends Event {
+    @Label("Context")
+    public String  context;
+    @Label("Failed")
+    @Description("Service evaluation threw an exception")
+    public boolean failed;
+    @Label("Found")
+    @Description("A service was bound for the context")
+    public boolean found;
+    @Label("Queued")
+    @Description("Time between routing and the start of service evaluation on the executor")
+    @Timespan(Timespan.NANOSECONDS)
+    public long    queued;
+}
@@ -9,9 +9,11 @@ package com.hellblazer.archipelago;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
+import com.hellblazer.archipelago.membership.Context;
 import com.hellblazer.archipelago.membership.Member;
 import com.hellblazer.cryptography.hash.Digest;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,17 +46,27 @@ import java.util.function.Supplier;
 public class ServerConnectionCache {
 
     private final static Logger log = LoggerFactory.getLogger(ServerConnectionCache.class);
-    private final Map<Member, ReleasableManagedChannel>   cache = new HashMap<>();
+    private final Map<Member, ReleasableManagedChannel>   cache      = new HashMap<>();
     private final Clock                                   clock;
+    private final PhiAccrualDetector                      detector;
     private final ServerConnectionFactory                 factory;
-    private final ReentrantLock                           lock  = new ReentrantLock(true);
+    private final ReentrantLock                           lock       = new ReentrantLock(true);
     private final ServerConnectionCacheMetrics            metrics;
     private final Duration                                minIdle;
-    private final PriorityQueue<ReleasableManagedChannel> queue = new PriorityQueue<>();
+    private final PriorityQueue<ReleasableManagedChannel> queue      = new PriorityQueue<>();
+    private final CallStatistics                          statistics;
     private final int                                     target;
     public ServerConnectionCache(ServerConnectionFactory factory, int target, Duration minIdle, Clock clock,
                                  ServerConnectionCacheMetrics metrics) {
+        this(factory, target, minIdle, clock, metrics, new CallStatistics(), new PhiAccrualDetector());
+    }
+
+    public ServerConnectionCache(ServerConnectionFactory factory, int target, Duration minIdle, Clock clock,
+                                 ServerConnectionCacheMetrics metrics, CallStatistics statistics,
+                                 PhiAccrualDetector detector) {
         this.factory = factory;
+        this.statistics = statistics;
+        this.detector = detector;
         this.target = Math.max(target, 1);
         this.minIdle = minIdle;
         this.clock = clock;
@@ -66,16 +78,21 @@ public class ServerConnectionCache {
     }
 
     public ManagedServerChannel borrow(Digest context, Member to) {
+        var event = new ConnectionCacheEvent();
+        event.begin();
         return lock(() -> {
             if (cache.size() >= target) {
                 log.debug("Cache target open connections exceeded: {}, opening to {}", target, to);
             }
             ReleasableManagedChannel connection = cache.computeIfAbsent(to, member -> {
+                var opened = new ConnectionCacheEvent();
+                opened.begin();
                 ReleasableManagedChannel conn = new ReleasableManagedChannel(to, factory.connectTo(to), this);
                 if (metrics != null) {
                     metrics.createConnection().inc();
                     metrics.openConnections().inc();
                 }
+                commit(opened, ConnectionCacheEvent.OPEN, context, to, 0);
                 return conn;
             });
             if (connection == null) {
@@ -95,6 +112,7 @@ public class ServerConnectionCache {
             }
             log.trace("Opened channel to {}, borrowed: {}, usage: {}", connection.member, connection.borrowed,
                       connection.usageCount);
+            commit(event, ConnectionCacheEvent.BORROW, context, to, connection.borrowed.get());
             return new ManagedServerChannel(context, connection);
         });
     }
@@ -107,6 +125,8 @@ public class ServerConnectionCache {
         lock(() -> {
             log.info("Closing connection cache");
             for (ReleasableManagedChannel conn : new ArrayList<>(cache.values())) {
+                var event = new ConnectionCacheEvent();
+                event.begin();
                 try {
                     conn.channel.shutdownNow();
                     if (metrics != null) {
@@ -116,6 +136,7 @@ public class ServerConnectionCache {
                 } catch (Throwable e) {
                     log.debug("Error closing {}", conn.member);
                 }
+                commit(event, ConnectionCacheEvent.CLOSE, null, conn.member, conn.borrowed.get());
             }
             cache.clear();
             queue.clear();
@@ -123,7 +144,45 @@ public class ServerConnectionCache {
         });
     }
 
+    /**
+     * @return a listener forgetting what the cache has recorded of members as they go offline. Register on the
+     * contexts whose members are called through the cache, so that the records of departed members do not accumulate
+     */
+    public <T extends Member> Context.MembershipListener<T> departures() {
+        return new Context.MembershipListener<>() {
+            @Override
+            public void offline(T member) {
+                forget(member.getId());
+            }
+        };
+    }
+
+    /**
+     * Forget what the cache has recorded of the member
+     */
+    public void forget(Digest member) {
+        statistics.remove(member);
+        detector.remove(member);
+    }
+
+    /**
+     * @return the failure suspicion of members, fed by the outcomes of the calls made through the channels of the
+     * cache
+     */
+    public PhiAccrualDetector getDetector() {
+        return detector;
+    }
+
+    /**
+     * @return the statistics of the calls made through the channels of the cache, per member
+     */
+    public CallStatistics getStatistics() {
+        return statistics;
+    }
+
     public void release(ReleasableManagedChannel connection) {
+        var event = new ConnectionCacheEvent();
+        event.begin();
         lock(() -> {
             if (connection.decrementBorrow()) {
                 log.debug("Releasing connection: {}", connection.member);
@@ -133,12 +192,15 @@ public class ServerConnectionCache {
                 }
                 manageConnections();
             }
+            commit(event, ConnectionCacheEvent.RELEASE, null, connection.member, connection.borrowed.get());
             return null;
         });
     }
 
     private boolean close(ReleasableManagedChannel connection) {
         if (connection.isCloseable()) {
+            var event = new ConnectionCacheEvent();
+            event.begin();
             try {
                 connection.channel.shutdownNow();
             } catch (Throwable t) {
@@ -151,11 +213,24 @@ public class ServerConnectionCache {
                 metrics.closeConnectionRate().mark();
                 metrics.channelOpenDuration().update(Duration.between(connection.created, Instant.now(clock)));
             }
+            commit(event, ConnectionCacheEvent.CLOSE, null, connection.member, connection.borrowed.get());
             return true;
         }
         return false;
     }
 
+    private void commit(ConnectionCacheEvent event, String operation, Digest context, Member member, int borrowed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.context = context == null ? null : context.toString();
+            event.member = member.getId().toString();
+            event.borrowed = borrowed;
+            event.openConnections = cache.size();
+            event.commit();
+        }
+    }
+
     private <T> T lock(Supplier<T> supplier) {
         lock.lock();
         try {
@@ -205,14 +280,16 @@ public class ServerConnectionCache {
     }
 
     public static class Builder {
-        private Clock                        clock   = Clock.systemUTC();
-        private ServerConnectionFactory      factory = null;
+        private Clock                        clock      = Clock.systemUTC();
+        private PhiAccrualDetector           detector   = new PhiAccrualDetector();
+        private ServerConnectionFactory      factory    = null;
         private ServerConnectionCacheMetrics metrics;
-        private Duration                     minIdle = Duration.ofMillis(100);
-        private int                          target  = 10;
+        private Duration                     minIdle    = Duration.ofMillis(100);
+        private CallStatistics               statistics = new CallStatistics();
+        private int                          target     = 10;
 
         public ServerConnectionCache build() {
-            return new ServerConnectionCache(factory, target, minIdle, clock, metrics);
+            return new ServerConnectionCache(factory, target, minIdle, clock, metrics, statistics, detector);
         }
 
         public Clock getClock() {
@@ -224,6 +301,15 @@ public class ServerConnectionCache {
             return this;
         }
 
+        public PhiAccrualDetector getDetector() {
+            return detector;
+        }
+
+        public Builder setDetector(PhiAccrualDetector detector) {
+            this.detector = detector;
+            return this;
+        }
+
         public ServerConnectionFactory getFactory() {
             return factory;
         }
@@ -251,6 +337,15 @@ public class ServerConnectionCache {
             return this;
         }
 
+        public CallStatistics getStatistics() {
+            return statistics;
+        }
+
+        public Builder setStatistics(CallStatistics statistics) {
+            this.statistics = statistics;
+            return this;
+        }
+
         public int getTarget() {
             return target;
         }
@@ -300,6 +395,36 @@ public class ServerConnectionCache {
             return member;
         }
 
+        /**
+         * A call through the channel has completed with the status
+         *
+         * @param nanos - the round trip time of the call
+         */
+        void completed(long nanos, Status status) {
+            switch (status.getCode()) {
+            case UNAVAILABLE, DEADLINE_EXCEEDED -> {
+                scc.statistics.failed(member.getId());
+                scc.detector.failed(member.getId());
+            }
+            case CANCELLED -> {
+                scc.statistics.failed(member.getId());
+                scc.detector.cancelled(member.getId());
+            }
+            default -> {
+                scc.statistics.completed(member.getId(), nanos);
+                scc.detector.responded(member.getId(), nanos);
+            }
+            }
+        }
+
+        /**
+         * A call through the channel has started
+         */
+        void started() {
+            scc.statistics.started(member.getId());
+            scc.detector.started(member.getId());
+        }
+
         @Override
         public int hashCode() {
             return member.hashCode();
@@ -0,0 +1,587 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.google.protobuf.MessageLite;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.cryptography.hash.Digest;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.random.RandomGenerator;
+
+/**
+ * A deterministic network fabric for in process clusters. Every message of a call between two members traverses a
+ * directional link, which imposes a sampled latency, a bandwidth cap and a loss rate; members may be partitioned from
+ * one another. Deliveries are scheduled on a virtual clock and executed in time order - ties in submission order - so
+ * that, given the same seed and the same traffic, timing is reproducible independently of the host. Each link draws
+ * its latencies and losses from its own generator, seeded from the network's seed and the link's members, so that the
+ * draws of a link do not depend on how the host interleaves the traffic of other links.
+ * <p>
+ * The scheduler of the network is a ScheduledExecutorService whose delays elapse in virtual time, so that protocols
+ * scheduling their rounds - ring iterators, gossipers - run on the virtual clock along with their messages.
+ * <p>
+ * The network is either driven manually, by advancing virtual time, or by starting its driver, which runs deliveries
+ * as fast as possible: whenever no delivery is due and the cluster has been quiet for the settle period, the virtual
+ * clock jumps to the next scheduled delivery.
+ * <p>
+ * Lost messages and messages crossing a partition fail their call with UNAVAILABLE, as a transport failure would.
+ *
+ * @author hal.hildebrand
+ */
+public class SimulatedNetwork {
+    private static final Logger log = LoggerFactory.getLogger(SimulatedNetwork.class);
+
+    private final    VirtualClock                  clock;
+    private final    Map<Link, LinkParameters>     configured = new ConcurrentHashMap<>();
+    private final    PriorityQueue<Delivery>       deliveries = new PriorityQueue<>();
+    private final    ReentrantLock                 lock       = new ReentrantLock();
+    private final    Map<Link, Long>               busyUntil  = new ConcurrentHashMap<>();
+    private final    AtomicInteger                 partitions = new AtomicInteger();
+    private final    Map<Digest, Integer>          partitionOf = new ConcurrentHashMap<>();
+    private final    Map<Link, RandomGenerator>    generators = new ConcurrentHashMap<>();
+    private final    long                          seed;
+    private final    AtomicBoolean                 running    = new AtomicBoolean();
+    private final    long                          settle;
+    private volatile LinkParameters                defaultLink;
+    private          Thread                        driver;
+    private volatile long                          lastActivity;
+    private          long                          sequence;
+
+    public SimulatedNetwork(long seed, LinkParameters defaultLink, VirtualClock clock, Duration settle) {
+        this.seed = seed;
+        this.defaultLink = defaultLink;
+        this.clock = clock;
+        this.settle = settle.toNanos();
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Advance virtual time by the duration, running all deliveries due within it
+     */
+    public void advance(Duration duration) {
+        final var target = clock.nanoTime() + duration.toNanos();
+        Delivery next;
+        while ((next = poll(target)) != null) {
+            run(next);
+        }
+        clock.advanceTo(target);
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Remove all partitions
+     */
+    public void heal() {
+        partitionOf.clear();
+    }
+
+    /**
+     * Client interceptor simulating the link between the two members
+     */
+    public ClientInterceptor interceptor(Member from, Member to) {
+        final var request = new Link(from.getId(), to.getId());
+        final var response = new Link(to.getId(), from.getId());
+        return new ClientInterceptor() {
+            @Override
+            public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+                                                                       CallOptions callOptions, Channel next) {
+                final Executor callbacks = callOptions.getExecutor() == null ? r -> r.run()
+                                                                             : callOptions.getExecutor();
+                return new SimulatedCall<>(next.newCall(method, callOptions), request, response, callbacks);
+            }
+        };
+    }
+
+    /**
+     * Partition the members from the rest of the network, and from any other partition
+     */
+    public void partition(Collection<? extends Member> members) {
+        final var partition = partitions.incrementAndGet();
+        members.forEach(m -> partitionOf.put(m.getId(), partition));
+    }
+
+    /**
+     * @return the number of scheduled deliveries
+     */
+    public int pending() {
+        lock.lock();
+        try {
+            return deliveries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Run all scheduled deliveries, advancing virtual time as required
+     */
+    public void runUntilIdle() {
+        Delivery next;
+        while ((next = poll(Long.MAX_VALUE)) != null) {
+            run(next);
+        }
+    }
+
+    /**
+     * @return a scheduler whose delays elapse in the virtual time of the network, running its tasks on virtual threads
+     */
+    public ScheduledExecutorService scheduler() {
+        return scheduler(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * @return a scheduler whose delays elapse in the virtual time of the network, running its tasks on the executor
+     */
+    public ScheduledExecutorService scheduler(Executor executor) {
+        return new VirtualScheduler(this, executor);
+    }
+
+    public void setDefaultLink(LinkParameters defaultLink) {
+        this.defaultLink = defaultLink;
+    }
+
+    /**
+     * Configure the directional link between the two members
+     */
+    public void setLink(Member from, Member to, LinkParameters parameters) {
+        configured.put(new Link(from.getId(), to.getId()), parameters);
+    }
+
+    /**
+     * Start the driver, running deliveries as fast as possible in virtual time
+     */
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        driver = Thread.ofPlatform().daemon().name("Simulated Network").start(() -> drive());
+    }
+
+    public void stop() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        LockSupport.unpark(driver);
+    }
+
+    private void drive() {
+        while (running.get()) {
+            var next = poll(clock.nanoTime());
+            if (next != null) {
+                run(next);
+                continue;
+            }
+            if (System.nanoTime() - lastActivity < settle) {
+                LockSupport.parkNanos(settle / 4);
+                continue;
+            }
+            next = poll(Long.MAX_VALUE);
+            if (next == null) {
+                LockSupport.parkNanos(settle);
+            } else {
+                run(next);
+            }
+        }
+    }
+
+    /**
+     * Note activity in the cluster, deferring the driver's advance of virtual time for the settle period
+     */
+    void active() {
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Answer the generator of the link, seeded from the seed of the network and the ids of the link's members
+     */
+    private RandomGenerator generatorOf(Link link) {
+        return generators.computeIfAbsent(link, l -> {
+            var linkSeed = seed;
+            for (var id : new Digest[] { l.from, l.to }) {
+                for (var bits : id.getLongs()) {
+                    linkSeed = 31 * linkSeed + bits;
+                }
+            }
+            return new SplittableRandom(linkSeed);
+        });
+    }
+
+    private boolean isPartitioned(Link link) {
+        return partitionOf.getOrDefault(link.from, 0).intValue() != partitionOf.getOrDefault(link.to, 0).intValue();
+    }
+
+    private LinkParameters parametersOf(Link link) {
+        var parameters = configured.get(link);
+        return parameters == null ? defaultLink : parameters;
+    }
+
+    private Delivery poll(long until) {
+        lock.lock();
+        try {
+            var next = deliveries.peek();
+            if (next == null || next.at > until) {
+                return null;
+            }
+            return deliveries.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Delivery delivery) {
+        clock.advanceTo(delivery.at);
+        lastActivity = System.nanoTime();
+        try {
+            delivery.action.run();
+        } catch (Throwable t) {
+            log.error("Error in simulated delivery", t);
+        }
+    }
+
+    /**
+     * Schedule the action to run at the virtual time, or at the current time if that is later
+     */
+    void schedule(long at, Runnable action) {
+        lock.lock();
+        try {
+            deliveries.add(new Delivery(Math.max(at, clock.nanoTime()), sequence++, action));
+        } finally {
+            lock.unlock();
+        }
+        lastActivity = System.nanoTime();
+    }
+
+    /**
+     * Answer the delivery time of a message of the given size over the link, or -1 if the message is lost. Delivery is
+     * no earlier than the supplied time, preserving the order of a call's messages
+     */
+    private long transmit(Link link, int size, long notBefore) {
+        final var parameters = parametersOf(link);
+        final var random = generatorOf(link);
+        lock.lock();
+        try {
+            final var now = clock.nanoTime();
+            final var start = Math.max(now, busyUntil.getOrDefault(link, 0L));
+            final var transmission = parameters.bandwidth() > 0 ? (long) (size * 1_000_000_000.0
+                                                                          / parameters.bandwidth()) : 0L;
+            busyUntil.put(link, start + transmission);
+            final var latency = Math.max(0L, parameters.latency().sample(random));
+            if (parameters.loss() > 0.0 && random.nextDouble() < parameters.loss()) {
+                return -1;
+            }
+            return Math.max(notBefore, start + transmission + latency);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Distribution of the latency of a link, in nanoseconds
+     */
+    @FunctionalInterface
+    public interface LatencyDistribution {
+        static LatencyDistribution constant(Duration latency) {
+            final var nanos = latency.toNanos();
+            return random -> nanos;
+        }
+
+        /**
+         * Exponentially distributed latency above the minimum
+         */
+        static LatencyDistribution exponential(Duration minimum, Duration mean) {
+            final var min = minimum.toNanos();
+            final var excess = Math.max(0L, mean.toNanos() - min);
+            return random -> min + (long) (-Math.log(1.0 - random.nextDouble()) * excess);
+        }
+
+        /**
+         * Normally distributed latency, truncated at zero
+         */
+        static LatencyDistribution normal(Duration mean, Duration deviation) {
+            final var mu = mean.toNanos();
+            final var sigma = deviation.toNanos();
+            return random -> Math.max(0L, (long) random.nextGaussian(mu, sigma));
+        }
+
+        static LatencyDistribution uniform(Duration minimum, Duration maximum) {
+            final var min = minimum.toNanos();
+            final var max = maximum.toNanos();
+            return random -> min == max ? min : random.nextLong(min, max);
+        }
+
+        long sample(RandomGenerator random);
+    }
+
+    /**
+     * The characteristics of a directional link
+     *
+     * @param latency   - the latency distribution
+     * @param bandwidth - bytes per second, or 0 for unlimited
+     * @param loss      - probability of losing a message
+     */
+    public record LinkParameters(LatencyDistribution latency, long bandwidth, double loss) {
+        public static final LinkParameters INSTANT = new LinkParameters(LatencyDistribution.constant(Duration.ZERO),
+                                                                        0, 0.0);
+
+        public static LinkParameters of(Duration latency) {
+            return new LinkParameters(LatencyDistribution.constant(latency), 0, 0.0);
+        }
+    }
+
+    private record Link(Digest from, Digest to) {
+    }
+
+    private record Delivery(long at, long sequence, Runnable action) implements Comparable<Delivery> {
+        @Override
+        public int compareTo(Delivery o) {
+            var comparison = Long.compare(at, o.at);
+            return comparison != 0 ? comparison : Long.compare(sequence, o.sequence);
+        }
+    }
+
+    public static class Builder {
+        private VirtualClock   clock       = new VirtualClock();
+        private LinkParameters defaultLink = LinkParameters.INSTANT;
+        private long           seed        = 0x1638;
+        private Duration       settle      = Duration.ofMillis(1);
+
+        public SimulatedNetwork build() {
+            return new SimulatedNetwork(seed, defaultLink, clock, settle);
+        }
+
+        public VirtualClock getClock() {
+            return clock;
+        }
+
+        public Builder setClock(VirtualClock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public LinkParameters getDefaultLink() {
+            return defaultLink;
+        }
+
+        public Builder setDefaultLink(LinkParameters defaultLink) {
+            this.defaultLink = defaultLink;
+            return this;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Duration getSettle() {
+            return settle;
+        }
+
+        /**
+         * The real time the cluster must be quiet before the driver advances virtual time to the next delivery
+         */
+        public Builder setSettle(Duration settle) {
+            this.settle = settle;
+            return this;
+        }
+    }
+
+    /**
+     * A call whose messages traverse the simulated links. Callbacks to the call's listener are made on the call's
+     * executor, as blocking stubs drain their callbacks on the calling thread
+     */
+    private class SimulatedCall<ReqT, RespT> extends ForwardingClientCall<ReqT, RespT> {
+        private final    Executor                callbacks;
+        private final    ClientCall<ReqT, RespT> delegate;
+        private final    AtomicBoolean           failed   = new AtomicBoolean();
+        private final    Link                    request;
+        private final    Link                    response;
+        private volatile long                    lastRequest;
+        private volatile long                    lastResponse;
+        private volatile Listener<RespT>         listener;
+        private volatile boolean                 started  = false;
+
+        private SimulatedCall(ClientCall<ReqT, RespT> delegate, Link request, Link response, Executor callbacks) {
+            this.delegate = delegate;
+            this.callbacks = callbacks;
+            this.request = request;
+            this.response = response;
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            if (started) {
+                delegate.cancel(message, cause);
+            }
+        }
+
+        @Override
+        public void halfClose() {
+            if (!started) {
+                return;
+            }
+            schedule(lastRequest, () -> {
+                if (!failed.get()) {
+                    delegate.halfClose();
+                }
+            });
+        }
+
+        @Override
+        public boolean isReady() {
+            return started && delegate.isReady();
+        }
+
+        @Override
+        public void request(int numMessages) {
+            if (started) {
+                delegate.request(numMessages);
+            }
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            if (!started || failed.get()) {
+                return;
+            }
+            final var at = transmit(request, sizeOf(message), lastRequest);
+            if (at < 0) {
+                log.trace("Simulated loss of request: {}", request);
+                schedule(clock.nanoTime(), () -> fail(Status.UNAVAILABLE.withDescription("Simulated message loss")));
+                return;
+            }
+            lastRequest = at;
+            schedule(at, () -> {
+                if (isPartitioned(request)) {
+                    fail(Status.UNAVAILABLE.withDescription("Simulated partition"));
+                } else if (!failed.get()) {
+                    delegate.sendMessage(message);
+                }
+            });
+        }
+
+        @Override
+        public void start(Listener<RespT> responseListener, Metadata headers) {
+            listener = responseListener;
+            if (isPartitioned(request)) {
+                failed.set(true);
+                schedule(clock.nanoTime(), () -> callbacks.execute(
+                () -> responseListener.onClose(Status.UNAVAILABLE.withDescription("Simulated partition"),
+                                               new Metadata())));
+                return;
+            }
+            started = true;
+            delegate.start(new Listener<RespT>() {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    final var at = transmit(response, 0, lastResponse);
+                    if (at < 0) {
+                        log.trace("Simulated loss of trailers: {}", response);
+                        schedule(clock.nanoTime(),
+                                 () -> fail(Status.UNAVAILABLE.withDescription("Simulated message loss")));
+                        return;
+                    }
+                    schedule(at, () -> {
+                        if (isPartitioned(response)) {
+                            fail(Status.UNAVAILABLE.withDescription("Simulated partition"));
+                        } else if (failed.compareAndSet(false, true)) {
+                            callbacks.execute(() -> responseListener.onClose(status, trailers));
+                        }
+                    });
+                }
+
+                @Override
+                public void onHeaders(Metadata headers) {
+                    final var at = transmit(response, 0, lastResponse);
+                    if (at < 0) {
+                        schedule(clock.nanoTime(),
+                                 () -> fail(Status.UNAVAILABLE.withDescription("Simulated message loss")));
+                        return;
+                    }
+                    lastResponse = at;
+                    schedule(at, () -> {
+                        if (!failed.get()) {
+                            callbacks.execute(() -> responseListener.onHeaders(headers));
+                        }
+                    });
+                }
+
+                @Override
+                public void onMessage(RespT message) {
+                    final var at = transmit(response, sizeOf(message), lastResponse);
+                    if (at < 0) {
+                        log.trace("Simulated loss of response: {}", response);
+                        schedule(clock.nanoTime(),
+                                 () -> fail(Status.UNAVAILABLE.withDescription("Simulated message loss")));
+                        return;
+                    }
+                    lastResponse = at;
+                    schedule(at, () -> {
+                        if (isPartitioned(response)) {
+                            fail(Status.UNAVAILABLE.withDescription("Simulated partition"));
+                        } else if (!failed.get()) {
+                            callbacks.execute(() -> responseListener.onMessage(message));
+                        }
+                    });
+                }
+
+                @Override
+                public void onReady() {
+                    responseListener.onReady();
+                }
+            }, headers);
+        }
+
+        @Override
+        protected ClientCall<ReqT, RespT> delegate() {
+            return delegate;
+        }
+
+        private void fail(Status status) {
+            if (failed.compareAndSet(false, true)) {
+                delegate.cancel(status.getDescription(), null);
+                callbacks.execute(() -> listener.onClose(status, new Metadata()));
+            }
+        }
+
+        private int sizeOf(Object message) {
+            if (message instanceof MessageLite m) {
+                return m.getSerializedSize();
+            }
+            if (message instanceof byte[] bytes) {
+                return bytes.length;
+            }
+            return 0;
+        }
+    }
+}
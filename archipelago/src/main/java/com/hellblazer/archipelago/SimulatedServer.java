@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.protocols.LimitsRegistry;
+import com.netflix.concurrency.limits.Limit;
+import io.grpc.inprocess.InProcessChannelBuilder;
+
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * An in process server whose outbound calls traverse a SimulatedNetwork. The connection cache of the router is driven
+ * by the virtual clock of the network
+ *
+ * @author hal.hildebrand
+ */
+public class SimulatedServer extends LocalServer {
+    private final SimulatedNetwork network;
+
+    public SimulatedServer(String prefix, Member member, Executor executor, SimulatedNetwork network) {
+        super(prefix, member, executor);
+        this.network = network;
+    }
+
+    public SimulatedNetwork getNetwork() {
+        return network;
+    }
+
+    @Override
+    public RouterImpl router(ServerConnectionCache.Builder cacheBuilder, Supplier<Limit> serverLimit, Executor executor,
+                             LimitsRegistry limitsRegistry, AdmissionExecutor.Builder admission) {
+        return super.router(cacheBuilder.setClock(network.getClock()), serverLimit, executor, limitsRegistry,
+                            admission);
+    }
+
+    @Override
+    protected InProcessChannelBuilder channelFor(Member to) {
+        return super.channelFor(to).intercept(network.interceptor(getFrom(), to));
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Server interceptor capturing the shape of the traffic through a server - typically a Demultiplexer - for later
+ * replay by TrafficReplay. Each call is recorded when it closes: its start time relative to the start of the capture,
+ * the full method name, the route key, the captured request headers, the sizes of the request and response messages,
+ * the call's duration and its status. Payloads themselves are not captured.
+ * <p>
+ * Only the ASCII request headers on an allowlist are captured: the routing header and the Router's agent, client,
+ * context and target headers, plus any headers explicitly allowed. Other headers - notably credentials such as
+ * authorization or cookies - never reach the capture, and so are never replayed.
+ * <p>
+ * The capture is a compact binary stream: a magic number and version, followed by one record per call. Integers are
+ * varint encoded and strings - methods, routes, header keys and values - are written once and subsequently referenced
+ * by index.
+ *
+ * @author hal.hildebrand
+ */
+public class TrafficCapture implements ServerInterceptor, Closeable {
+    public static final  int         MAGIC   = 0x41524354;
+    public static final  int         VERSION = 1;
+    private static final Set<String> ROUTED  = Set.of(Router.METADATA_AGENT_KEY.name(),
+                                                      Router.METADATA_CLIENT_ID_KEY.name(),
+                                                      Router.METADATA_CONTEXT_KEY.name(),
+                                                      Router.METADATA_TARGET_KEY.name());
+    private static final Logger      log     = LoggerFactory.getLogger(TrafficCapture.class);
+    private static final int         RECORD  = 1;
+
+    private final Set<String>          allowed;
+    private final CodedOutputStream    coded;
+    private final ReentrantLock        lock    = new ReentrantLock();
+    private final OutputStream         output;
+    private final Metadata.Key<String> routing;
+    private final long                 start   = System.nanoTime();
+    private final Map<String, Integer> strings = new HashMap<>();
+    private       boolean              closed  = false;
+    private       long                 recorded;
+
+    public TrafficCapture(Metadata.Key<String> routing, OutputStream output) {
+        this(routing, output, Set.of());
+    }
+
+    /**
+     * @param routing - the header of the route key
+     * @param output  - the stream the capture is written to
+     * @param headers - the names of further ASCII request headers to capture, in addition to the routing headers
+     */
+    public TrafficCapture(Metadata.Key<String> routing, OutputStream output, Set<String> headers) {
+        this.routing = routing;
+        var keys = new HashSet<>(ROUTED);
+        keys.add(routing.name());
+        headers.forEach(h -> keys.add(h.toLowerCase(Locale.ROOT)));
+        keys.removeIf(h -> h.endsWith(Metadata.BINARY_HEADER_SUFFIX));
+        allowed = Set.copyOf(keys);
+        this.output = output;
+        coded = CodedOutputStream.newInstance(output);
+        try {
+            coded.writeFixed32NoTag(MAGIC);
+            coded.writeUInt32NoTag(VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write capture header", e);
+        }
+    }
+
+    static int sizeOf(Object message) {
+        if (message instanceof byte[] bytes) {
+            return bytes.length;
+        }
+        if (message instanceof MessageLite m) {
+            return m.getSerializedSize();
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            coded.writeUInt32NoTag(0);
+            coded.flush();
+            output.close();
+        } finally {
+            lock.unlock();
+        }
+        log.info("Closed traffic capture, recorded: {} calls", recorded);
+    }
+
+    /**
+     * @return the number of calls recorded
+     */
+    public long getRecorded() {
+        lock.lock();
+        try {
+            return recorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call, Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        final var begin = System.nanoTime();
+        final var method = call.getMethodDescriptor().getFullMethodName();
+        final var route = headers.get(routing);
+        final var captured = headersOf(headers);
+        final var requests = new ArrayList<Integer>();
+        final var responses = new ArrayList<Integer>();
+        var listener = next.startCall(new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                record(new Call(begin - start, method, route, captured, toArray(requests), toArray(responses),
+                                System.nanoTime() - begin, status.getCode().value()));
+                super.close(status, trailers);
+            }
+
+            @Override
+            public void sendMessage(RespT message) {
+                synchronized (responses) {
+                    responses.add(sizeOf(message));
+                }
+                super.sendMessage(message);
+            }
+        }, headers);
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                synchronized (requests) {
+                    requests.add(sizeOf(message));
+                }
+                super.onMessage(message);
+            }
+        };
+    }
+
+    private List<Header> headersOf(Metadata headers) {
+        var captured = new ArrayList<Header>();
+        for (var key : new TreeSet<>(headers.keys())) {
+            if (!allowed.contains(key)) {
+                continue;
+            }
+            var values = headers.getAll(Metadata.Key.of(key, Metadata.ASCII_STRING_MARSHALLER));
+            if (values != null) {
+                values.forEach(v -> captured.add(new Header(key, v)));
+            }
+        }
+        return captured;
+    }
+
+    private void record(Call call) {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            coded.writeUInt32NoTag(RECORD);
+            coded.writeUInt64NoTag(call.offset());
+            writeString(call.method());
+            writeString(call.route() == null ? "" : call.route());
+            coded.writeUInt32NoTag(call.headers().size());
+            for (var header : call.headers()) {
+                writeString(header.key());
+                writeString(header.value());
+            }
+            writeSizes(call.requests());
+            writeSizes(call.responses());
+            coded.writeUInt64NoTag(call.duration());
+            coded.writeUInt32NoTag(call.status());
+            recorded++;
+        } catch (IOException e) {
+            log.warn("Unable to record call: {}", call.method(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int[] toArray(List<Integer> sizes) {
+        synchronized (sizes) {
+            return sizes.stream().mapToInt(i -> i).toArray();
+        }
+    }
+
+    private void writeSizes(int[] sizes) throws IOException {
+        coded.writeUInt32NoTag(sizes.length);
+        for (var size : sizes) {
+            coded.writeUInt32NoTag(size);
+        }
+    }
+
+    private void writeString(String s) throws IOException {
+        var index = strings.get(s);
+        if (index != null) {
+            coded.writeUInt32NoTag(index + 1);
+            return;
+        }
+        strings.put(s, strings.size());
+        coded.writeUInt32NoTag(0);
+        coded.writeStringNoTag(s);
+    }
+
+    /**
+     * A captured call
+     *
+     * @param offset    - nanoseconds from the start of the capture to the start of the call
+     * @param method    - the full method name
+     * @param route     - the route key, empty if none
+     * @param headers   - the ASCII request headers
+     * @param requests  - the serialized sizes of the request messages
+     * @param responses - the serialized sizes of the response messages
+     * @param duration  - nanoseconds from the start of the call to its close
+     * @param status    - the status code the call closed with
+     */
+    public record Call(long offset, String method, String route, List<Header> headers, int[] requests,
+                       int[] responses, long duration, int status) {
+    }
+
+    public record Header(String key, String value) {
+    }
+
+    /**
+     * Reads the calls of a capture, in order of their completion
+     */
+    public static class Reader implements Closeable {
+        private final CodedInputStream coded;
+        private final InputStream      input;
+        private final List<String>     strings = new ArrayList<>();
+
+        public Reader(InputStream input) throws IOException {
+            this.input = input;
+            coded = CodedInputStream.newInstance(input);
+            coded.setSizeLimit(Integer.MAX_VALUE);
+            if (coded.readFixed32() != MAGIC) {
+                throw new IOException("Not a traffic capture");
+            }
+            var version = coded.readUInt32();
+            if (version != VERSION) {
+                throw new IOException("Unsupported traffic capture version: " + version);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+
+        /**
+         * @return the next call of the capture, or null if the capture is exhausted
+         */
+        public Call next() throws IOException {
+            if (coded.isAtEnd()) {
+                return null;
+            }
+            if (coded.readUInt32() != RECORD) {
+                return null;
+            }
+            coded.resetSizeCounter();
+            var offset = coded.readUInt64();
+            var method = readString();
+            var route = readString();
+            var count = coded.readUInt32();
+            var headers = new ArrayList<Header>(count);
+            for (int i = 0; i < count; i++) {
+                headers.add(new Header(readString(), readString()));
+            }
+            var requests = readSizes();
+            var responses = readSizes();
+            return new Call(offset, method, route, headers, requests, responses, coded.readUInt64(),
+                            coded.readUInt32());
+        }
+
+        /**
+         * @return all remaining calls of the capture, ordered by their start
+         */
+        public List<Call> readAll() throws IOException {
+            var calls = new ArrayList<Call>();
+            Call call;
+            while ((call = next()) != null) {
+                calls.add(call);
+            }
+            calls.sort(Comparator.comparingLong(Call::offset));
+            return calls;
+        }
+
+        private int[] readSizes() throws IOException {
+            var sizes = new int[coded.readUInt32()];
+            for (int i = 0; i < sizes.length; i++) {
+                sizes[i] = coded.readUInt32();
+            }
+            return sizes;
+        }
+
+        private String readString() throws IOException {
+            var index = coded.readUInt32();
+            if (index > 0) {
+                return strings.get(index - 1);
+            }
+            var s = coded.readString();
+            strings.add(s);
+            return s;
+        }
+    }
+}
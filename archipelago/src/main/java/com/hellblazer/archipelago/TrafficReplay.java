@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import io.grpc.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a TrafficCapture against a target channel - e.g. a channel to the inbound endpoint of a Portal, or to the
+ * server of a RouterImpl - preserving the captured methods, headers, message sizes and inter-arrival times, and reports
+ * the resulting throughput and latency percentiles.
+ * <p>
+ * Payloads are not captured, so each message is synthesized at its captured size as a single unknown length delimited
+ * field, which protobuf parses as an empty instance of any message type. Time is compressed by the rate: 1 replays at
+ * the captured pace, 10 ten times faster, and 0 as fast as the outstanding bound allows.
+ *
+ * @author hal.hildebrand
+ */
+public class TrafficReplay {
+    private static final int    FILLER_FIELD = (1 << 29) - 1;
+    private static final int    FILLER_TAG   = CodedOutputStream.computeTagSize(FILLER_FIELD);
+    private static final Logger log          = LoggerFactory.getLogger(TrafficReplay.class);
+
+    private final MethodDescriptor.Marshaller<byte[]> marshaller = new GrpcProxy.ByteMarshaller();
+    private final int                                 maxOutstanding;
+    private final double                              rate;
+    private final Duration                            timeout;
+
+    public TrafficReplay(double rate, int maxOutstanding, Duration timeout) {
+        this.rate = rate;
+        this.maxOutstanding = maxOutstanding;
+        this.timeout = timeout;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return a serialized message of the size, or as near as the encoding allows. The single field uses the largest
+     * legal field number, so that it is unknown to any real message type
+     */
+    static byte[] payload(int size) {
+        if (size <= FILLER_TAG) {
+            return new byte[0];
+        }
+        for (int lengthSize = 1; lengthSize <= 5; lengthSize++) {
+            var length = size - FILLER_TAG - lengthSize;
+            if (length >= 0 && CodedOutputStream.computeUInt32SizeNoTag(length) == lengthSize) {
+                var payload = new byte[size];
+                var coded = CodedOutputStream.newInstance(payload);
+                try {
+                    coded.writeTag(FILLER_FIELD, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                    coded.writeUInt32NoTag(length);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return payload;
+            }
+        }
+        return payload(size - 1);
+    }
+
+    /**
+     * Replay the captured calls against the target
+     */
+    public Report replay(List<TrafficCapture.Call> calls, Channel target) throws InterruptedException {
+        final var latencies = new AtomicLongArray(calls.size());
+        for (int i = 0; i < calls.size(); i++) {
+            latencies.set(i, -1);
+        }
+        final var failures = new AtomicInteger();
+        final var outstanding = new Semaphore(maxOutstanding);
+        final var completed = new CountDownLatch(calls.size());
+        final var origin = calls.isEmpty() ? 0L : calls.get(0).offset();
+        final var start = System.nanoTime();
+        for (int i = 0; i < calls.size(); i++) {
+            final var call = calls.get(i);
+            if (rate > 0) {
+                final var due = start + (long) ((call.offset() - origin) / rate);
+                long delay;
+                while ((delay = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+            }
+            outstanding.acquire();
+            issue(call, target, i, latencies, failures, () -> {
+                outstanding.release();
+                completed.countDown();
+            });
+        }
+        if (!completed.await(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            log.warn("Replay incomplete, outstanding: {}", completed.getCount());
+        }
+        final var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        final var done = (int) (calls.size() - completed.getCount());
+        final var sorted = completed(latencies);
+        return new Report(calls.size(), failures.get() + (calls.size() - done), elapsed,
+                          elapsed.isZero() ? 0.0 : done / (elapsed.toNanos() / 1_000_000_000.0),
+                          percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                          percentile(sorted, 0.999),
+                          Duration.ofNanos(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+    }
+
+    /**
+     * Replay the capture against the target
+     */
+    public Report replay(Path capture, Channel target) throws IOException, InterruptedException {
+        try (InputStream is = Files.newInputStream(capture); var reader = new TrafficCapture.Reader(is)) {
+            return replay(reader.readAll(), target);
+        }
+    }
+
+    /**
+     * @return the sorted latencies of the calls that completed. Calls still outstanding when the replay timed out have
+     * no latency, and are reported only as failures, so that they do not drag the percentiles down
+     */
+    private long[] completed(AtomicLongArray latencies) {
+        var sorted = new long[latencies.length()];
+        var count = 0;
+        for (int i = 0; i < latencies.length(); i++) {
+            var latency = latencies.get(i);
+            if (latency >= 0) {
+                sorted[count++] = latency;
+            }
+        }
+        sorted = Arrays.copyOf(sorted, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void issue(TrafficCapture.Call call, Channel target, int index, AtomicLongArray latencies,
+                       AtomicInteger failures, Runnable onComplete) {
+        final var descriptor = MethodDescriptor.newBuilder(marshaller, marshaller)
+                                               .setFullMethodName(call.method())
+                                               .setType(MethodDescriptor.MethodType.UNKNOWN)
+                                               .build();
+        final var headers = new Metadata();
+        call.headers()
+            .forEach(h -> headers.put(Metadata.Key.of(h.key(), Metadata.ASCII_STRING_MARSHALLER), h.value()));
+        final var begin = System.nanoTime();
+        final var clientCall = target.newCall(descriptor, CallOptions.DEFAULT.withDeadlineAfter(timeout.toNanos(),
+                                                                                                 TimeUnit.NANOSECONDS));
+        clientCall.start(new ClientCall.Listener<>() {
+            @Override
+            public void onClose(Status status, Metadata trailers) {
+                latencies.set(index, System.nanoTime() - begin);
+                if (!status.isOk()) {
+                    log.trace("Replayed call: {} failed: {}", call.method(), status);
+                    failures.incrementAndGet();
+                }
+                onComplete.run();
+            }
+        }, headers);
+        clientCall.request(Integer.MAX_VALUE);
+        for (var size : call.requests()) {
+            clientCall.sendMessage(payload(size));
+        }
+        clientCall.halfClose();
+    }
+
+    private Duration percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)]);
+    }
+
+    /**
+     * The outcome of a replay. The latency percentiles and maximum are of the calls that completed
+     *
+     * @param calls      - the number of calls replayed
+     * @param failures   - the number of calls that did not complete successfully
+     * @param elapsed    - the duration of the replay
+     * @param throughput - completed calls per second
+     */
+    public record Report(int calls, int failures, Duration elapsed, double throughput, Duration p50, Duration p90,
+                         Duration p99, Duration p999, Duration max) {
+    }
+
+    public static class Builder {
+        private int      maxOutstanding = 1000;
+        private double   rate           = 1.0;
+        private Duration timeout        = Duration.ofSeconds(30);
+
+        public TrafficReplay build() {
+            return new TrafficReplay(rate, maxOutstanding, timeout);
+        }
+
+        public int getMaxOutstanding() {
+            return maxOutstanding;
+        }
+
+        public Builder setMaxOutstanding(int maxOutstanding) {
+            this.maxOutstanding = maxOutstanding;
+            return this;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * The speed up of the replay relative to the capture, 0 for as fast as possible
+         */
+        public Builder setRate(double rate) {
+            this.rate = rate;
+            return this;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public Builder setTimeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+    }
+}
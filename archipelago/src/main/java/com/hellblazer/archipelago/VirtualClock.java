@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A Clock that only moves when advanced. Time is kept in nanoseconds since the epoch
+ *
+ * @author hal.hildebrand
+ */
+public class VirtualClock extends Clock {
+    private final AtomicLong nanos;
+    private final ZoneId     zone;
+
+    public VirtualClock() {
+        this(Instant.EPOCH);
+    }
+
+    public VirtualClock(Instant start) {
+        this(new AtomicLong(start.getEpochSecond() * 1_000_000_000L + start.getNano()), ZoneOffset.UTC);
+    }
+
+    private VirtualClock(AtomicLong nanos, ZoneId zone) {
+        this.nanos = nanos;
+        this.zone = zone;
+    }
+
+    /**
+     * Advance the clock by the duration
+     */
+    public void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    /**
+     * Advance the clock to the time, if it is later than the current time
+     */
+    public void advanceTo(long nanoTime) {
+        nanos.accumulateAndGet(nanoTime, Math::max);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Instant instant() {
+        var now = nanos.get();
+        return Instant.ofEpochSecond(Math.floorDiv(now, 1_000_000_000L), Math.floorMod(now, 1_000_000_000L));
+    }
+
+    @Override
+    public long millis() {
+        return nanos.get() / 1_000_000L;
+    }
+
+    /**
+     * @return the current virtual time in nanoseconds
+     */
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return new VirtualClock(nanos, zone);
+    }
+}
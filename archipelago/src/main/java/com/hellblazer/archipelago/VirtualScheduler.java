@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A ScheduledExecutorService whose delays elapse in the virtual time of a SimulatedNetwork. Tasks are scheduled as
+ * deliveries of the network, ordered with its messages, and when due are run on the executor - never on the thread
+ * driving the network, as a task may block on calls whose messages the network must deliver. Periodic tasks are
+ * rescheduled relative to the virtual time they were due, or completed, respectively.
+ * <p>
+ * Shutting down cancels the tasks not yet due.
+ *
+ * @author hal.hildebrand
+ */
+public class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    private final    Executor          executor;
+    private final    SimulatedNetwork  network;
+    private final    Set<Task<?>>      pending = ConcurrentHashMap.newKeySet();
+    private final    AtomicInteger     running = new AtomicInteger();
+    private volatile boolean           shutdown;
+
+    public VirtualScheduler(SimulatedNetwork network, Executor executor) {
+        this.network = network;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final var deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (!isTerminated()) {
+                final var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && pending.isEmpty() && running.get() == 0;
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new Task<>(Executors.callable(command), at(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new Task<>(callable, at(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+        return enqueue(new Task<>(Executors.callable(command), at(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive: " + delay);
+        }
+        return enqueue(new Task<>(Executors.callable(command), at(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void shutdown() {
+        shutdownNow();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        final var cancelled = new ArrayList<Runnable>();
+        for (var task : pending) {
+            if (pending.remove(task)) {
+                task.cancel(false);
+                cancelled.add(task);
+            }
+        }
+        terminate();
+        return cancelled;
+    }
+
+    private long at(long delay, TimeUnit unit) {
+        return network.getClock().nanoTime() + Math.max(0, unit.toNanos(delay));
+    }
+
+    /**
+     * Run the due task on the executor, unless cancelled in the meantime
+     */
+    private void dispatch(Task<?> task) {
+        if (!pending.remove(task)) {
+            return;
+        }
+        running.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    network.active();
+                    running.decrementAndGet();
+                    terminate();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            task.cancel(false);
+            running.decrementAndGet();
+            terminate();
+        }
+    }
+
+    private <V> Task<V> enqueue(Task<V> task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Scheduler is shut down");
+        }
+        pending.add(task);
+        network.schedule(task.at, () -> dispatch(task));
+        return task;
+    }
+
+    private void terminate() {
+        if (isTerminated()) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private class Task<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        /**
+         * Positive for a fixed rate, negative for a fixed delay, zero for a single execution
+         */
+        private final    long period;
+        private volatile long at;
+
+        private Task(Callable<V> callable, long at, long period) {
+            super(callable);
+            this.at = at;
+            this.period = period;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            final var cancelled = super.cancel(mayInterruptIfRunning);
+            if (pending.remove(this)) {
+                terminate();
+            }
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(at - network.getClock().nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+            } else if (runAndReset() && !shutdown) {
+                at = period > 0 ? at + period : network.getClock().nanoTime() - period;
+                pending.add(this);
+                if (shutdown) {
+                    cancel(false);
+                } else {
+                    network.schedule(at, () -> dispatch(this));
+                }
+            }
+        }
+    }
+}
@@ -9,42 +9,204 @@ package com.hellblazer.archipelago.membership;
 import com.hellblazer.cryptography.hash.Digest;
 import com.hellblazer.cryptography.hash.DigestAlgorithm;
 
-import java.util.*;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
 
 import static com.hellblazer.archipelago.membership.Context.hashFor;
 import static com.hellblazer.archipelago.membership.Context.minMajority;
 
 /**
  * Compact context structure that mimics a context, but only tracks the digest ids of the members.
+ * <p>
+ * The member ids are packed in sorted order into a single LongBuffer, DigestAlgorithm.longLength() longs per member.
+ * Each ring is a pair of parallel buffers in ring order: the leading 64 bits of each member's ring hash, and the int
+ * index of that member in the packed ids - 12 bytes per member per ring. Lookups binary search the leading bits and
+ * only rehash a member when those bits tie. The buffers are either heap arrays or direct buffers, so that large, read
+ * mostly views may be held off heap. A compact context may be derived from the view of a Context without rehashing,
+ * and written to and loaded from a versioned binary snapshot - see snapshot(Path).
+ * <p>
+ * Successor and predecessor lookups hash the supplied digest for the ring and answer the members strictly after, or
+ * before, that location; a member is never its own successor or predecessor.
  *
  * @author hal.hildebrand
  */
 public class CompactContext {
-
-    private final Digest     id;
-    private final Digest[]   ids;
-    private final short[][]  ringMap;
-    private final Digest[][] rings;
+    /**
+     * The leading bytes of a snapshot: "ARCC"
+     */
+    public static final int SNAPSHOT_MAGIC   = 0x41524343;
+    public static final int SNAPSHOT_VERSION = 1;
+
+    private final DigestAlgorithm algorithm;
+    private final Digest          id;
+    private final LongBuffer      ids;
+    private final LongBuffer[]    keys;
+    private final IntBuffer[]     ringMap;
+    private final int             size;
+    private final int             width;
 
     public CompactContext(Digest id, int cardinality, double pByz, int bias, List<Digest> ids, double epsilon) {
-        this(id, ids, (short) ((minMajority(pByz, cardinality, epsilon, bias) * bias) + 1));
+        this(id, cardinality, pByz, bias, ids, epsilon, false);
+    }
+
+    public CompactContext(Digest id, int cardinality, double pByz, int bias, List<Digest> ids, double epsilon,
+                          boolean offHeap) {
+        this(id, ids, (minMajority(pByz, cardinality, epsilon, bias) * bias) + 1, offHeap);
+    }
+
+    public CompactContext(Digest id, List<Digest> ids, int rings) {
+        this(id, ids, rings, false);
     }
 
-    public CompactContext(Digest id, List<Digest> ids, short rings) {
+    public CompactContext(Digest id, List<Digest> ids, int rings, boolean offHeap) {
+        if (rings <= 0) {
+            throw new IllegalArgumentException("Rings must be > 0: " + rings);
+        }
+        var sorted = ids.stream().distinct().sorted().toArray(Digest[]::new);
         this.id = id;
-        this.ids = new Digest[ids.size()];
-        this.rings = new Digest[rings][];
+        this.algorithm = sorted.length == 0 ? id.getAlgorithm() : sorted[0].getAlgorithm();
+        this.width = algorithm.longLength();
+        this.size = sorted.length;
+        this.ids = allocateLongs(Math.multiplyExact(size, width), offHeap);
+        this.keys = new LongBuffer[rings];
+        this.ringMap = new IntBuffer[rings];
+        initialize(sorted, offHeap);
+    }
+
+    private CompactContext(DigestAlgorithm algorithm, Digest id, LongBuffer ids, LongBuffer[] keys,
+                           IntBuffer[] ringMap, int size) {
+        this.algorithm = algorithm;
+        this.id = id;
+        this.width = algorithm.longLength();
+        this.ids = ids;
+        this.keys = keys;
+        this.ringMap = ringMap;
+        this.size = size;
+    }
+
+    /**
+     * @return the compact context of the current view of the context, using the ring hashes the context has already
+     * computed
+     */
+    public static CompactContext from(Context<? extends Member> context) {
+        return from(context.view(), false);
+    }
+
+    /**
+     * Answer the compact context of the rings of the view. The ring order and the leading bits of the hashes are
+     * taken from the view, so no member is rehashed.
+     */
+    public static CompactContext from(ContextView<? extends Member> view, boolean offHeap) {
+        var rings = view.getRingCount();
+        var first = view.ring(0);
+        var sorted = new Digest[first.size()];
+        for (var i = 0; i < sorted.length; i++) {
+            sorted[i] = first.get(i).getId();
+        }
+        Arrays.sort(sorted);
+        var algorithm = sorted.length == 0 ? view.getId().getAlgorithm() : sorted[0].getAlgorithm();
+        var width = algorithm.longLength();
+        var ids = allocateLongs(Math.multiplyExact(sorted.length, width), offHeap);
+        for (var i = 0; i < sorted.length; i++) {
+            ids.put(i * width, sorted[i].getLongs());
+        }
+        var keys = new LongBuffer[rings];
+        var ringMap = new IntBuffer[rings];
         for (int j = 0; j < rings; j++) {
-            this.rings[j] = new Digest[ids.size()];
+            var ring = view.ring(j);
+            keys[j] = allocateLongs(sorted.length, offHeap);
+            ringMap[j] = allocateInts(sorted.length, offHeap);
+            for (var p = 0; p < sorted.length; p++) {
+                var index = Arrays.binarySearch(sorted, ring.get(p).getId());
+                if (index < 0) {
+                    throw new IllegalStateException(
+                    "Member: " + ring.get(p).getId() + " of ring: " + j + " missing from ring: 0");
+                }
+                keys[j].put(p, ring.hash(p).getLongs()[0]);
+                ringMap[j].put(p, index);
+            }
         }
-        this.ringMap = new short[rings][];
-        for (int j = 0; j < rings; j++) {
-            this.ringMap[j] = new short[ids.size()];
+        return new CompactContext(algorithm, view.getId(), ids, keys, ringMap, sorted.length);
+    }
+
+    /**
+     * Load the compact context from a snapshot. The ids and rings of the loaded context are views of the buffer, and
+     * are neither copied nor rehashed.
+     *
+     * @throws IllegalArgumentException if the buffer does not contain a well formed snapshot of a supported version
+     */
+    public static CompactContext load(ByteBuffer snapshot) {
+        var buffer = snapshot.slice().order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != SNAPSHOT_MAGIC) {
+            throw new IllegalArgumentException("Not a compact context snapshot");
+        }
+        var version = buffer.getInt();
+        if (version != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + version);
+        }
+        try {
+            var algorithm = DigestAlgorithm.valueOf(readString(buffer));
+            var idAlgorithm = DigestAlgorithm.valueOf(readString(buffer));
+            var size = buffer.getInt();
+            var rings = buffer.getInt();
+            if (size < 0 || rings <= 0) {
+                throw new IllegalArgumentException("Invalid snapshot, members: " + size + " rings: " + rings);
+            }
+            var id = new long[idAlgorithm.longLength()];
+            buffer.position(align(buffer.position()));
+            buffer.asLongBuffer().get(id);
+            buffer.position(buffer.position() + id.length * Long.BYTES);
+
+            var width = algorithm.longLength();
+            var ids = slice(buffer, Math.multiplyExact(size, width * Long.BYTES)).asLongBuffer();
+            var keys = new LongBuffer[rings];
+            for (int j = 0; j < rings; j++) {
+                keys[j] = slice(buffer, Math.multiplyExact(size, Long.BYTES)).asLongBuffer();
+            }
+            var ringMap = new IntBuffer[rings];
+            for (int j = 0; j < rings; j++) {
+                ringMap[j] = slice(buffer, Math.multiplyExact(size, Integer.BYTES)).asIntBuffer();
+                for (int i = 0; i < size; i++) {
+                    var index = ringMap[j].get(i);
+                    if (index < 0 || index >= size) {
+                        throw new IllegalArgumentException(
+                        "Invalid snapshot, ring: " + j + " position: " + i + " maps to member: " + index + " of: "
+                        + size);
+                    }
+                }
+            }
+            return new CompactContext(algorithm, new Digest(idAlgorithm, id), ids, keys, ringMap, size);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | ArithmeticException e) {
+            throw new IllegalArgumentException("Truncated compact context snapshot", e);
+        }
+    }
+
+    /**
+     * Load the compact context from a snapshot file, mapping the file read only. A restarted node may then serve
+     * ring lookups without hashing the membership.
+     */
+    public static CompactContext load(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
         }
-        initialize(ids);
     }
 
     public static Builder newBuilder() {
@@ -55,13 +217,199 @@ public class CompactContext {
         return new Builder(ctxBuilder);
     }
 
+    private static IntBuffer allocateInts(int length, boolean offHeap) {
+        return offHeap ? ByteBuffer.allocateDirect(Math.multiplyExact(length, Integer.BYTES))
+                                   .order(ByteOrder.nativeOrder())
+                                   .asIntBuffer() : IntBuffer.allocate(length);
+    }
+
+    private static LongBuffer allocateLongs(int length, boolean offHeap) {
+        return offHeap ? ByteBuffer.allocateDirect(Math.multiplyExact(length, Long.BYTES))
+                                   .order(ByteOrder.nativeOrder())
+                                   .asLongBuffer() : LongBuffer.allocate(length);
+    }
+
+    private static int align(int position) {
+        return (position + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var length = buffer.getShort();
+        if (length < 0) {
+            throw new IllegalArgumentException("Invalid snapshot, string length: " + length);
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        var slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static void writeString(ByteBuffer buffer, String string) {
+        var bytes = string.getBytes(StandardCharsets.US_ASCII);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * Answer the compact context resulting from joining and removing members, in the manner of
+     * Context.apply(ViewDelta): joins are applied before leaves, and activations and offlines - which a compact
+     * context does not track - are ignored.
+     *
+     * @return the next compact context, or this context if the delta does not change the membership
+     */
+    public CompactContext apply(ViewDelta<? extends Member> delta) {
+        return apply(delta.joins().stream().map(Member::getId).toList(), delta.leaves());
+    }
+
+    /**
+     * Answer the compact context resulting from adding the joining and removing the leaving members. Rather than
+     * rebuilding from scratch, the k changed members are hashed and sorted, then merged into the existing sorted ids
+     * and ring buffers in O(n + k log k) per ring. The result shares no mutable state with this context, and keeps
+     * the storage of this context on or off heap.
+     *
+     * @return the next compact context, or this context if nothing joins or leaves
+     */
+    public CompactContext apply(Collection<Digest> joins, Collection<Digest> leaves) {
+        var leaving = new HashSet<>(leaves);
+        var added = joins.stream()
+                         .filter(d -> !leaving.contains(d))
+                         .distinct()
+                         .filter(d -> !contains(d))
+                         .sorted()
+                         .toArray(Digest[]::new);
+        var removed = new boolean[size];
+        var removing = 0;
+        for (var d : leaving) {
+            var index = indexOf(d);
+            if (index >= 0) {
+                removed[index] = true;
+                removing++;
+            }
+        }
+        if (added.length == 0 && removing == 0) {
+            return this;
+        }
+        for (var digest : added) {
+            if (digest.getAlgorithm() != algorithm) {
+                throw new IllegalArgumentException(
+                "Members must share a digest algorithm: " + algorithm + " and " + digest.getAlgorithm());
+            }
+        }
+        var offHeap = isOffHeap();
+        var nextSize = size - removing + added.length;
+
+        // Merge the sorted ids, remapping the surviving members and locating the added
+        var nextIds = allocateLongs(Math.multiplyExact(nextSize, width), offHeap);
+        var remap = new int[size];
+        var addedIndex = new int[added.length];
+        var longs = new long[width];
+        int i = 0, a = 0, out = 0;
+        while (i < size || a < added.length) {
+            if (i < size && removed[i]) {
+                remap[i++] = -1;
+            } else if (a == added.length || (i < size && compare(i, added[a].getLongs()) < 0)) {
+                ids.get(i * width, longs);
+                nextIds.put(out * width, longs);
+                remap[i++] = out++;
+            } else {
+                nextIds.put(out * width, added[a].getLongs());
+                addedIndex[a++] = out++;
+            }
+        }
+
+        var nextKeys = new LongBuffer[keys.length];
+        var nextRingMap = new IntBuffer[keys.length];
+        for (int j = 0; j < keys.length; j++) {
+            var entries = new Entry[added.length];
+            for (a = 0; a < added.length; a++) {
+                entries[a] = new Entry(hashFor(id, j, added[a]), addedIndex[a]);
+            }
+            Arrays.sort(entries);
+            var ringKeys = keys[j];
+            var map = ringMap[j];
+            var k = allocateLongs(nextSize, offHeap);
+            var m = allocateInts(nextSize, offHeap);
+            int p = 0;
+            a = 0;
+            out = 0;
+            while (p < size || a < entries.length) {
+                if (p < size && removed[map.get(p)]) {
+                    p++;
+                } else if (a == entries.length || (p < size && compare(j, p, entries[a]) < 0)) {
+                    k.put(out, ringKeys.get(p));
+                    m.put(out++, remap[map.get(p++)]);
+                } else {
+                    k.put(out, entries[a].hash.getLongs()[0]);
+                    m.put(out++, entries[a++].index);
+                }
+            }
+            nextKeys[j] = k;
+            nextRingMap[j] = m;
+        }
+        return new CompactContext(algorithm, id, nextIds, nextKeys, nextRingMap, nextSize);
+    }
+
+    public boolean contains(Digest digest) {
+        return indexOf(digest) >= 0;
+    }
+
+    /**
+     * @return the member at the index, in the sorted order of the member ids
+     */
+    public Digest get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return member(index);
+    }
+
+    public Digest getId() {
+        return id;
+    }
+
     public int getRingCount() {
-        return rings.length;
+        return keys.length;
+    }
+
+    /**
+     * @return the index of the member in the sorted order of the member ids, or a negative value if the digest is not
+     * a member
+     */
+    public int indexOf(Digest digest) {
+        if (digest.getAlgorithm() != algorithm) {
+            return -1;
+        }
+        var longs = digest.getLongs();
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = compare(mid, longs);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return true if the packed storage of this context is held off heap
+     */
+    public boolean isOffHeap() {
+        return ids.isDirect();
     }
 
     public List<Digest> predecessors(Digest digest) {
         var predecessors = new ArrayList<Digest>();
-        for (var i = 0; i < rings.length; i++) {
+        for (var i = 0; i < keys.length; i++) {
             predecessors.add(new CompactRing(i).predecessor(digest));
         }
         return predecessors;
@@ -69,22 +417,57 @@ public class CompactContext {
 
     public List<Digest> predecessors(Digest digest, Predicate<Digest> test) {
         var predecessors = new ArrayList<Digest>();
-        for (var i = 0; i < rings.length; i++) {
+        for (var i = 0; i < keys.length; i++) {
             predecessors.add(new CompactRing(i).predecessor(digest, test));
         }
         return predecessors;
     }
 
     public CompactRing ring(int index) {
-        if (index < 0 || index >= rings.length) {
+        if (index < 0 || index >= keys.length) {
             throw new IndexOutOfBoundsException(index);
         }
         return new CompactRing(index);
     }
 
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a snapshot of this context, in a heap buffer
+     */
+    public ByteBuffer snapshot() {
+        var buffer = ByteBuffer.allocate(snapshotLength());
+        writeSnapshot(buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Write the snapshot of this context to the file, replacing any existing contents. The snapshot is versioned and
+     * laid out as:
+     * <ul>
+     *     <li>the magic int, SNAPSHOT_MAGIC, and the int SNAPSHOT_VERSION</li>
+     *     <li>the names of the digest algorithms of the members and of the context id, each as a short length and
+     *     ASCII bytes, followed by the int member count and the int ring count</li>
+     *     <li>aligned to 8 bytes, the longs of the context id</li>
+     *     <li>the longs of the member ids, in sorted order</li>
+     *     <li>for each ring, the leading long of each member's ring hash, in ring order</li>
+     *     <li>for each ring, the int index of each member in the sorted ids, in ring order</li>
+     * </ul>
+     * All values are big endian.
+     */
+    public void snapshot(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeSnapshot(channel.map(FileChannel.MapMode.READ_WRITE, 0, snapshotLength()));
+            channel.force(false);
+        }
+    }
+
     public List<Digest> successors(Digest digest) {
         var successors = new ArrayList<Digest>();
-        for (var i = 0; i < rings.length; i++) {
+        for (var i = 0; i < keys.length; i++) {
             successors.add(new CompactRing(i).successor(digest));
         }
         return successors;
@@ -92,36 +475,113 @@ public class CompactContext {
 
     public List<Digest> successors(Digest digest, Predicate<Digest> test) {
         var successors = new ArrayList<Digest>();
-        for (var i = 0; i < rings.length; i++) {
+        for (var i = 0; i < keys.length; i++) {
             successors.add(new CompactRing(i).successor(digest, test));
         }
         return successors;
     }
 
-    private void initialize(List<Digest> members) {
-        for (short i = 0; i < members.size(); i++) {
-            ids[i] = members.get(i);
+    /**
+     * Compare the packed id at the index with the longs of a digest, in the unsigned lexicographic order of Digest
+     */
+    private int compare(int index, long[] longs) {
+        var offset = index * width;
+        for (int i = 0; i < width; i++) {
+            var compare = Long.compareUnsigned(ids.get(offset + i), longs[i]);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compare the ring hash of the member at the position of the ring with the hash of the entry
+     */
+    private int compare(int ring, int position, Entry entry) {
+        var compare = Long.compareUnsigned(keys[ring].get(position), entry.hash.getLongs()[0]);
+        return compare != 0 ? compare : hashFor(id, ring, member(ringMap[ring].get(position))).compareTo(entry.hash);
+    }
+
+    private void initialize(Digest[] sorted, boolean offHeap) {
+        for (var i = 0; i < size; i++) {
+            var digest = sorted[i];
+            if (digest.getAlgorithm() != algorithm) {
+                throw new IllegalArgumentException(
+                "Members must share a digest algorithm: " + algorithm + " and " + digest.getAlgorithm());
+            }
+            ids.put(i * width, digest.getLongs());
         }
-        Arrays.sort(ids);
-        for (int j = 0; j < rings.length; j++) {
-            var mapped = new TreeMap<Digest, Short>();
-            for (short i = 0; i < ids.length; i++) {
-                mapped.put(hashFor(id, j, ids[i]), i);
+        for (int j = 0; j < keys.length; j++) {
+            var entries = new Entry[size];
+            for (var i = 0; i < size; i++) {
+                entries[i] = new Entry(hashFor(id, j, sorted[i]), i);
             }
-            short index = 0;
-            for (var e : mapped.entrySet()) {
-                rings[j][index] = e.getKey();
-                ringMap[j][index] = e.getValue();
-                index++;
+            Arrays.parallelSort(entries);
+            keys[j] = allocateLongs(size, offHeap);
+            ringMap[j] = allocateInts(size, offHeap);
+            for (var i = 0; i < size; i++) {
+                keys[j].put(i, entries[i].hash.getLongs()[0]);
+                ringMap[j].put(i, entries[i].index);
             }
         }
     }
 
+    private int headerLength() {
+        var names = algorithm.name().length() + id.getAlgorithm().name().length();
+        return align(4 * Integer.BYTES + 2 * Short.BYTES + names);
+    }
+
+    private Digest member(int index) {
+        var longs = new long[width];
+        ids.get(index * width, longs);
+        return new Digest(algorithm, longs);
+    }
+
+    private int snapshotLength() {
+        var length = (long) headerLength() + (long) id.getAlgorithm().longLength() * Long.BYTES
+        + (long) size * width * Long.BYTES + (long) keys.length * size * (Long.BYTES + Integer.BYTES);
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot too large: " + length);
+        }
+        return (int) length;
+    }
+
+    private void writeSnapshot(ByteBuffer buffer) {
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION);
+        writeString(buffer, algorithm.name());
+        writeString(buffer, id.getAlgorithm().name());
+        buffer.putInt(size).putInt(keys.length);
+        buffer.position(headerLength());
+        for (var l : id.getLongs()) {
+            buffer.putLong(l);
+        }
+        buffer.asLongBuffer().put(ids.duplicate().clear());
+        buffer.position(buffer.position() + size * width * Long.BYTES);
+        for (var k : keys) {
+            buffer.asLongBuffer().put(k.duplicate().clear());
+            buffer.position(buffer.position() + size * Long.BYTES);
+        }
+        for (var m : ringMap) {
+            buffer.asIntBuffer().put(m.duplicate().clear());
+            buffer.position(buffer.position() + size * Integer.BYTES);
+        }
+    }
+
+    private record Entry(Digest hash, int index) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry o) {
+            return hash.compareTo(o.hash);
+        }
+    }
+
     public static class Builder {
         private int          bias    = 2;
         private double       epsilon = Context.DEFAULT_EPSILON;
         private Digest       id      = DigestAlgorithm.DEFAULT.getOrigin();
         private List<Digest> members;
+        private boolean      offHeap = false;
         private double       pByz    = 0.1;                                // 10% chance any node is out to get ya
 
         public Builder() {
@@ -138,7 +598,7 @@ public class CompactContext {
             if (members == null) {
                 throw new IllegalArgumentException("Members must not be null");
             }
-            return new CompactContext(id, Math.max(bias + 1, members.size()), pByz, bias, members, epsilon);
+            return new CompactContext(id, Math.max(bias + 1, members.size()), pByz, bias, members, epsilon, offHeap);
         }
 
         public int getBias() {
@@ -185,13 +645,36 @@ public class CompactContext {
             this.pByz = pByz;
             return this;
         }
+
+        public boolean isOffHeap() {
+            return offHeap;
+        }
+
+        public Builder setOffHeap(boolean offHeap) {
+            this.offHeap = offHeap;
+            return this;
+        }
     }
 
     public class CompactRing {
-        private final int index;
+        private final int        index;
+        private final LongBuffer keys;
+        private final IntBuffer  map;
 
         private CompactRing(int index) {
             this.index = index;
+            this.keys = CompactContext.this.keys[index];
+            this.map = ringMap[index];
+        }
+
+        /**
+         * @return the member at the position in the ring order
+         */
+        public Digest get(int position) {
+            if (position < 0 || position >= size) {
+                throw new IndexOutOfBoundsException(position);
+            }
+            return member(map.get(position));
         }
 
         public Digest hashFor(Digest d) {
@@ -199,130 +682,89 @@ public class CompactContext {
         }
 
         public Digest predecessor(Digest digest) {
-            return pred(Context.hashFor(id, index, digest), d -> true);
+            return predecessor(digest, d -> true);
         }
 
+        /**
+         * @return the first predecessor of the digest's location on the ring that passes the test, or null if none
+         */
         public Digest predecessor(Digest digest, Predicate<Digest> test) {
-            return pred(Context.hashFor(id, index, digest), test);
+            return find(digest, -1, test);
         }
 
         public Iterable<Digest> predecessors(Digest digest) {
-            return preds(Context.hashFor(id, index, digest), d -> true);
+            return predecessors(digest, d -> true);
         }
 
+        /**
+         * @return the predecessors of the digest's location on the ring, in ring order, while they pass the test
+         */
         public Iterable<Digest> predecessors(Digest digest, Predicate<Digest> test) {
-            return preds(Context.hashFor(id, index, digest), test);
+            var hash = hashFor(digest);
+            return () -> new Traversal(hash, -1, test);
         }
 
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return the members of the ring, in ring order
+         */
         public Stream<Digest> stream() {
-            Iterable<Digest> iterable = new Iterable<Digest>() {
-
-                @Override
-                public Iterator<Digest> iterator() {
-                    return new Iterator<Digest>() {
-                        private final Ring ring = ring();
-                        private int current = 0;
-
-                        @Override
-                        public boolean hasNext() {
-                            return current < ids.length;
-                        }
-
-                        @Override
-                        public Digest next() {
-                            if (current >= ids.length) {
-                                throw new NoSuchElementException();
-                            }
-                            var digest = ring.get(current, ids);
-                            current++;
-                            return digest;
-                        }
-                    };
-                }
-            };
-            return StreamSupport.stream(iterable.spliterator(), false);
+            return IntStream.range(0, size).mapToObj(this::get);
         }
 
         public Digest successor(Digest digest) {
-            return succ(Context.hashFor(id, index, digest), d -> true);
+            return successor(digest, d -> true);
         }
 
+        /**
+         * @return the first successor of the digest's location on the ring that passes the test, or null if none
+         */
         public Digest successor(Digest digest, Predicate<Digest> test) {
-            return succ(Context.hashFor(id, index, digest), test);
+            return find(digest, 1, test);
         }
 
         public Iterable<Digest> successors(Digest digest) {
-            return succs(Context.hashFor(id, index, digest), d -> true);
-        }
-
-        public Iterable<Digest> sucessors(Digest digest, Predicate<Digest> test) {
-            return succs(Context.hashFor(id, index, digest), test);
-        }
-
-        private Digest pred(Digest digest, Predicate<Digest> test) {
-            var ring = ring();
-            short startIndex = (short) Arrays.binarySearch(ring.keys, digest);
-            if (startIndex < 0) {
-                for (short i = (short) (ring.keys.length - 1); i >= 0; i--) {
-                    final var tested = ring.get(i, ids);
-                    if (test.test(tested)) {
-                        return tested;
-                    }
-                }
-                return null;
-            }
-            for (short i = (short) (startIndex - 1); i >= 0; i--) {
-                final var tested = ring.get(i, ids);
-                if (test.test(tested)) {
-                    return tested;
+            return successors(digest, d -> true);
+        }
+
+        /**
+         * @return the successors of the digest's location on the ring, in ring order, while they pass the test
+         */
+        public Iterable<Digest> successors(Digest digest, Predicate<Digest> test) {
+            var hash = hashFor(digest);
+            return () -> new Traversal(hash, 1, test);
+        }
+
+        /**
+         * @return the position of the first ring hash that is greater than or equal to the hash
+         */
+        private int ceiling(Digest hash) {
+            var prefix = hash.getLongs()[0];
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(mid, hash, prefix) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
                 }
             }
-            for (short i = (short) (ring.keys.length - 1); i > startIndex; i--) {
-                final var tested = ring.get(i, ids);
-                if (test.test(tested)) {
-                    return tested;
-                }
-            }
-            return null;
+            return low;
         }
 
-        private Iterable<Digest> preds(Digest digest, Predicate<Digest> test) {
-            var ring = ring();
-            short startIndex = (short) Arrays.binarySearch(ring.keys, digest);
-            final var iterator = new HeadIterator(startIndex, test);
-            return new Iterable<>() {
-
-                @Override
-                public Iterator<Digest> iterator() {
-                    return iterator;
-                }
-            };
+        private int compare(int position, Digest hash, long prefix) {
+            var compare = Long.compareUnsigned(keys.get(position), prefix);
+            return compare != 0 ? compare : hashFor(member(map.get(position))).compareTo(hash);
         }
 
-        private Ring ring() {
-            return new Ring(rings[index], ringMap[index]);
-        }
-
-        private Digest succ(Digest digest, Predicate<Digest> test) {
-            var ring = ring();
-            short startIndex = (short) Arrays.binarySearch(ring.keys, digest);
-            if (startIndex < 0) {
-                for (short i = 0; i < ring.keys.length; i++) {
-                    final var tested = ring.get(i, ids);
-                    if (test.test(tested)) {
-                        return tested;
-                    }
-                }
-                return null;
-            }
-            for (short i = (short) (startIndex + 1); i < ring.keys.length; i++) {
-                final var tested = ring.get(i, ids);
-                if (test.test(tested)) {
-                    return tested;
-                }
-            }
-            for (short i = 0; i < startIndex; i++) {
-                final var tested = ring.get(i, ids);
+        private Digest find(Digest digest, int direction, Predicate<Digest> test) {
+            var traversal = new Traversal(hashFor(digest), direction, d -> true);
+            while (traversal.hasNext()) {
+                var tested = traversal.next();
                 if (test.test(tested)) {
                     return tested;
                 }
@@ -330,80 +772,59 @@ public class CompactContext {
             return null;
         }
 
-        private Iterable<Digest> succs(Digest digest, Predicate<Digest> test) {
-            var ring = ring();
-            short startIndex = (short) Arrays.binarySearch(ring.keys, digest);
-            final var iterator = new TailIterator(startIndex, test);
-            return new Iterable<>() {
-
-                @Override
-                public Iterator<Digest> iterator() {
-                    return iterator;
-                }
-            };
-        }
-
-        private static class HeadIterator implements Iterator<Digest> {
-            private final int               start;
+        private class Traversal implements Iterator<Digest> {
+            private final int               direction;
             private final Predicate<Digest> test;
-            private       int               current;
-            private       Digest[]          ids;
-            private       Ring              ring;
+            private       Digest            next;
+            private       int               position;
+            private       int               remaining;
 
-            private HeadIterator(int start, Predicate<Digest> test) {
-                this.start = start;
+            private Traversal(Digest hash, int direction, Predicate<Digest> test) {
+                this.direction = direction;
                 this.test = test;
-                current = (start - 1) % ids.length;
+                if (size == 0) {
+                    return;
+                }
+                var ceiling = ceiling(hash);
+                var exact = ceiling < size && compare(ceiling, hash, hash.getLongs()[0]) == 0;
+                remaining = exact ? size - 1 : size;
+                if (direction > 0) {
+                    position = exact ? ceiling + 1 : ceiling;
+                } else {
+                    position = ceiling - 1;
+                }
+                position = Math.floorMod(position, size);
+                advance();
             }
 
             @Override
             public boolean hasNext() {
-                return current != start && test.test(ring.get(current, ids));
+                return next != null;
             }
 
             @Override
             public Digest next() {
-                if (current == start || test.test(ring.get(current, ids))) {
+                if (next == null) {
                     throw new NoSuchElementException();
                 }
-                var digest = ring.get(start, ids);
-                current = (current + 1) % ids.length;
-                return digest;
-            }
-        }
-
-        private record Ring(Digest[] keys, short[] values) {
-            private Digest get(int i, Digest[] ids) {
-                return ids[values[i]];
+                var current = next;
+                advance();
+                return current;
             }
-        }
-
-        private static class TailIterator implements Iterator<Digest> {
-            private final int               start;
-            private final Predicate<Digest> test;
-            private       int               current;
-            private       Digest[]          ids;
-            private       Ring              ring;
 
-            private TailIterator(int start, Predicate<Digest> test) {
-                this.start = start;
-                this.test = test;
-                current = (start - 1) % ids.length;
-            }
-
-            @Override
-            public boolean hasNext() {
-                return current != start && test.test(ring.get(current, ids));
-            }
-
-            @Override
-            public Digest next() {
-                if (current == start || test.test(ring.get(current, ids))) {
-                    throw new NoSuchElementException();
+            private void advance() {
+                next = null;
+                if (remaining == 0) {
+                    return;
+                }
+                var candidate = get(position);
+                remaining--;
+                position = Math.floorMod(position + direction, size);
+                if (test.test(candidate)) {
+                    next = candidate;
+                } else {
+                    remaining = 0;
                 }
-                var digest = ring.get(start, ids);
-                current = current - 1 % ids.length;
-                return digest;
             }
         }
     }
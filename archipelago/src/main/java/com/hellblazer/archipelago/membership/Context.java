@@ -6,11 +6,13 @@
  */
 package com.hellblazer.archipelago.membership;
 
+import com.google.common.cache.CacheStats;
 import com.hellblazer.cryptography.hash.Digest;
 import com.hellblazer.cryptography.hash.DigestAlgorithm;
 import org.apache.commons.math3.random.BitsStreamGenerator;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -86,7 +88,7 @@ public interface Context<T extends Member> {
 
             @Override
             public Context<Z> build() {
-                return new ContextImpl<Z>(id, Math.max(bias + 1, cardinality), pByz, bias, epsilon);
+                return new ContextImpl<Z>(id, Math.max(bias + 1, cardinality), pByz, bias, epsilon, pool);
             }
         };
     }
@@ -96,15 +98,7 @@ public interface Context<T extends Member> {
     }
 
     static List<Member> uniqueSuccessors(final Context<Member> context, Digest digest) {
-        Set<Member> post = new HashSet<>();
-        context.successors(digest, m -> {
-            if (post.size() == context.getRingCount()) {
-                return false;
-            }
-            return post.add(m);
-        });
-        var successors = new ArrayList<>(post);
-        return successors;
+        return context.uniqueSuccessors(digest);
     }
 
     /**
@@ -154,6 +148,14 @@ public interface Context<T extends Member> {
      */
     Stream<T> allMembers();
 
+    /**
+     * Apply the delta atomically, as a single version of the membership, notifying each listener once with the
+     * changes that took effect
+     *
+     * @return the changes that took effect
+     */
+    ViewDelta<T> apply(ViewDelta<T> delta);
+
     /**
      * Maximum cardinality of this context
      */
@@ -266,6 +268,17 @@ public interface Context<T extends Member> {
      */
     boolean isSuccessorOf(T m, Digest digest);
 
+    /**
+     * Answer true if the member who's id is the supplied digest is suspected of failure by the suspicion of the
+     * context. Suspicion is independent of the offline state
+     */
+    boolean isSuspected(Digest digest);
+
+    /**
+     * @return the statistics of the memoized successor and predecessor lookups, including their hit rate
+     */
+    CacheStats lookupStats();
+
     /**
      * Answer the majority cardinality of the context, based on the current ring count
      */
@@ -330,6 +343,11 @@ public interface Context<T extends Member> {
      */
     UUID register(MembershipListener<T> listener);
 
+    /**
+     * Register a listener for membership events, notified on the executor, answer the UUID that identifies it
+     */
+    UUID register(MembershipListener<T> listener, Executor executor);
+
     /**
      * Remove the members from the context
      */
@@ -365,6 +383,22 @@ public interface Context<T extends Member> {
      */
     <N extends T> List<T> sample(int range, BitsStreamGenerator entropy, Digest exc);
 
+    /**
+     * Answer a sample of at most range size from the active members of the context, chosen by the selector
+     *
+     * @param range    - the desired range
+     * @param entropy  - source of randomness
+     * @param exc      - the member to exclude from sample
+     * @param selector - the strategy choosing the members of the sample
+     * @return the sample, in the selector's order of preference
+     */
+    List<T> sample(int range, BitsStreamGenerator entropy, Digest exc, PeerSelector selector);
+
+    /**
+     * Set the suspicion of the context, used to deprioritize degraded members in ring traversals
+     */
+    void setSuspicion(Suspicion suspicion);
+
     /**
      * Answer the total count of active and offline members of this context
      */
@@ -407,8 +441,23 @@ public interface Context<T extends Member> {
      */
     int totalCount();
 
+    /**
+     * @return the distinct successors of the key, at most one per ring
+     */
+    List<T> uniqueSuccessors(Digest key);
+
     boolean validRing(int ring);
 
+    /**
+     * Answer the version of the membership, which is incremented by every change to the membership or ring structure
+     */
+    long version();
+
+    /**
+     * Answer an immutable view of the current version of the membership
+     */
+    ContextView<T> view();
+
     interface MembershipListener<T extends Member> {
 
         /**
@@ -419,6 +468,17 @@ public interface Context<T extends Member> {
         default void active(T member) {
         }
 
+        /**
+         * A batch of changes has been applied to the membership. By default, each activation and offlining of the batch
+         * is delivered individually
+         *
+         * @param delta - the changes that took effect
+         */
+        default void changed(ViewDelta<T> delta) {
+            delta.activations().forEach(this::active);
+            delta.offlines().forEach(this::offline);
+        }
+
         /**
          * A member is offline
          *
@@ -429,11 +489,12 @@ public interface Context<T extends Member> {
     }
 
     abstract class Builder<Z extends Member> {
-        protected int    bias    = 2;
-        protected int    cardinality;
-        protected double epsilon = DEFAULT_EPSILON;
-        protected Digest id      = DigestAlgorithm.DEFAULT.getOrigin();
-        protected double pByz    = 0.1;                                // 10% chance any node is out to get ya
+        protected int        bias    = 2;
+        protected int        cardinality;
+        protected double     epsilon = DEFAULT_EPSILON;
+        protected Digest     id      = DigestAlgorithm.DEFAULT.getOrigin();
+        protected double     pByz    = 0.1;                                // 10% chance any node is out to get ya
+        protected DigestPool pool    = DigestPool.getDefault();
 
         public abstract Context<Z> build();
 
@@ -481,6 +542,15 @@ public interface Context<T extends Member> {
             this.pByz = pByz;
             return this;
         }
+
+        public DigestPool getPool() {
+            return pool;
+        }
+
+        public Builder<Z> setPool(DigestPool pool) {
+            this.pool = pool;
+            return this;
+        }
     }
 
 }
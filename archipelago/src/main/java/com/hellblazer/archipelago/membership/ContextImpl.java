@@ -6,6 +6,9 @@
  */
 package com.hellblazer.archipelago.membership;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.hellblazer.cryptography.hash.Digest;
 import org.apache.commons.math3.random.BitsStreamGenerator;
 import org.slf4j.Logger;
@@ -14,7 +17,15 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -27,39 +38,78 @@ import static com.hellblazer.archipelago.membership.Context.minMajority;
  * ordering operators. Each ring has a unique hash of each individual member, and thus each ring has a different ring
  * order of the same membership set. Hashes for Context level operators include the ID of the ring. Hashes computed for
  * each member, per ring include the ID of the enclosing Context.
+ * <p>
+ * Every change to the membership increments the version of the context and publishes an immutable ContextView of the
+ * new version, from which ring lookups are answered. Readers obtain the published view without locking. Changes to the
+ * activity of a single member share the epoch lock, and derive the view they publish from the previous view, updating
+ * only the changed members. Changes to the shape of the membership - joins, leaves and rebalancing - hold the epoch
+ * exclusively, and publish a full snapshot.
+ * <p>
+ * Successor and predecessor lookups without a predicate are memoized, keyed by the key and the version of the view
+ * they were answered from. Lookups with a predicate are answered directly from the view, as predicates are typically
+ * capturing lambdas that would never hit in the memo. The memo is bounded, and is cleared by every change to the
+ * membership.
  *
  * @author hal.hildebrand
  */
 public class ContextImpl<T extends Member> implements Context<T> {
 
+    private static final int                              BULK_THRESHOLD      = 64;
+    private static final int                              LOOKUP_CACHE_SIZE   = 1024;
     private static final Logger                           log                 = LoggerFactory.getLogger(Context.class);
+    private final        Map<Digest, T>                   active              = new ConcurrentSkipListMap<>();
+    private final        AtomicInteger                    activeCount         = new AtomicInteger();
     private final        int                              bias;
     private final        double                           epsilon;
     private final        Digest                           id;
+    private final        AtomicInteger                    memberCount         = new AtomicInteger();
+    private final        Cache<Lookup, List<T>>           lookups;
     private final        Map<Digest, Tracked<T>>          members             = new ConcurrentSkipListMap<>();
-    private final        Map<UUID, MembershipListener<T>> membershipListeners = new ConcurrentHashMap<>();
+    private final        Map<UUID, Registration<T>>       membershipListeners = new ConcurrentHashMap<>();
+    private final        Map<Digest, T>                   offline             = new ConcurrentSkipListMap<>();
+    private final        ReentrantReadWriteLock           epoch               = new ReentrantReadWriteLock();
     private final        double                           pByz;
-    private final        List<Ring<T>>                    rings               = new ArrayList<>();
+    private final        DigestPool                       pool;
+    private final        AtomicLong                       version             = new AtomicLong();
+    private final        Set<Tracked<T>>                  flipped             = ConcurrentHashMap.newKeySet();
+    private final        ReentrantLock                    publishing          = new ReentrantLock();
     private volatile     int                              cardinality;
+    private volatile     boolean                          reshaped            = true;
+    private volatile     List<Ring<T>>                    rings;
+    private volatile     Suspicion                        suspicion           = Suspicion.NONE;
+    private volatile     ContextView<T>                   view;
 
     public ContextImpl(Digest id, int cardinality, double pbyz, int bias) {
         this(id, cardinality, pbyz, bias, DEFAULT_EPSILON);
     }
 
     public ContextImpl(Digest id, int cardinality, double pbyz, int bias, double epsilon) {
+        this(id, cardinality, pbyz, bias, epsilon, DigestPool.getDefault());
+    }
+
+    /**
+     * @param pool - the pool of shared ring hashes. Contexts of the pool with the same id and ring count share the
+     *             ring hashes of their common members
+     */
+    public ContextImpl(Digest id, int cardinality, double pbyz, int bias, double epsilon, DigestPool pool) {
         this.pByz = pbyz;
+        this.pool = pool;
         this.id = id;
         this.bias = bias;
         this.cardinality = cardinality;
         this.epsilon = epsilon;
+        lookups = CacheBuilder.newBuilder().maximumSize(LOOKUP_CACHE_SIZE).recordStats().build();
+        var rings = new ArrayList<Ring<T>>();
         for (int i = 0; i < (minMajority(pByz, cardinality, epsilon, bias) * bias) + 1; i++) {
             rings.add(new Ring<>(i, this));
         }
+        this.rings = List.copyOf(rings);
+        publish();
     }
 
     @Override
     public void activate(Collection<T> activeMembers) {
-        activeMembers.forEach(m -> activate(m));
+        apply(ViewDelta.<T>newBuilder().join(activeMembers).activate(activeMembers).build());
     }
 
     /**
@@ -67,14 +117,8 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public boolean activate(T m) {
-        if (tracking(m).activate()) {
-            membershipListeners.values().stream().forEach(l -> {
-                try {
-                    l.active(m);
-                } catch (Throwable e) {
-                    log.error("error recoving member in listener: " + l, e);
-                }
-            });
+        if (activate(tracking(m))) {
+            notifyListeners(l -> l.active(m));
             return true;
         }
         return false;
@@ -86,14 +130,8 @@ public class ContextImpl<T extends Member> implements Context<T> {
     @Override
     public boolean activateIfMember(T m) {
         var member = members.get(m.getId());
-        if (member != null && member.activate()) {
-            membershipListeners.values().stream().forEach(l -> {
-                try {
-                    l.active(m);
-                } catch (Throwable e) {
-                    log.error("error recoving member in listener: " + l, e);
-                }
-            });
+        if (member != null && activate(member)) {
+            notifyListeners(l -> l.active(m));
             return true;
         }
         return false;
@@ -101,22 +139,40 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public Stream<T> active() {
-        return members.values().stream().filter(e -> e.isActive()).map(e -> e.member());
+        return active.values().stream();
     }
 
     @Override
     public int activeCount() {
-        return (int) members.values().stream().filter(e -> e.isActive()).count();
+        return activeCount.get();
     }
 
     @Override
     public List<T> activeMembers() {
-        return members.values().stream().filter(e -> e.isActive()).map(e -> e.member()).toList();
+        return List.copyOf(active.values());
     }
 
+    /**
+     * Add the members. Collections of at least BULK_THRESHOLD members are added in bulk: the ring hashes of the new
+     * members are computed in parallel, and each ring is loaded with all the new members at once, the rings in
+     * parallel
+     */
     @Override
     public <Q extends T> void add(Collection<Q> members) {
-        members.forEach(m -> add(m));
+        if (members.size() < BULK_THRESHOLD) {
+            members.forEach(m -> add(m));
+            return;
+        }
+        epoch.writeLock().lock();
+        try {
+            var joined = join(members);
+            if (!joined.isEmpty()) {
+                advance();
+                log.debug("Bulk added: {} members to: {}", joined.size(), id);
+            }
+        } finally {
+            epoch.writeLock().unlock();
+        }
     }
 
     @Override
@@ -133,6 +189,51 @@ public class ContextImpl<T extends Member> implements Context<T> {
         return members.values().stream().map(e -> e.member());
     }
 
+    /**
+     * Apply the delta atomically, as a single version of the membership, and deliver the changes that took effect to
+     * each listener as a single notification
+     *
+     * @return the changes that took effect
+     */
+    @Override
+    public ViewDelta<T> apply(ViewDelta<T> delta) {
+        final ViewDelta<T> applied;
+        epoch.writeLock().lock();
+        try {
+            final var joined = join(delta.joins()).stream().map(t -> t.member).toList();
+            final var activated = new ArrayList<T>();
+            for (var m : delta.activations()) {
+                var tracked = members.get(m.getId());
+                if (tracked != null && activated(tracked)) {
+                    activated.add(tracked.member);
+                }
+            }
+            final var offlined = new ArrayList<T>();
+            for (var m : delta.offlines()) {
+                var tracked = members.get(m.getId());
+                if (tracked != null && offlined(tracked)) {
+                    offlined.add(tracked.member);
+                }
+            }
+            final var left = new ArrayList<Digest>();
+            for (var leaving : delta.leaves()) {
+                if (removed(leaving) != null) {
+                    left.add(leaving);
+                }
+            }
+            applied = new ViewDelta<>(joined, left, activated, offlined);
+            if (applied.isEmpty()) {
+                return applied;
+            }
+            advance();
+        } finally {
+            epoch.writeLock().unlock();
+        }
+        log.trace("Applied: {} to: {}", applied, id);
+        notifyListeners(l -> l.changed(applied));
+        return applied;
+    }
+
     @Override
     public int cardinality() {
         final var c = cardinality;
@@ -141,10 +242,21 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public void clear() {
-        for (Ring<T> ring : rings) {
-            ring.clear();
+        epoch.writeLock().lock();
+        try {
+            for (Ring<T> ring : rings) {
+                ring.clear();
+            }
+            members.clear();
+            active.clear();
+            offline.clear();
+            activeCount.set(0);
+            memberCount.set(0);
+            reshaped = true;
+            advance();
+        } finally {
+            epoch.writeLock().unlock();
         }
-        members.clear();
     }
 
     @Override
@@ -155,6 +267,16 @@ public class ContextImpl<T extends Member> implements Context<T> {
                 activateIfMember(member);
             }
 
+            @Override
+            public void changed(ViewDelta<Q> delta) {
+                if (!delta.activations().isEmpty() || !delta.offlines().isEmpty()) {
+                    apply(ViewDelta.<T>newBuilder()
+                                   .activate(delta.activations())
+                                   .offline(delta.offlines())
+                                   .build());
+                }
+            }
+
             @Override
             public void offline(Q member) {
                 offlineIfMember(member);
@@ -225,7 +347,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public Collection<T> getOffline() {
-        return members.values().stream().filter(e -> !e.isActive()).map(e -> e.member()).toList();
+        return List.copyOf(offline.values());
     }
 
     @Override
@@ -310,6 +432,19 @@ public class ContextImpl<T extends Member> implements Context<T> {
         return false;
     }
 
+    @Override
+    public boolean isSuspected(Digest digest) {
+        return suspicion.isSuspected(digest);
+    }
+
+    /**
+     * @return the statistics of the memoized successor and predecessor lookups, including their hit rate
+     */
+    @Override
+    public CacheStats lookupStats() {
+        return lookups.stats();
+    }
+
     @Override
     public int majority() {
         return getRingCount() - toleranceLevel();
@@ -317,12 +452,12 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public int memberCount() {
-        return members.size();
+        return memberCount.get();
     }
 
     @Override
     public <Q extends T> void offline(Collection<Q> members) {
-        members.forEach(m -> offline(m));
+        apply(ViewDelta.<T>newBuilder().join(members).offline(members).build());
     }
 
     /**
@@ -330,14 +465,8 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public boolean offline(T m) {
-        if (tracking(m).offline()) {
-            membershipListeners.values().forEach(l -> {
-                try {
-                    l.offline(m);
-                } catch (Throwable e) {
-                    log.error("error sending fail to listener: " + l, e);
-                }
-            });
+        if (offline(tracking(m))) {
+            notifyListeners(l -> l.offline(m));
             return true;
         }
         return false;
@@ -345,7 +474,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public int offlineCount() {
-        return (int) members.values().stream().filter(e -> !e.isActive()).count();
+        return memberCount.get() - activeCount.get();
     }
 
     /**
@@ -354,14 +483,8 @@ public class ContextImpl<T extends Member> implements Context<T> {
     @Override
     public void offlineIfMember(T m) {
         var member = members.get(m.getId());
-        if (member != null && member.offline()) {
-            membershipListeners.values().forEach(l -> {
-                try {
-                    l.offline(m);
-                } catch (Throwable e) {
-                    log.error("error offlining member in listener: " + l, e);
-                }
-            });
+        if (member != null && offline(member)) {
+            notifyListeners(l -> l.offline(m));
         }
     }
 
@@ -370,7 +493,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> predecessors(Digest key) {
-        return predecessors(key, t -> true);
+        return memoized(Lookup.Kind.PREDECESSORS, key, v -> v.predecessors(key, t -> true));
     }
 
     /**
@@ -378,14 +501,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> predecessors(Digest key, Predicate<T> test) {
-        List<T> predecessors = new ArrayList<>();
-        for (Ring<T> ring : rings) {
-            T predecessor = ring.predecessor(key, test);
-            if (predecessor != null) {
-                predecessors.add(predecessor);
-            }
-        }
-        return predecessors;
+        return view().predecessors(key, test);
     }
 
     /**
@@ -393,7 +509,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> predecessors(T key) {
-        return predecessors(key, t -> true);
+        return memoized(Lookup.Kind.MEMBER_PREDECESSORS, key.getId(), v -> predecessors(v, key, t -> true));
     }
 
     /**
@@ -401,69 +517,80 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> predecessors(T key, Predicate<T> test) {
-        List<T> predecessors = new ArrayList<>();
-        for (Ring<T> ring : rings) {
-            T predecessor = ring.predecessor(key, test);
-            if (predecessor != null) {
-                predecessors.add(predecessor);
-            }
-        }
-        return predecessors;
+        return predecessors(view(), key, test);
     }
 
     @Override
     public void rebalance() {
-        rebalance(members.size());
+        rebalance(memberCount.get());
     }
 
     @Override
     public void rebalance(int newCardinality) {
-        this.cardinality = Math.max(bias + 1, newCardinality);
-        final var ringCount = minMajority(pByz, cardinality, epsilon, bias) * bias + 1;
-        members.values().forEach(t -> t.rebalance(ringCount, this));
-        final var currentCount = rings.size();
-        if (ringCount < currentCount) {
-            for (int i = 0; i < currentCount - ringCount; i++) {
-                var removed = rings.remove(rings.size() - 1);
-                removed.clear();
+        epoch.writeLock().lock();
+        try {
+            this.cardinality = Math.max(bias + 1, newCardinality);
+            final var ringCount = minMajority(pByz, cardinality, epsilon, bias) * bias + 1;
+            members.values().parallelStream().forEach(t -> t.rebalance(ringCount, this));
+            final var rebalanced = new ArrayList<>(rings);
+            final var currentCount = rebalanced.size();
+            if (ringCount < currentCount) {
+                for (int i = 0; i < currentCount - ringCount; i++) {
+                    var removed = rebalanced.remove(rebalanced.size() - 1);
+                    removed.clear();
+                }
+            } else if (ringCount > currentCount) {
+                final var added = new ArrayList<Ring<T>>();
+                for (int i = currentCount; i < ringCount; i++) {
+                    final var ring = new Ring<>(i, this);
+                    rebalanced.add(ring);
+                    added.add(ring);
+                }
+                final var all = List.copyOf(members.values());
+                added.parallelStream().forEach(ring -> ring.insert(all));
             }
-        } else if (ringCount > currentCount) {
-            final var added = new ArrayList<Ring<T>>();
-            for (int i = currentCount; i < ringCount; i++) {
-                final var ring = new Ring<>(i, this);
-                rings.add(ring);
-                added.add(ring);
+            assert rebalanced.size() == ringCount : "Ring count: " + rebalanced.size() + " does not match: "
+            + ringCount;
+            rings = List.copyOf(rebalanced);
+            if (ringCount != currentCount) {
+                reshaped = true;
+                advance();
             }
-            assert rings.size() == ringCount : "Whoops: " + rings.size() + " != " + ringCount;
-            members.values().forEach(t -> {
-                for (var ring : added) {
-                    ring.insert(t.member);
-                }
-            });
+            log.debug("Rebalanced: {} from: {} to: {} tolerance: {}", id, currentCount, ringCount, toleranceLevel());
+        } finally {
+            epoch.writeLock().unlock();
         }
-        assert rings.size() == ringCount : "Ring count: " + rings.size() + " does not match: " + ringCount;
-        log.debug("Rebalanced: {} from: {} to: {} tolerance: {}", id, currentCount, rings.size(), toleranceLevel());
     }
 
     @Override
     public UUID register(MembershipListener<T> listener) {
+        return register(listener, null);
+    }
+
+    /**
+     * Register the listener, which is notified on the executor, or on the thread making the change if null
+     */
+    @Override
+    public UUID register(MembershipListener<T> listener, Executor executor) {
         var uuid = UUID.randomUUID();
-        membershipListeners.put(uuid, listener);
+        membershipListeners.put(uuid, new Registration<>(listener, executor));
         return uuid;
     }
 
     @Override
     public <Q extends T> void remove(Collection<Q> members) {
-        members.forEach(m -> remove(m));
+        apply(ViewDelta.<T>newBuilder().leave(members.stream().map(m -> m.getId()).toList()).build());
     }
 
     @Override
     public void remove(Digest id) {
-        var removed = members.remove(id);
-        if (removed != null) {
-            for (Ring<T> ring : rings) {
-                ring.delete(removed.member);
+        epoch.writeLock().lock();
+        try {
+            if (removed(id) != null) {
+                advance();
             }
+        } finally {
+            epoch.writeLock().unlock();
         }
     }
 
@@ -504,15 +631,22 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public <N extends T> List<T> sample(int range, BitsStreamGenerator entropy, Digest exc) {
-        Member excluded = getMember(exc);
-        return rings.get(entropy.nextInt(rings.size()))
-                    .stream()
-                    .collect(new ReservoirSampler<T>(excluded, range, entropy));
+        return view().sample(range, entropy, exc);
+    }
+
+    @Override
+    public List<T> sample(int range, BitsStreamGenerator entropy, Digest exc, PeerSelector selector) {
+        return view().sample(range, entropy, exc, selector);
+    }
+
+    @Override
+    public void setSuspicion(Suspicion suspicion) {
+        this.suspicion = suspicion == null ? Suspicion.NONE : suspicion;
     }
 
     @Override
     public int size() {
-        return members.size();
+        return memberCount.get();
     }
 
     /**
@@ -520,7 +654,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> successors(Digest key) {
-        return successors(key, t -> true);
+        return memoized(Lookup.Kind.SUCCESSORS, key, v -> v.successors(key, t -> true));
     }
 
     /**
@@ -528,14 +662,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> successors(Digest key, Predicate<T> test) {
-        List<T> successors = new ArrayList<>();
-        for (Ring<T> ring : rings) {
-            T successor = ring.successor(key, test);
-            if (successor != null) {
-                successors.add(successor);
-            }
-        }
-        return successors;
+        return view().successors(key, test);
     }
 
     /**
@@ -543,7 +670,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> successors(T key) {
-        return successors(key, t -> true);
+        return memoized(Lookup.Kind.MEMBER_SUCCESSORS, key.getId(), v -> successors(v, key, t -> true));
     }
 
     /**
@@ -551,14 +678,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
      */
     @Override
     public List<T> successors(T key, Predicate<T> test) {
-        List<T> successors = new ArrayList<>();
-        for (Ring<T> ring : rings) {
-            T successor = ring.successor(key, test);
-            if (successor != null) {
-                successors.add(successor);
-            }
-        }
-        return successors;
+        return successors(view(), key, test);
     }
 
     /**
@@ -586,7 +706,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
 
     @Override
     public int totalCount() {
-        return members.size();
+        return memberCount.get();
     }
 
     @Override
@@ -594,31 +714,305 @@ public class ContextImpl<T extends Member> implements Context<T> {
         return ring >= 0 && ring < rings.size();
     }
 
+    /**
+     * @return the distinct successors of the key, at most one per ring
+     */
+    @Override
+    public List<T> uniqueSuccessors(Digest key) {
+        return memoized(Lookup.Kind.UNIQUE_SUCCESSORS, key, v -> v.uniqueSuccessors(key));
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Answer the view most recently published by a change to the membership. Readers never lock: the view reflects
+     * every change that has completed
+     */
+    @Override
+    public ContextView<T> view() {
+        return view;
+    }
+
+    /**
+     * Activate the tracked member, maintaining the active and offline indexes. Transitions of a member are serialized
+     * on its Tracked, so that the indexes agree with the member's state
+     */
+    private boolean activate(Tracked<T> tracked) {
+        epoch.readLock().lock();
+        try {
+            synchronized (tracked) {
+                if (!activated(tracked)) {
+                    return false;
+                }
+                advance();
+                return true;
+            }
+        } finally {
+            epoch.readLock().unlock();
+        }
+    }
+
+    /**
+     * Transition the tracked member to active, maintaining the active and offline indexes. The caller must hold the
+     * epoch exclusively, or the epoch and the monitor of the tracked member
+     *
+     * @return true if the member was transitioned
+     */
+    private boolean activated(Tracked<T> tracked) {
+        if (members.get(tracked.member.getId()) != tracked || !tracked.activate()) {
+            return false;
+        }
+        offline.remove(tracked.member.getId());
+        active.put(tracked.member.getId(), tracked.member);
+        activeCount.incrementAndGet();
+        flipped.add(tracked);
+        return true;
+    }
+
+    /**
+     * Advance the version of the membership, clearing the memoized lookups of prior versions, and publish the view of
+     * the new version. The caller must hold the epoch
+     */
+    private void advance() {
+        version.incrementAndGet();
+        lookups.invalidateAll();
+        publish();
+    }
+
     private Digest[] hashesFor(T m) {
-        Digest key = m.getId();
-        Digest[] s = new Digest[rings.size()];
-        for (int ring = 0; ring < rings.size(); ring++) {
-            s[ring] = hashFor(key, ring);
+        return pool.ringHashes(id, m.getId(), rings.size());
+    }
+
+    /**
+     * Add the members that are not already members, in bulk: the ring hashes of the new members are computed in
+     * parallel, and each ring is loaded with all the new members at once. The caller must hold the epoch exclusively
+     *
+     * @return the members added
+     */
+    private List<Tracked<T>> join(Collection<? extends T> joining) {
+        var fresh = new LinkedHashMap<Digest, T>();
+        for (var m : joining) {
+            if (!members.containsKey(m.getId())) {
+                fresh.putIfAbsent(m.getId(), m);
+            }
         }
-        return s;
+        if (fresh.isEmpty()) {
+            return Collections.emptyList();
+        }
+        var tracked = fresh.values().parallelStream().map(m -> new Tracked<>(m, () -> hashesFor(m))).toList();
+        tracked.forEach(t -> {
+            members.put(t.member.getId(), t);
+            offline.put(t.member.getId(), t.member);
+        });
+        memberCount.addAndGet(tracked.size());
+        rings.parallelStream().forEach(ring -> ring.insert(tracked));
+        reshaped = true;
+        return tracked;
     }
 
-    private Tracked<T> tracking(T m) {
-        var tracking = members.computeIfAbsent(m.getId(), id -> {
-            for (var ring : rings) {
-                ring.insert(m);
+    /**
+     * Answer the memoized result of the lookup on the current view, computing and memoizing it if absent
+     */
+    private List<T> memoized(Lookup.Kind kind, Digest key, Function<ContextView<T>, List<T>> lookup) {
+        final var current = view();
+        final var memo = new Lookup(current.version(), kind, key);
+        var result = lookups.getIfPresent(memo);
+        if (result == null) {
+            result = List.copyOf(lookup.apply(current));
+            lookups.put(memo, result);
+        }
+        return result;
+    }
+
+    /**
+     * Notify the registered listeners, each on its executor, if any
+     */
+    private void notifyListeners(Consumer<MembershipListener<T>> notification) {
+        membershipListeners.values().forEach(registration -> {
+            Runnable notify = () -> {
+                try {
+                    notification.accept(registration.listener());
+                } catch (Throwable e) {
+                    log.error("error notifying listener: " + registration.listener(), e);
+                }
+            };
+            if (registration.executor() == null) {
+                notify.run();
+            } else {
+                try {
+                    registration.executor().execute(notify);
+                } catch (RejectedExecutionException e) {
+                    log.trace("Rejected notification of listener: {}", registration.listener());
+                }
             }
-            return new Tracked<>(m, () -> hashesFor(m));
         });
-        return tracking;
+    }
+
+    /**
+     * Take the tracked member offline, maintaining the active and offline indexes
+     */
+    private boolean offline(Tracked<T> tracked) {
+        epoch.readLock().lock();
+        try {
+            synchronized (tracked) {
+                if (!offlined(tracked)) {
+                    return false;
+                }
+                advance();
+                return true;
+            }
+        } finally {
+            epoch.readLock().unlock();
+        }
+    }
+
+    /**
+     * Transition the tracked member to offline, maintaining the active and offline indexes. The caller must hold the
+     * epoch exclusively, or the epoch and the monitor of the tracked member
+     *
+     * @return true if the member was transitioned
+     */
+    private boolean offlined(Tracked<T> tracked) {
+        if (members.get(tracked.member.getId()) != tracked || !tracked.offline()) {
+            return false;
+        }
+        active.remove(tracked.member.getId());
+        offline.put(tracked.member.getId(), tracked.member);
+        activeCount.decrementAndGet();
+        flipped.add(tracked);
+        return true;
+    }
+
+    /**
+     * @return the predecessor of the member on each ring of the view that passes the test
+     */
+    private List<T> predecessors(ContextView<T> view, T key, Predicate<T> test) {
+        List<T> predecessors = new ArrayList<>();
+        for (var ring : view.rings().toList()) {
+            T predecessor = ring.predecessor(hashFor(key, ring.index()), test);
+            if (predecessor != null) {
+                predecessors.add(predecessor);
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Publish the view of the current version. A reshaped membership is snapshot in full, which the caller must hold
+     * the epoch exclusively to do. Otherwise, the view is derived from the previous view, updating the activity of the
+     * flipped members. The flipped members are drained before their activity is read, so a concurrent flip is either
+     * included here or drained by its own publication, and publications are serialized so that the versions of the
+     * published views only increase
+     */
+    private void publish() {
+        publishing.lock();
+        try {
+            final var v = version.get();
+            final var current = view;
+            if (current != null && current.version() >= v) {
+                return;
+            }
+            final var drained = new ArrayList<Tracked<T>>();
+            for (var i = flipped.iterator(); i.hasNext(); ) {
+                drained.add(i.next());
+                i.remove();
+            }
+            if (current == null || reshaped) {
+                reshaped = false;
+                view = ContextView.snapshot(v, id, bias, members.values(), rings);
+            } else {
+                view = current.derive(v, drained);
+            }
+        } finally {
+            publishing.unlock();
+        }
+    }
+
+    /**
+     * Remove the member from the rings and indexes. The caller must hold the epoch exclusively
+     *
+     * @return the removed member, or null if not a member
+     */
+    private Tracked<T> removed(Digest id) {
+        var removed = members.remove(id);
+        if (removed != null) {
+            reshaped = true;
+            for (Ring<T> ring : rings) {
+                ring.delete(removed.member);
+            }
+            synchronized (removed) {
+                if (active.remove(id) != null) {
+                    activeCount.decrementAndGet();
+                }
+                offline.remove(id);
+                memberCount.decrementAndGet();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the successor of the member on each ring of the view that passes the test
+     */
+    private List<T> successors(ContextView<T> view, T key, Predicate<T> test) {
+        List<T> successors = new ArrayList<>();
+        for (var ring : view.rings().toList()) {
+            T successor = ring.successor(hashFor(key, ring.index()), test);
+            if (successor != null) {
+                successors.add(successor);
+            }
+        }
+        return successors;
+    }
+
+    private Tracked<T> tracking(T m) {
+        var tracking = members.get(m.getId());
+        if (tracking != null) {
+            return tracking;
+        }
+        epoch.writeLock().lock();
+        try {
+            final var created = new Tracked<>(m, () -> hashesFor(m));
+            synchronized (created) {
+                tracking = members.putIfAbsent(m.getId(), created);
+                if (tracking != null) {
+                    return tracking;
+                }
+                for (var ring : rings) {
+                    ring.insert(m);
+                }
+                offline.put(m.getId(), m);
+                memberCount.incrementAndGet();
+                reshaped = true;
+                advance();
+            }
+            return created;
+        } finally {
+            epoch.writeLock().unlock();
+        }
+    }
+
+    private record Registration<T extends Member>(MembershipListener<T> listener, Executor executor) {
+    }
+
+    /**
+     * The key of a memoized lookup
+     */
+    private record Lookup(long version, Kind kind, Digest key) {
+        enum Kind {
+            MEMBER_PREDECESSORS, MEMBER_SUCCESSORS, PREDECESSORS, SUCCESSORS, UNIQUE_SUCCESSORS
+        }
     }
 
     public static class Tracked<M extends Member> {
         private static final Logger log = LoggerFactory.getLogger(Tracked.class);
 
-        private final AtomicBoolean active = new AtomicBoolean(false);
-        private final M             member;
-        private       Digest[]      hashes;
+        private final    AtomicBoolean active = new AtomicBoolean(false);
+        private final    M             member;
+        private volatile Digest[]      hashes;
 
         public Tracked(M member, Supplier<Digest[]> hashes) {
             this.member = member;
@@ -659,12 +1053,7 @@ public class ContextImpl<T extends Member> implements Context<T> {
         }
 
         private void rebalance(int ringCount, ContextImpl<M> contextImpl) {
-            final var newHashes = new Digest[ringCount];
-            System.arraycopy(hashes, 0, newHashes, 0, Math.min(ringCount, hashes.length));
-            for (int i = Math.min(ringCount, hashes.length); i < newHashes.length; i++) {
-                newHashes[i] = contextImpl.hashFor(member.getId(), i);
-            }
-            hashes = newHashes;
+            hashes = contextImpl.pool.ringHashes(contextImpl.id, member.getId(), ringCount, hashes);
         }
     }
 }
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import com.hellblazer.cryptography.hash.Digest;
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * An immutable snapshot of a Context's membership at a version. Each ring is a pair of parallel arrays of the ring
+ * hashes, in ring order, and the members having them, along with the activity of each member at the time of the
+ * snapshot. Readers of a view see a consistent membership without locking, and derived structures may be keyed by the
+ * version of the view they were computed from.
+ * <p>
+ * A view of a later version in which only the activity of members has changed is derived from its predecessor: the
+ * membership and the ring arrays are shared, and only the activity of the changed members is updated.
+ *
+ * @author hal.hildebrand
+ */
+public final class ContextView<T extends Member> {
+    private final    boolean[]         active;
+    private final    int               activeCount;
+    private final    int               bias;
+    private final    Digest            id;
+    private final    Membership<T>     membership;
+    private final    List<RingView<T>> rings;
+    private final    long              version;
+    private volatile List<T>           activeMembers;
+
+    private ContextView(long version, Digest id, int bias, Membership<T> membership, boolean[] active,
+                        int activeCount, List<RingView<T>> rings, List<T> activeMembers) {
+        this.version = version;
+        this.id = id;
+        this.bias = bias;
+        this.membership = membership;
+        this.active = active;
+        this.activeCount = activeCount;
+        this.rings = rings;
+        this.activeMembers = activeMembers;
+    }
+
+    /**
+     * Snapshot the members and rings of a context. The caller must ensure the members, their activity and the rings
+     * are not concurrently mutated
+     *
+     * @param tracked - the tracked members of the context, in id order
+     */
+    static <T extends Member> ContextView<T> snapshot(long version, Digest id, int bias,
+                                                      Collection<ContextImpl.Tracked<T>> tracked,
+                                                      List<Ring<T>> rings) {
+        var members = new ArrayList<T>(tracked.size());
+        var ordinals = new HashMap<Digest, Integer>(tracked.size() * 2);
+        var active = new boolean[tracked.size()];
+        var activeCount = 0;
+        for (var t : tracked) {
+            ordinals.put(t.member().getId(), members.size());
+            if (t.isActive()) {
+                active[members.size()] = true;
+                activeCount++;
+            }
+            members.add(t.member());
+        }
+        var views = new ArrayList<RingView<T>>(rings.size());
+        for (var ring : rings) {
+            // the index arrays are immutable, and so are shared rather than copied
+            var indexed = ring.index();
+            var activity = new boolean[indexed.size()];
+            for (int i = 0; i < activity.length; i++) {
+                var ordinal = ordinals.get(indexed.members[i].getId());
+                activity[i] = ordinal != null && active[ordinal];
+            }
+            views.add(new RingView<>(ring.getIndex(), indexed.hashes, indexed.members, activity));
+        }
+        return new ContextView<>(version, id, bias,
+                                 new Membership<>(Collections.unmodifiableList(members), ordinals), active,
+                                 activeCount, Collections.unmodifiableList(views), null);
+    }
+
+    public int activeCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return the active members, in id order
+     */
+    public List<T> activeMembers() {
+        var current = activeMembers;
+        if (current == null) {
+            var selected = new ArrayList<T>(activeCount);
+            for (int i = 0; i < active.length; i++) {
+                if (active[i]) {
+                    selected.add(membership.members.get(i));
+                }
+            }
+            current = Collections.unmodifiableList(selected);
+            activeMembers = current;
+        }
+        return current;
+    }
+
+    public Digest getId() {
+        return id;
+    }
+
+    public T getMember(Digest memberId) {
+        var ordinal = membership.ordinals.get(memberId);
+        return ordinal == null ? null : membership.members.get(ordinal);
+    }
+
+    public int getRingCount() {
+        return rings.size();
+    }
+
+    public Digest hashFor(Digest d, int ring) {
+        return Context.hashFor(id, ring, d);
+    }
+
+    public boolean isActive(Digest memberId) {
+        var ordinal = membership.ordinals.get(memberId);
+        return ordinal != null && active[ordinal];
+    }
+
+    public boolean isMember(Digest memberId) {
+        return membership.ordinals.containsKey(memberId);
+    }
+
+    public int majority() {
+        return getRingCount() - toleranceLevel();
+    }
+
+    public int memberCount() {
+        return membership.members.size();
+    }
+
+    /**
+     * @return the predecessor on each ring of the key that passes the test
+     */
+    public List<T> predecessors(Digest key, Predicate<T> test) {
+        var predecessors = new ArrayList<T>(rings.size());
+        for (var ring : rings) {
+            var predecessor = ring.predecessor(hashFor(key, ring.index()), test);
+            if (predecessor != null) {
+                predecessors.add(predecessor);
+            }
+        }
+        return predecessors;
+    }
+
+    public RingView<T> ring(int index) {
+        if (index < 0 || index >= rings.size()) {
+            throw new IllegalArgumentException("Not a valid ring #: " + index + " max: " + (rings.size() - 1));
+        }
+        return rings.get(index);
+    }
+
+    public Stream<RingView<T>> rings() {
+        return rings.stream();
+    }
+
+    /**
+     * Answer a random sample of at most range size from the members of a random ring of the view
+     */
+    public List<T> sample(int range, BitsStreamGenerator entropy, Digest exc) {
+        if (rings.isEmpty()) {
+            return Collections.emptyList();
+        }
+        var ring = rings.get(entropy.nextInt(rings.size()));
+        return ring.sample(range, entropy, exc == null ? -1 : ring.indexOf(hashFor(exc, ring.index())));
+    }
+
+    /**
+     * Answer a sample of at most range size from the active members of the view, chosen by the selector
+     */
+    public List<T> sample(int range, BitsStreamGenerator entropy, Digest exc, PeerSelector selector) {
+        var candidates = activeMembers();
+        if (exc != null && isActive(exc)) {
+            candidates = candidates.stream().filter(m -> !m.getId().equals(exc)).toList();
+        }
+        return selector.select(candidates, range, entropy);
+    }
+
+    /**
+     * @return the successor on each ring of the key that passes the test. As with Ring.successor(Digest), the key is
+     * the location on each ring, and is not hashed
+     */
+    public List<T> successors(Digest key, Predicate<T> test) {
+        var successors = new ArrayList<T>(rings.size());
+        for (var ring : rings) {
+            var successor = ring.successor(key, test);
+            if (successor != null) {
+                successors.add(successor);
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * @return the distinct successors of the key, at most one per ring
+     */
+    public List<T> uniqueSuccessors(Digest key) {
+        var unique = new LinkedHashSet<T>();
+        successors(key, m -> unique.size() < rings.size() && unique.add(m));
+        return new ArrayList<>(unique);
+    }
+
+    public int toleranceLevel() {
+        return (rings.size() - 1) / bias;
+    }
+
+    @Override
+    public String toString() {
+        return "ContextView [" + id + ":" + version + "]";
+    }
+
+    /**
+     * @return the version of the context's membership this view snapshots
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Derive the view of a later version in which only the activity of members has changed. The membership and ring
+     * arrays of the receiver are shared, and the activity of each ring is updated only at the positions of the members
+     * whose activity changed. The caller must ensure the activity of the members is not concurrently mutated
+     *
+     * @param flipped - the members whose activity may have changed since the receiver was taken
+     */
+    ContextView<T> derive(long version, Collection<ContextImpl.Tracked<T>> flipped) {
+        var changed = new ArrayList<ContextImpl.Tracked<T>>(flipped.size());
+        for (var t : flipped) {
+            var ordinal = membership.ordinals.get(t.member().getId());
+            if (ordinal != null && active[ordinal] != t.isActive()) {
+                changed.add(t);
+            }
+        }
+        if (changed.isEmpty()) {
+            return new ContextView<>(version, id, bias, membership, active, activeCount, rings, activeMembers);
+        }
+        var next = active.clone();
+        var count = activeCount;
+        var activity = new boolean[changed.size()];
+        for (int i = 0; i < activity.length; i++) {
+            var t = changed.get(i);
+            activity[i] = t.isActive();
+            next[membership.ordinals.get(t.member().getId())] = activity[i];
+            count += activity[i] ? 1 : -1;
+        }
+        var views = new ArrayList<RingView<T>>(rings.size());
+        for (var ring : rings) {
+            var positions = new int[activity.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = ring.indexOf(changed.get(i).hash(ring.index()));
+            }
+            views.add(ring.with(positions, activity));
+        }
+        return new ContextView<>(version, id, bias, membership, next, count, Collections.unmodifiableList(views),
+                                 null);
+    }
+
+    /**
+     * The members of a view, in id order, and the ordinal of each member in that order. Shared by the views derived
+     * from a snapshot
+     */
+    private record Membership<T extends Member>(List<T> members, Map<Digest, Integer> ordinals) {
+    }
+
+    /**
+     * An immutable ring of a ContextView. Positions are the indexes of members in ring order. The positions of the
+     * active members are indexed separately, so that scans for active members skip offline members entirely
+     */
+    public static final class RingView<T extends Member> {
+        private final boolean[] active;
+        private final int[]     actives;
+        private final Digest[]  hashes;
+        private final int       index;
+        private final Member[]  members;
+
+        RingView(int index, Digest[] hashes, Member[] members, boolean[] active) {
+            this(index, hashes, members, active, actives(active));
+        }
+
+        private RingView(int index, Digest[] hashes, Member[] members, boolean[] active, int[] actives) {
+            this.index = index;
+            this.hashes = hashes;
+            this.members = members;
+            this.active = active;
+            this.actives = actives;
+        }
+
+        private static int[] actives(boolean[] active) {
+            int count = 0;
+            for (var a : active) {
+                if (a) {
+                    count++;
+                }
+            }
+            var actives = new int[count];
+            for (int i = 0, j = 0; i < active.length; i++) {
+                if (active[i]) {
+                    actives[j++] = i;
+                }
+            }
+            return actives;
+        }
+
+        /**
+         * @return the number of active members of the ring
+         */
+        public int activeSize() {
+            return actives.length;
+        }
+
+        /**
+         * @return the position of the first member whose hash is greater than or equal to the hash, or size() if none
+         */
+        public int ceiling(Digest hash) {
+            int low = 0;
+            int high = hashes.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (hashes[mid].compareTo(hash) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return the first active predecessor of the hash, in counter clockwise order, for which the predicate
+         * evaluates to SUCCESS. Answer null if the predicate evaluates to FAIL. Offline members and the member at the
+         * hash are never evaluated
+         */
+        public T findActivePredecessor(Digest hash, Function<T, Ring.IterateResult> predicate) {
+            final var n = actives.length;
+            final var start = activeCeiling(ceiling(hash)) - 1 + n;
+            for (int k = 0; k < n; k++) {
+                final var i = actives[(start - k) % n];
+                if (hashes[i].equals(hash)) {
+                    continue;
+                }
+                switch (predicate.apply(get(i))) {
+                case CONTINUE:
+                    continue;
+                case FAIL:
+                    return null;
+                case SUCCESS:
+                    return get(i);
+                default:
+                    throw new IllegalStateException();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the first active successor of the hash, in clockwise order, for which the predicate evaluates to
+         * SUCCESS. Answer null if the predicate evaluates to FAIL. Offline members and the member at the hash are never
+         * evaluated
+         */
+        public T findActiveSuccessor(Digest hash, Function<T, Ring.IterateResult> predicate) {
+            final var n = actives.length;
+            final var start = activeCeiling(ceiling(hash));
+            for (int k = 0; k < n; k++) {
+                final var i = actives[(start + k) % n];
+                if (hashes[i].equals(hash)) {
+                    continue;
+                }
+                switch (predicate.apply(get(i))) {
+                case CONTINUE:
+                    continue;
+                case FAIL:
+                    return null;
+                case SUCCESS:
+                    return get(i);
+                default:
+                    throw new IllegalStateException();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the first predecessor of the hash, in counter clockwise order, for which the predicate evaluates to
+         * SUCCESS. Answer null if the predicate evaluates to FAIL. The member at the hash is never evaluated
+         */
+        public T findPredecessor(Digest hash, Function<T, Ring.IterateResult> predicate) {
+            final var n = hashes.length;
+            final var start = ceiling(hash) - 1 + n;
+            for (int k = 0; k < n; k++) {
+                final var i = (start - k) % n;
+                if (hashes[i].equals(hash)) {
+                    continue;
+                }
+                switch (predicate.apply(get(i))) {
+                case CONTINUE:
+                    continue;
+                case FAIL:
+                    return null;
+                case SUCCESS:
+                    return get(i);
+                default:
+                    throw new IllegalStateException();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return the first successor of the hash, in clockwise order, for which the predicate evaluates to SUCCESS.
+         * Answer null if the predicate evaluates to FAIL. The member at the hash is never evaluated
+         */
+        public T findSuccessor(Digest hash, Function<T, Ring.IterateResult> predicate) {
+            final var n = hashes.length;
+            final var start = ceiling(hash);
+            for (int k = 0; k < n; k++) {
+                final var i = (start + k) % n;
+                if (hashes[i].equals(hash)) {
+                    continue;
+                }
+                switch (predicate.apply(get(i))) {
+                case CONTINUE:
+                    continue;
+                case FAIL:
+                    return null;
+                case SUCCESS:
+                    return get(i);
+                default:
+                    throw new IllegalStateException();
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int position) {
+            return (T) members[position];
+        }
+
+        /**
+         * @return the position of the member with the hash, or -1 if none
+         */
+        public int indexOf(Digest hash) {
+            final var position = ceiling(hash);
+            return position < hashes.length && hashes[position].equals(hash) ? position : -1;
+        }
+
+        public Digest hash(int position) {
+            return hashes[position];
+        }
+
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @return true if the member at the position was active when the view was taken
+         */
+        public boolean isActive(int position) {
+            return active[position];
+        }
+
+        /**
+         * @return the first predecessor of the hash for which the predicate is true. The member at the hash is never
+         * evaluated
+         */
+        public T predecessor(Digest hash, Predicate<T> predicate) {
+            return findPredecessor(hash, m -> predicate.test(m) ? Ring.IterateResult.SUCCESS
+                                                                : Ring.IterateResult.CONTINUE);
+        }
+
+        /**
+         * Answer a uniform random sample of at most range members of the ring, excluding the member at the excluded
+         * position, if any. Positions are drawn with Floyd's algorithm, so the cost is proportional to the size of the
+         * sample rather than the size of the ring. Floyd's algorithm chooses a uniform subset but not a uniform order,
+         * so the sample is shuffled, and any prefix of it is also a uniform sample
+         *
+         * @param excluded - the position to exclude from the sample, or -1 for none
+         */
+        public List<T> sample(int range, BitsStreamGenerator entropy, int excluded) {
+            final var n = excluded < 0 ? hashes.length : hashes.length - 1;
+            final var k = Math.min(range, n);
+            if (k <= 0) {
+                return Collections.emptyList();
+            }
+            var chosen = new LinkedHashSet<Integer>(k * 2);
+            for (int j = n - k; j < n; j++) {
+                var t = entropy.nextInt(j + 1);
+                chosen.add(chosen.contains(t) ? j : t);
+            }
+            var sample = new ArrayList<T>(k);
+            for (var position : chosen) {
+                sample.add(get(excluded >= 0 && position >= excluded ? position + 1 : position));
+            }
+            for (int i = sample.size() - 1; i > 0; i--) {
+                Collections.swap(sample, i, entropy.nextInt(i + 1));
+            }
+            return sample;
+        }
+
+        public int size() {
+            return hashes.length;
+        }
+
+        /**
+         * @return the members of the ring, in ring order
+         */
+        public Stream<T> stream() {
+            return IntStream.range(0, members.length).mapToObj(i -> get(i));
+        }
+
+        /**
+         * @return the first successor of the hash for which the predicate is true. The member at the hash is never
+         * evaluated
+         */
+        public T successor(Digest hash, Predicate<T> predicate) {
+            return findSuccessor(hash, m -> predicate.test(m) ? Ring.IterateResult.SUCCESS
+                                                              : Ring.IterateResult.CONTINUE);
+        }
+
+        @Override
+        public String toString() {
+            return "RingView[" + index + "] : " + Arrays.asList(hashes);
+        }
+
+        /**
+         * @return a ring sharing the hashes and members of the receiver, with the activity of the distinct positions
+         * replaced. Positions of -1 are ignored. The active positions are spliced rather than rescanned
+         */
+        RingView<T> with(int[] positions, boolean[] activity) {
+            var next = active.clone();
+            var count = actives.length;
+            for (int i = 0; i < positions.length; i++) {
+                final var p = positions[i];
+                if (p >= 0 && next[p] != activity[i]) {
+                    next[p] = activity[i];
+                    count += activity[i] ? 1 : -1;
+                }
+            }
+            var sorted = positions.clone();
+            Arrays.sort(sorted);
+            var spliced = new int[count];
+            int from = 0;
+            int to = 0;
+            for (var p : sorted) {
+                if (p < 0) {
+                    continue;
+                }
+                final var upTo = activeCeiling(p);
+                System.arraycopy(actives, from, spliced, to, upTo - from);
+                to += upTo - from;
+                from = upTo;
+                if (from < actives.length && actives[from] == p) {
+                    from++;
+                }
+                if (next[p]) {
+                    spliced[to++] = p;
+                }
+            }
+            System.arraycopy(actives, from, spliced, to, actives.length - from);
+            return new RingView<>(index, hashes, members, next, spliced);
+        }
+
+        /**
+         * @return the index into the active positions of the first active position greater than or equal to the
+         * position
+         */
+        private int activeCeiling(int position) {
+            final var found = Arrays.binarySearch(actives, position);
+            return found >= 0 ? found : -found - 1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.hellblazer.cryptography.hash.Digest;
+
+/**
+ * A pool of interned member digests and member ring hashes, shared between contexts. Contexts with the same id and
+ * ring count compute identical ring hashes for a member, so the contexts of a pool - typically those built through
+ * dependUpon over the same member set - share a single, immutable array of ring hashes per member rather than each
+ * holding its own copy. The ring keys of those contexts are the same Digest instances as well.
+ * <p>
+ * The pool holds its entries weakly: an entry is retained only while some context or caller still references it.
+ *
+ * @author hal.hildebrand
+ */
+public final class DigestPool {
+    private static final DigestPool DEFAULT = new DigestPool();
+
+    private final Interner<Digest>         digests    = Interners.newWeakInterner();
+    private final Cache<RingKey, Digest[]> ringHashes = CacheBuilder.newBuilder().weakValues().build();
+
+    /**
+     * @return the pool shared by default between all contexts
+     */
+    public static DigestPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the canonical instance of the digest
+     */
+    public Digest intern(Digest digest) {
+        return digest == null ? null : digests.intern(digest);
+    }
+
+    /**
+     * Answer the shared ring hashes of the member in the context. The answered array must not be modified
+     *
+     * @param context - the id of the context
+     * @param member  - the id of the member
+     * @param rings   - the number of rings of the context
+     * @return the ring hashes of the member, indexed by ring
+     */
+    public Digest[] ringHashes(Digest context, Digest member, int rings) {
+        return ringHashes(context, member, rings, new Digest[0]);
+    }
+
+    /**
+     * Answer the shared ring hashes of the member in the context, reusing the known leading ring hashes - such as
+     * those of the member before the context was rebalanced - if the pool must compute them. The answered array must
+     * not be modified
+     */
+    public Digest[] ringHashes(Digest context, Digest member, int rings, Digest[] known) {
+        return ringHashes.asMap().computeIfAbsent(new RingKey(intern(context), intern(member), rings), k -> {
+            var hashes = new Digest[rings];
+            var reused = Math.min(rings, known.length);
+            System.arraycopy(known, 0, hashes, 0, reused);
+            for (int i = reused; i < rings; i++) {
+                hashes[i] = Context.hashFor(k.context, i, k.member);
+            }
+            return hashes;
+        });
+    }
+
+    /**
+     * @return the approximate number of shared ring hash arrays
+     */
+    public long size() {
+        return ringHashes.size();
+    }
+
+    private record RingKey(Digest context, Digest member, int rings) {
+    }
+}
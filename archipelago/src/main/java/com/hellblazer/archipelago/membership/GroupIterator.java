@@ -7,6 +7,8 @@
 package com.hellblazer.archipelago.membership;
 
 import com.hellblazer.cryptography.Entropy;
+import org.apache.commons.math3.random.BitsStreamGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -14,27 +16,49 @@ import java.util.List;
 import java.util.concurrent.Semaphore;
 
 /**
- * Simple iterator on a group of members, randomly shuffling the membership list after each complete iteration
+ * Simple iterator on a group of members, randomly shuffling the membership list after each complete iteration. With a
+ * PeerSelector, each pass is instead ordered by the selector, e.g. to prefer the least loaded members
  *
  * @author hal.hildebrand
  */
 public class GroupIterator {
-    private final    List<Member> group;
-    private final    Semaphore    exclusive = new Semaphore(1);
-    private volatile int          current   = 0;
+    private final    Semaphore           exclusive = new Semaphore(1);
+    private final    List<Member>        group;
+    private final    PeerSelector        selector;
+    private volatile int                 current   = 0;
+    private          BitsStreamGenerator entropy;
+    private          List<Member>        order;
 
     public GroupIterator(Collection<Member> group) {
+        this(group, null);
+    }
+
+    /**
+     * @param selector - the strategy ordering each pass over the group, or null to securely shuffle the group
+     */
+    public GroupIterator(Collection<Member> group, PeerSelector selector) {
         this.group = new ArrayList<>(group);
+        this.selector = selector;
+        if (selector == null) {
+            order = this.group;
+        } else {
+            entropy = new MersenneTwister(Entropy.nextBitsStreamLong());
+            order = selector.select(this.group, this.group.size(), entropy);
+        }
     }
 
     public Member next() {
         exclusive.acquireUninterruptibly();
         try {
             final var c = current;
-            var m = group.get(c);
-            current = (c + 1) % group.size();
+            var m = order.get(c);
+            current = (c + 1) % order.size();
             if (current == 0) {
-                Entropy.secureShuffle(group);
+                if (selector == null) {
+                    Entropy.secureShuffle(group);
+                } else {
+                    order = selector.select(group, group.size(), entropy);
+                }
             }
             return m;
         } finally {
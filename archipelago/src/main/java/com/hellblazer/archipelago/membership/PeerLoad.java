@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import com.hellblazer.cryptography.hash.Digest;
+
+/**
+ * Feedback on how loaded and how slow each peer currently is, as observed by the calls made to it
+ *
+ * @author hal.hildebrand
+ */
+public interface PeerLoad {
+    /**
+     * No feedback: every peer is idle, with unknown latency
+     */
+    PeerLoad NONE = new PeerLoad() {
+        @Override
+        public int inFlight(Digest member) {
+            return 0;
+        }
+
+        @Override
+        public long latency(Digest member) {
+            return -1;
+        }
+    };
+
+    /**
+     * @return the number of calls to the member that have started and not yet completed
+     */
+    int inFlight(Digest member);
+
+    /**
+     * @return the smoothed round trip time of calls to the member, in nanoseconds, or -1 if unknown
+     */
+    long latency(Digest member);
+}
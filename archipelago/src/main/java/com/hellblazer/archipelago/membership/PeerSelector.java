@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Strategy for choosing peers from a set of candidates. The members selected are distinct, and are answered in the
+ * order of preference, so a selection of all the candidates is an ordering in which to contact them.
+ *
+ * @author hal.hildebrand
+ */
+public interface PeerSelector {
+
+    /**
+     * @return a selector that weights each candidate by the inverse of its smoothed latency, scaled by the calls in
+     * flight to it. Candidates of unknown latency are weighted with the mean of the known latencies
+     */
+    static PeerSelector latencyWeighted(PeerLoad load) {
+        return new LatencyWeighted(load);
+    }
+
+    /**
+     * @return a selector that, for each selection, draws two of the remaining candidates at random and chooses the one
+     * with fewer calls in flight, or the lower latency when they have the same number in flight
+     */
+    static PeerSelector powerOfTwo(PeerLoad load) {
+        return new PowerOfTwo(load);
+    }
+
+    /**
+     * @return a selector that chooses candidates uniformly at random, in time proportional to the selection
+     */
+    static PeerSelector uniform() {
+        return Uniform.INSTANCE;
+    }
+
+    /**
+     * Select at most count distinct members of the candidates
+     *
+     * @return the selected members, in order of preference
+     */
+    <T extends Member> List<T> select(List<? extends T> candidates, int count, BitsStreamGenerator entropy);
+
+    /**
+     * A partial Fisher-Yates shuffle of the candidate positions, tracking only the displaced positions so that a
+     * selection of k members costs O(k) regardless of the number of candidates
+     */
+    final class Positions {
+        private final Map<Integer, Integer> displaced = new HashMap<>();
+        private final int                   size;
+        private       int                   next;
+
+        Positions(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return the candidate at the offset into the unselected positions
+         */
+        int candidate(int offset) {
+            var position = next + offset;
+            return displaced.getOrDefault(position, position);
+        }
+
+        int remaining() {
+            return size - next;
+        }
+
+        /**
+         * Select the candidate at the offset into the unselected positions
+         *
+         * @return the selected candidate
+         */
+        int select(int offset) {
+            var selected = candidate(offset);
+            displaced.put(next + offset, candidate(0));
+            displaced.remove(next);
+            next++;
+            return selected;
+        }
+    }
+
+    final class LatencyWeighted implements PeerSelector {
+        private final PeerLoad load;
+
+        private LatencyWeighted(PeerLoad load) {
+            this.load = load;
+        }
+
+        /**
+         * Weighted sampling without replacement (Efraimidis-Spirakis): each candidate is keyed by log(u) / weight for a
+         * uniform u, and the candidates with the largest keys are selected, in descending order of key
+         */
+        @Override
+        public <T extends Member> List<T> select(List<? extends T> candidates, int count,
+                                                 BitsStreamGenerator entropy) {
+            final var k = Math.min(count, candidates.size());
+            if (k <= 0) {
+                return Collections.emptyList();
+            }
+            var latencies = new long[candidates.size()];
+            var known = 0;
+            var total = 0.0;
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = load.latency(candidates.get(i).getId());
+                if (latencies[i] >= 0) {
+                    known++;
+                    total += latencies[i];
+                }
+            }
+            final var mean = known == 0 ? 1.0 : Math.max(1.0, total / known);
+            var heap = new PriorityQueue<Keyed>(k + 1);
+            for (int i = 0; i < latencies.length; i++) {
+                var latency = latencies[i] < 0 ? mean : Math.max(1.0, latencies[i]);
+                var cost = latency * (1 + load.inFlight(candidates.get(i).getId()));
+                var u = Math.max(entropy.nextDouble(), Double.MIN_VALUE);
+                heap.add(new Keyed(Math.log(u) * cost, i));
+                if (heap.size() > k) {
+                    heap.poll();
+                }
+            }
+            var selected = new ArrayList<T>(k);
+            while (!heap.isEmpty()) {
+                selected.add(candidates.get(heap.poll().index));
+            }
+            Collections.reverse(selected);
+            return selected;
+        }
+
+        private record Keyed(double key, int index) implements Comparable<Keyed> {
+            @Override
+            public int compareTo(Keyed o) {
+                return Double.compare(key, o.key);
+            }
+        }
+    }
+
+    final class PowerOfTwo implements PeerSelector {
+        private final PeerLoad load;
+
+        private PowerOfTwo(PeerLoad load) {
+            this.load = load;
+        }
+
+        @Override
+        public <T extends Member> List<T> select(List<? extends T> candidates, int count,
+                                                 BitsStreamGenerator entropy) {
+            final var k = Math.min(count, candidates.size());
+            if (k <= 0) {
+                return Collections.emptyList();
+            }
+            var positions = new Positions(candidates.size());
+            var selected = new ArrayList<T>(k);
+            while (selected.size() < k) {
+                var remaining = positions.remaining();
+                var first = entropy.nextInt(remaining);
+                if (remaining == 1) {
+                    selected.add(candidates.get(positions.select(first)));
+                    continue;
+                }
+                var second = (first + 1 + entropy.nextInt(remaining - 1)) % remaining;
+                var a = candidates.get(positions.candidate(first));
+                var b = candidates.get(positions.candidate(second));
+                selected.add(candidates.get(positions.select(prefer(a, b) ? first : second)));
+            }
+            return selected;
+        }
+
+        /**
+         * @return true if a is preferred to b
+         */
+        private boolean prefer(Member a, Member b) {
+            var compare = Integer.compare(load.inFlight(a.getId()), load.inFlight(b.getId()));
+            if (compare != 0) {
+                return compare < 0;
+            }
+            var latencyA = load.latency(a.getId());
+            var latencyB = load.latency(b.getId());
+            return latencyA < 0 || latencyB < 0 || latencyA <= latencyB;
+        }
+    }
+
+    final class Uniform implements PeerSelector {
+        private static final Uniform INSTANCE = new Uniform();
+
+        private Uniform() {
+        }
+
+        @Override
+        public <T extends Member> List<T> select(List<? extends T> candidates, int count,
+                                                 BitsStreamGenerator entropy) {
+            final var k = Math.min(count, candidates.size());
+            if (k <= 0) {
+                return Collections.emptyList();
+            }
+            var positions = new Positions(candidates.size());
+            var selected = new ArrayList<T>(k);
+            while (selected.size() < k) {
+                selected.add(candidates.get(positions.select(entropy.nextInt(positions.remaining()))));
+            }
+            return selected;
+        }
+    }
+}
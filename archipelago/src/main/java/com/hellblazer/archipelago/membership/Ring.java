@@ -6,12 +6,14 @@
  */
 package com.hellblazer.archipelago.membership;
 
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Sets;
 import com.hellblazer.cryptography.hash.Digest;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
@@ -19,14 +21,20 @@ import java.util.stream.StreamSupport;
 
 /**
  * A ring of members. Also, too, addressable functions by Digest, for ring operations to obtain members.
+ * <p>
+ * Membership is maintained in a skip list, while lookups are answered from a sorted array index of the ring, which is
+ * rebuilt on the first lookup after the membership of the ring changes.
  *
  * @author hal.hildebrand
  * @since 220
  */
 public class Ring<T extends Member> implements Iterable<T> {
-    private final ContextImpl<T>          context;
-    private final int                     index;
-    private final NavigableMap<Digest, T> ring = new ConcurrentSkipListMap<>();
+    private final    ContextImpl<T>          context;
+    private final    int                     index;
+    private final    AtomicLong              modifications = new AtomicLong();
+    private volatile Index<T>                indexed;
+    private volatile NavigableMap<Digest, T> ring          = new ConcurrentSkipListMap<>();
+
     public Ring(int index, ContextImpl<T> context) {
         this.index = index;
         this.context = context;
@@ -43,30 +51,10 @@ public class Ring<T extends Member> implements Iterable<T> {
         }
         Digest startHash = hash(start);
         Digest stopHash = hash(stop);
-
-        if (startHash.compareTo(stopHash) < 0) {
-            Iterator<T> head = ring.headMap(startHash, false).descendingMap().values().iterator();
-            Iterator<T> tail = ring.tailMap(stopHash, false).descendingMap().values().iterator();
-            return new Iterable<T>() {
-
-                @Override
-                public Iterator<T> iterator() {
-                    return new Iterator<T>() {
-
-                        @Override
-                        public boolean hasNext() {
-                            return tail.hasNext() || head.hasNext();
-                        }
-
-                        @Override
-                        public T next() {
-                            return head.hasNext() ? head.next() : tail.next();
-                        }
-                    };
-                }
-            };
-        }
-        return ring.subMap(stopHash, false, startHash, false).descendingMap().values();
+        final var current = index();
+        final var first = current.ceiling(startHash) - 1;
+        final var count = current.rankBetween(stopHash, startHash);
+        return () -> current.iterator(first, -1, count, m -> false);
     }
 
     /**
@@ -80,37 +68,15 @@ public class Ring<T extends Member> implements Iterable<T> {
         }
         Digest startHash = hash(start);
         Digest stopHash = hash(stop);
-        if (startHash.compareTo(stopHash) < 0) {
-            return ring.subMap(startHash, false, stopHash, false).values();
-        }
-
-        NavigableMap<Digest, T> headMap = ring.headMap(stopHash, false);
-        NavigableMap<Digest, T> tailMap = ring.tailMap(startHash, false);
-
-        Iterator<T> head = headMap.values().iterator();
-        Iterator<T> tail = tailMap.values().iterator();
-        return new Iterable<T>() {
-
-            @Override
-            public Iterator<T> iterator() {
-                return new Iterator<T>() {
-
-                    @Override
-                    public boolean hasNext() {
-                        return tail.hasNext() || head.hasNext();
-                    }
-
-                    @Override
-                    public T next() {
-                        return tail.hasNext() ? tail.next() : head.next();
-                    }
-                };
-            }
-        };
+        final var current = index();
+        final var first = current.higher(startHash);
+        final var count = current.rankBetween(startHash, stopHash);
+        return () -> current.iterator(first, 1, count, m -> false);
     }
 
     public void clear() {
         ring.clear();
+        invalidate();
     }
 
     public boolean contains(Digest id) {
@@ -123,6 +89,7 @@ public class Ring<T extends Member> implements Iterable<T> {
 
     public void delete(T m) {
         ring.remove(hash(m));
+        invalidate();
     }
 
     public Set<Digest> difference(Ring<T> r) {
@@ -176,14 +143,11 @@ public class Ring<T extends Member> implements Iterable<T> {
         if (m < 0) {
             throw new IllegalArgumentException("Must be greater than 0: " + m);
         }
-        int index = m % ring.size();
-        for (Member member : ring.values()) {
-            if (index == 0) {
-                return member;
-            }
-            index--;
+        final var current = index();
+        if (current.size() == 0) {
+            throw new NoSuchElementException("empty ring");
         }
-        throw new NoSuchElementException("empty ring");
+        return current.get(m % current.size());
     }
 
     public int getIndex() {
@@ -209,7 +173,35 @@ public class Ring<T extends Member> implements Iterable<T> {
 
     public T insert(T m) {
         LoggerFactory.getLogger(getClass()).trace("Adding: {} to ring: {}", m, index);
-        return ring.put(hash(m), m);
+        var previous = ring.put(hash(m), m);
+        invalidate();
+        return previous;
+    }
+
+    /**
+     * Insert the tracked members in bulk, using their precomputed hashes. Large insertions rebuild the ring from the
+     * sorted union of its members and the insertions, rather than inserting each member individually. The caller must
+     * ensure the ring is not concurrently mutated
+     */
+    void insert(List<ContextImpl.Tracked<T>> added) {
+        if (added.size() * 4 < ring.size()) {
+            added.forEach(t -> ring.put(t.hash(index), t.member()));
+        } else {
+            var entries = new ArrayList<Map.Entry<Digest, T>>(ring.size() + added.size());
+            entries.addAll(ring.entrySet());
+            added.forEach(t -> entries.add(Map.entry(t.hash(index), t.member())));
+            entries.sort(Map.Entry.comparingByKey());
+            var unique = new ArrayList<Map.Entry<Digest, T>>(entries.size());
+            for (var entry : entries) {
+                if (!unique.isEmpty() && unique.get(unique.size() - 1).getKey().equals(entry.getKey())) {
+                    unique.set(unique.size() - 1, entry);
+                } else {
+                    unique.add(entry);
+                }
+            }
+            ring = new ConcurrentSkipListMap<>(ImmutableSortedMap.copyOf(unique));
+        }
+        invalidate();
     }
 
     /**
@@ -447,42 +439,40 @@ public class Ring<T extends Member> implements Iterable<T> {
      */
     public Iterable<T> traverse(T member) {
         Digest hash = hash(member);
-        Iterator<T> head = ring.headMap(hash, false).values().iterator();
-        Iterator<T> tail = ring.tailMap(hash, false).values().iterator();
-        return new Iterable<T>() {
-
-            @Override
-            public Iterator<T> iterator() {
-                return new Iterator<T>() {
+        final var current = index();
+        final var first = current.higher(hash);
+        final var count = current.size() - (current.contains(hash) ? 1 : 0);
+        return () -> current.iterator(first, 1, count, m -> false);
+    }
 
-                    @Override
-                    public boolean hasNext() {
-                        return tail.hasNext() || head.hasNext();
-                    }
+    /**
+     * @return the sorted array index of the ring, rebuilt from the ring if the ring has changed since it was built
+     */
+    Index<T> index() {
+        final var stamp = modifications.get();
+        var current = indexed;
+        if (current != null && current.stamp == stamp) {
+            return current;
+        }
+        current = new Index<>(stamp, ring);
+        indexed = current;
+        return current;
+    }
 
-                    @Override
-                    public T next() {
-                        return tail.hasNext() ? tail.next() : head.next();
-                    }
-                };
-            }
-        };
+    private void invalidate() {
+        modifications.incrementAndGet();
     }
 
     private T pred(Digest hash, Function<T, IterateResult> predicate) {
-        for (T member : ring.headMap(hash, false).descendingMap().values()) {
-            switch (predicate.apply(member)) {
-            case CONTINUE:
+        final var current = index();
+        final var n = current.size();
+        final var start = current.ceiling(hash) - 1 + n;
+        for (int k = 0; k < n; k++) {
+            final var i = (start - k) % n;
+            if (current.matches(i, hash)) {
                 continue;
-            case FAIL:
-                return null;
-            case SUCCESS:
-                return member;
-            default:
-                throw new IllegalStateException();
             }
-        }
-        for (T member : ring.tailMap(hash, false).descendingMap().values()) {
+            final var member = current.get(i);
             switch (predicate.apply(member)) {
             case CONTINUE:
                 continue;
@@ -498,12 +488,15 @@ public class Ring<T extends Member> implements Iterable<T> {
     }
 
     private T pred(Digest hash, Predicate<T> predicate) {
-        for (T member : ring.headMap(hash, false).descendingMap().values()) {
-            if (predicate.test(member)) {
-                return member;
+        final var current = index();
+        final var n = current.size();
+        final var start = current.ceiling(hash) - 1 + n;
+        for (int k = 0; k < n; k++) {
+            final var i = (start - k) % n;
+            if (current.matches(i, hash)) {
+                continue;
             }
-        }
-        for (T member : ring.tailMap(hash, false).descendingMap().values()) {
+            final var member = current.get(i);
             if (predicate.test(member)) {
                 return member;
             }
@@ -512,76 +505,32 @@ public class Ring<T extends Member> implements Iterable<T> {
     }
 
     private Iterable<T> preds(Digest hash, Predicate<T> predicate) {
-        Iterator<T> tail = ring.tailMap(hash, false).descendingMap().values().iterator();
-        Iterator<T> head = ring.headMap(hash, false).descendingMap().values().iterator();
-
-        Iterator<T> iterator = new Iterator<T>() {
-            private T next = nextMember();
-
-            @Override
-            public boolean hasNext() {
-                return next != null;
-            }
-
-            @Override
-            public T next() {
-                if (next == null) {
-                    throw new NoSuchElementException();
-                }
-                T current = next;
-                next = nextMember();
-                return current;
-            }
-
-            private T nextMember() {
-                while (head.hasNext()) {
-                    T next = head.next();
-                    return predicate.test(next) ? null : next;
-                }
-                while (tail.hasNext()) {
-                    T next = tail.next();
-                    return predicate.test(next) ? null : next;
-                }
-                return null;
-            }
-        };
-        return new Iterable<T>() {
-
-            @Override
-            public Iterator<T> iterator() {
-                return iterator;
-            }
-        };
+        final var current = index();
+        final var first = current.ceiling(hash) - 1;
+        final var count = current.size() - (current.contains(hash) ? 1 : 0);
+        return () -> current.iterator(first, -1, count, predicate);
     }
 
     /**
      * @return the number of items between item and dest
      */
     private int rankBetween(Digest item, Digest dest) {
-        if (item.compareTo(dest) < 0) {
-            return ring.subMap(item, false, dest, false).size();
-        }
-        return ring.tailMap(item, false).size() + ring.headMap(dest, false).size();
+        return index().rankBetween(item, dest);
     }
 
     private T succ(Digest hash, Function<T, IterateResult> predicate) {
         if (hash == null) {
             return null;
         }
-        for (T member : ring.tailMap(hash, false).values()) {
-            switch (predicate.apply(member)) {
-            case CONTINUE:
+        final var current = index();
+        final var n = current.size();
+        final var start = current.higher(hash);
+        for (int k = 0; k < n; k++) {
+            final var i = (start + k) % n;
+            if (current.matches(i, hash)) {
                 continue;
-            case FAIL:
-                return null;
-            case SUCCESS:
-                return member;
-            default:
-                throw new IllegalStateException();
-
             }
-        }
-        for (T member : ring.headMap(hash, false).values()) {
+            final var member = current.get(i);
             switch (predicate.apply(member)) {
             case CONTINUE:
                 continue;
@@ -601,12 +550,15 @@ public class Ring<T extends Member> implements Iterable<T> {
         if (hash == null) {
             return null;
         }
-        for (T member : ring.tailMap(hash, false).values()) {
-            if (predicate.test(member)) {
-                return member;
+        final var current = index();
+        final var n = current.size();
+        final var start = current.higher(hash);
+        for (int k = 0; k < n; k++) {
+            final var i = (start + k) % n;
+            if (current.matches(i, hash)) {
+                continue;
             }
-        }
-        for (T member : ring.headMap(hash, false).values()) {
+            final var member = current.get(i);
             if (predicate.test(member)) {
                 return member;
             }
@@ -615,49 +567,155 @@ public class Ring<T extends Member> implements Iterable<T> {
     }
 
     private Iterable<T> succs(Digest digest, Predicate<T> predicate) {
-        Iterator<T> tail = ring.tailMap(digest, false).values().iterator();
-        Iterator<T> head = ring.headMap(digest, false).values().iterator();
+        final var current = index();
+        final var first = current.higher(digest);
+        final var count = current.size() - (current.contains(digest) ? 1 : 0);
+        return () -> current.iterator(first, 1, count, predicate);
+    }
 
-        Iterator<T> iterator = new Iterator<T>() {
-            private T next = nextMember();
+    public enum IterateResult {
+        CONTINUE, FAIL, SUCCESS
+    }
 
-            @Override
-            public boolean hasNext() {
-                return next != null;
+    /**
+     * Immutable sorted array index of a ring. The 64 bit prefixes of the ring hashes are held in a primitive array, so
+     * that binary search compares primitives, consulting the full hash only when prefixes collide. Member references
+     * are held in a parallel array.
+     */
+    static final class Index<T extends Member> {
+        final         Digest[] hashes;
+        final         Member[] members;
+        final         long[]   prefixes;
+        private final long     stamp;
+
+        private Index(long stamp, NavigableMap<Digest, T> ring) {
+            this.stamp = stamp;
+            // the ring may change while indexing, so size from the copied entries
+            var entries = new ArrayList<>(ring.entrySet());
+            hashes = new Digest[entries.size()];
+            members = new Member[entries.size()];
+            prefixes = new long[entries.size()];
+            for (int i = 0; i < hashes.length; i++) {
+                var entry = entries.get(i);
+                hashes[i] = entry.getKey();
+                members[i] = entry.getValue();
+                prefixes[i] = prefix(entry.getKey());
             }
+        }
+
+        private static long prefix(Digest hash) {
+            return hash.getLongs()[0];
+        }
 
-            @Override
-            public T next() {
-                if (next == null) {
-                    throw new NoSuchElementException();
+        /**
+         * @return the position of the first hash greater than or equal to the hash, or size() if none
+         */
+        int ceiling(Digest hash) {
+            final var prefix = prefix(hash);
+            int low = 0;
+            int high = prefixes.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(mid, prefix, hash) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
                 }
-                T current = next;
-                next = nextMember();
-                return current;
             }
+            return low;
+        }
 
-            private T nextMember() {
-                while (tail.hasNext()) {
-                    T next = tail.next();
-                    return predicate.test(next) ? null : next;
-                }
-                while (head.hasNext()) {
-                    T next = head.next();
-                    return predicate.test(next) ? null : next;
+        boolean contains(Digest hash) {
+            final var i = ceiling(hash);
+            return i < hashes.length && matches(i, hash);
+        }
+
+        @SuppressWarnings("unchecked")
+        T get(int position) {
+            return (T) members[position];
+        }
+
+        /**
+         * @return the position of the first hash strictly greater than the hash, or size() if none
+         */
+        int higher(Digest hash) {
+            final var prefix = prefix(hash);
+            int low = 0;
+            int high = prefixes.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (compare(mid, prefix, hash) <= 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
                 }
-                return null;
             }
-        };
-        return new Iterable<T>() {
+            return low;
+        }
+
+        /**
+         * Iterate over count members from the first position in the direction, wrapping around the ring, stopping
+         * before the first member for which the predicate is true
+         */
+        Iterator<T> iterator(int first, int direction, int count, Predicate<T> predicate) {
+            final var n = members.length;
+            return new Iterator<T>() {
+                private int remaining = n == 0 ? 0 : count;
+                private int position = first;
+                private T   next     = advance();
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public T next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    T current = next;
+                    next = advance();
+                    return current;
+                }
+
+                private T advance() {
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    remaining--;
+                    final var member = get(Math.floorMod(position, n));
+                    position += direction;
+                    if (predicate.test(member)) {
+                        remaining = 0;
+                        return null;
+                    }
+                    return member;
+                }
+            };
+        }
+
+        boolean matches(int position, Digest hash) {
+            return prefixes[position] == prefix(hash) && hashes[position].equals(hash);
+        }
 
-            @Override
-            public Iterator<T> iterator() {
-                return iterator;
+        /**
+         * @return the number of members strictly between item and dest, clockwise
+         */
+        int rankBetween(Digest item, Digest dest) {
+            if (item.compareTo(dest) < 0) {
+                return Math.max(0, ceiling(dest) - higher(item));
             }
-        };
-    }
+            return (prefixes.length - higher(item)) + ceiling(dest);
+        }
 
-    public enum IterateResult {
-        CONTINUE, FAIL, SUCCESS
+        int size() {
+            return members.length;
+        }
+
+        private int compare(int position, long prefix, Digest hash) {
+            final var comparison = Long.compareUnsigned(prefixes[position], prefix);
+            return comparison != 0 ? comparison : hashes[position].compareTo(hash);
+        }
     }
 }
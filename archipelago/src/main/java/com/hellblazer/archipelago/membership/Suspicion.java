@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import com.hellblazer.cryptography.hash.Digest;
+
+/**
+ * A real time judgement of whether members are degraded. A suspected member is still a member, and may still be
+ * active; suspicion is distinct from the offline state of a context, and only deprioritizes the member in ring
+ * traversals.
+ *
+ * @author hal.hildebrand
+ */
+@FunctionalInterface
+public interface Suspicion {
+    /**
+     * No member is ever suspected
+     */
+    Suspicion NONE = member -> false;
+
+    /**
+     * @return true if the member is currently suspected of failure
+     */
+    boolean isSuspected(Digest member);
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.membership;
+
+import com.hellblazer.cryptography.hash.Digest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A batch of changes to the membership of a Context, applied atomically as a single version of the membership.
+ * Joins are applied first, then activations and offlines - which apply only to members, including those joining in the
+ * same delta - and finally leaves.
+ * <p>
+ * The delta answered by Context.apply(ViewDelta) contains only the changes that took effect, and is the delta
+ * delivered to the MembershipListeners of the context.
+ *
+ * @author hal.hildebrand
+ */
+public final class ViewDelta<T extends Member> {
+    private final List<T>      activations;
+    private final List<T>      joins;
+    private final List<Digest> leaves;
+    private final List<T>      offlines;
+
+    public ViewDelta(List<T> joins, List<Digest> leaves, List<T> activations, List<T> offlines) {
+        this.joins = List.copyOf(joins);
+        this.leaves = List.copyOf(leaves);
+        this.activations = List.copyOf(activations);
+        this.offlines = List.copyOf(offlines);
+    }
+
+    public static <T extends Member> Builder<T> newBuilder() {
+        return new Builder<>();
+    }
+
+    /**
+     * @return the members to mark active
+     */
+    public List<T> activations() {
+        return activations;
+    }
+
+    public boolean isEmpty() {
+        return joins.isEmpty() && leaves.isEmpty() && activations.isEmpty() && offlines.isEmpty();
+    }
+
+    /**
+     * @return the members to add
+     */
+    public List<T> joins() {
+        return joins;
+    }
+
+    /**
+     * @return the ids of the members to remove
+     */
+    public List<Digest> leaves() {
+        return leaves;
+    }
+
+    /**
+     * @return the members to take offline
+     */
+    public List<T> offlines() {
+        return offlines;
+    }
+
+    @Override
+    public String toString() {
+        return "ViewDelta [joins: " + joins.size() + " leaves: " + leaves.size() + " activations: "
+        + activations.size() + " offlines: " + offlines.size() + "]";
+    }
+
+    public static class Builder<T extends Member> {
+        private final List<T>      activations = new ArrayList<>();
+        private final List<T>      joins       = new ArrayList<>();
+        private final List<Digest> leaves      = new ArrayList<>();
+        private final List<T>      offlines    = new ArrayList<>();
+
+        public Builder<T> activate(Collection<? extends T> members) {
+            activations.addAll(members);
+            return this;
+        }
+
+        public Builder<T> activate(T member) {
+            activations.add(member);
+            return this;
+        }
+
+        public ViewDelta<T> build() {
+            return new ViewDelta<>(joins, leaves, activations, offlines);
+        }
+
+        public Builder<T> join(Collection<? extends T> members) {
+            joins.addAll(members);
+            return this;
+        }
+
+        public Builder<T> join(T member) {
+            joins.add(member);
+            return this;
+        }
+
+        public Builder<T> leave(Collection<Digest> ids) {
+            leaves.addAll(ids);
+            return this;
+        }
+
+        public Builder<T> leave(Digest id) {
+            leaves.add(id);
+            return this;
+        }
+
+        public Builder<T> offline(Collection<? extends T> members) {
+            offlines.addAll(members);
+            return this;
+        }
+
+        public Builder<T> offline(T member) {
+            offlines.add(member);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.ring;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
+/**
+ * Metrics of the steps of ring and slice iterations
+ *
+ * @author hal.hildebrand
+ */
+public interface IterationMetrics {
+
+    /**
+     * @return the effective interval between steps, in milliseconds
+     */
+    Histogram cadence();
+
+    /**
+     * @return the rate of steps whose round did not complete within the step timeout, and were abandoned
+     */
+    Meter stalled();
+
+    /**
+     * @return the duration of each step, from issuing the round until the handler is invoked
+     */
+    Timer stepDuration();
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.ring;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+/**
+ * @author hal.hildebrand
+ */
+public class IterationMetricsImpl implements IterationMetrics {
+    private final Histogram cadence;
+    private final Meter     stalled;
+    private final Timer     stepDuration;
+
+    /**
+     * @param label - the prefix of the metric names, distinguishing the iterations of different protocols
+     */
+    public IterationMetricsImpl(String label, MetricRegistry registry) {
+        cadence = registry.histogram(MetricRegistry.name(label, "iteration.step.cadence"));
+        stalled = registry.meter(MetricRegistry.name(label, "iteration.step.stalled"));
+        stepDuration = registry.timer(MetricRegistry.name(label, "iteration.step.duration"));
+    }
+
+    @Override
+    public Histogram cadence() {
+        return cadence;
+    }
+
+    @Override
+    public Meter stalled() {
+        return stalled;
+    }
+
+    @Override
+    public Timer stepDuration() {
+        return stepDuration;
+    }
+}
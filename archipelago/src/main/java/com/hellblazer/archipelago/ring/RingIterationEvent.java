@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipelago.ring;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for one step of a RingIterator. The event duration covers the round, from the call on the
+ * ring's successor to the completion of the handler.
+ *
+ * @author hal.hildebrand
+ */
+@Name("com.hellblazer.archipelago.RingIteration")
+@Label("Ring Iteration")
+@Category({ "Archipelago", "Ring" })
+@Description("One step of a ring iteration")
+@StackTrace(false)
+public class RingIterationEvent extends Event {
+    @Label("Allowed")
+    @Description("Handler allowed the iteration to proceed")
+    public boolean allowed;
+    @Label("Context")
+    public String  context;
+    @Label("Digest")
+    public String  digest;
+    @Label("Iteration")
+    public int     iteration;
+    @Label("Member")
+    public String  member;
+    @Label("Peer")
+    public String  peer;
+    @Label("Responded")
+    @Description("The round produced an asynchronous response")
+    public boolean responded;
+    @Label("Ring")
+    public int     ring;
+    @Label("Tally")
+    public int     tally;
+}
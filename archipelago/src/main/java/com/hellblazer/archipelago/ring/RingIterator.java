@@ -7,6 +7,7 @@
 package com.hellblazer.archipelago.ring;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import com.hellblazer.archipelago.AdaptiveCadence;
 import com.hellblazer.archipelago.Link;
 import com.hellblazer.archipelago.RouterImpl;
 import com.hellblazer.archipelago.membership.Context;
@@ -18,13 +19,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -38,8 +45,11 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
 
     private final    Duration                 frequency;
     private final    ScheduledExecutorService scheduler;
+    private volatile AdaptiveCadence          cadence;
     private volatile boolean                  majorityFailed  = false;
     private volatile boolean                  majoritySucceed = false;
+    private volatile IterationMetrics         metrics;
+    private volatile Duration                 stepTimeout;
 
     public RingIterator(Duration frequency, Context<T> context, SigningMember member,
                         RouterImpl.CommonCommunications<Comm, ?> comm, Executor exec, boolean ignoreSelf,
@@ -69,6 +79,40 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
         this(frequency, direction, context, member, comm, exec, false, scheduler);
     }
 
+    /**
+     * Issue the round to the traversal of the rings from the digest concurrently, rather than one ring at a time,
+     * with at most parallelism rounds outstanding. The handler is invoked serially as each round completes and, as in
+     * iterate(), is responsible for counting the successes in the tally.
+     * <p>
+     * The fan out completes as soon as the outcome of the majority is decided: onMajority is run when the tally
+     * reaches the context's majority, and failedMajority when the rounds remaining can no longer reach it. Either
+     * way, the outstanding rounds are cancelled, the rounds not yet issued are abandoned, and onComplete receives the
+     * final tally. If the handler returns false the fan out terminates, cancelling the outstanding rounds without
+     * further notification.
+     *
+     * @param parallelism - the maximum number of rounds outstanding at any time, > 0
+     */
+    public <Q> void fanOut(Digest digest, int parallelism, Runnable onMajority,
+                           BiFunction<Comm, Integer, ListenableFuture<Q>> round, Runnable failedMajority,
+                           PredicateHandler<T, Q, Comm> handler, Consumer<Integer> onComplete) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0 : " + parallelism);
+        }
+        var fanOut = new FanOut<>(digest, traversal(digest), onMajority, round, failedMajority, handler,
+                                  onComplete);
+        exec.execute(wrapped(() -> fanOut.start(parallelism), log));
+    }
+
+    /**
+     * Issue the round to the traversal of the rings from the digest concurrently, with no bound on the rounds
+     * outstanding
+     */
+    public <Q> void fanOut(Digest digest, Runnable onMajority, BiFunction<Comm, Integer, ListenableFuture<Q>> round,
+                           Runnable failedMajority, PredicateHandler<T, Q, Comm> handler,
+                           Consumer<Integer> onComplete) {
+        fanOut(digest, Integer.MAX_VALUE, onMajority, round, failedMajority, handler, onComplete);
+    }
+
     public <Q> void iterate(Digest digest, BiFunction<Comm, Integer, ListenableFuture<Q>> round,
                             PredicateHandler<T, Q, Comm> handler) {
         iterate(digest, null, round, null, handler, null);
@@ -90,7 +134,13 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
     }
 
     public int iteration() {
-        return currentIndex + 1;
+        return currentIndex() + 1;
+    }
+
+    @Override
+    public RingIterator<T, Comm> fastShuffle() {
+        super.fastShuffle();
+        return this;
     }
 
     @Override
@@ -99,11 +149,56 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
         return this;
     }
 
+    /**
+     * Space the steps of the iterations by the current interval of the cadence rather than the fixed frequency. The
+     * cadence is shared with the protocol, whose handlers adapt it to the work each step accomplishes. Null, the
+     * default, steps at the fixed frequency
+     */
+    public RingIterator<T, Comm> setCadence(AdaptiveCadence cadence) {
+        this.cadence = cadence;
+        return this;
+    }
+
+    /**
+     * Record the steps of the iterations, their stalls, and their cadence in the metrics
+     */
+    public RingIterator<T, Comm> setMetrics(IterationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Abandon any step whose round has not completed within the timeout. The round's future is cancelled and the
+     * handler invoked with no response, so that an unresponsive member cannot stall the iteration. Null, the default,
+     * waits indefinitely
+     */
+    public RingIterator<T, Comm> setStepTimeout(Duration stepTimeout) {
+        this.stepTimeout = stepTimeout;
+        return this;
+    }
+
     @Override
     protected Logger getLog() {
         return log;
     }
 
+    private void commit(RingIterationEvent event, Digest digest, Destination<T, Comm> destination, int step,
+                        AtomicInteger tally, boolean responded, boolean allowed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.context = context.getId().toString();
+            event.member = member.getId().toString();
+            event.digest = digest == null ? null : digest.toString();
+            event.peer = destination.member() == null ? null : destination.member().getId().toString();
+            event.ring = destination.ring();
+            event.iteration = step;
+            event.tally = tally.get();
+            event.responded = responded;
+            event.allowed = allowed;
+            event.commit();
+        }
+    }
+
     private <Q> void internalIterate(Digest digest, Runnable onMajority,
                                      BiFunction<Comm, Integer, ListenableFuture<Q>> round, Runnable failedMajority,
                                      PredicateHandler<T, Q, Comm> handler, Consumer<Integer> onComplete,
@@ -111,7 +206,7 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
 
         Runnable proceed = () -> internalIterate(digest, onMajority, round, failedMajority, handler, onComplete, tally,
                                                  traversed);
-        boolean completed = currentIndex == context.getRingCount() - 1;
+        boolean completed = currentIndex() == context.getRingCount() - 1;
 
         Consumer<Boolean> allowed = allow -> proceed(digest, allow, onMajority, failedMajority, tally, completed,
                                                      onComplete);
@@ -121,13 +216,17 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
         }
 
         var next = next(digest);
+        var event = new RingIterationEvent();
+        event.begin();
+        final var step = iteration();
         log.trace("Iteration: {} tally: {} for: {} on: {} ring: {} complete: {} on: {}", iteration(), tally.get(),
                   digest, context.getId(), next.ring(), completed, member.getId());
         if (next.link() == null) {
             log.trace("No successor found of: {} on: {} iteration: {} traversed: {} ring: {} on: {}", digest,
-                      context.getId(), iteration(), traversed, context.ring(currentIndex).stream().toList(),
+                      context.getId(), iteration(), traversed, context.ring(currentIndex()).stream().toList(),
                       member.getId());
             final boolean allow = handler.handle(tally, Optional.empty(), next);
+            commit(event, digest, next, step, tally, false, allow);
             allowed.accept(allow);
             if (!completed && allow) {
                 log.trace("Finished on iteration: {} proceeding on: {} for: {} tally: {} on: {}", iteration(), digest,
@@ -149,6 +248,7 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
                           context.getId(), iteration(), link.getMember() == null ? null : link.getMember().getId(),
                           member.getId());
                 final boolean allow = handler.handle(tally, Optional.empty(), next);
+                commit(event, digest, next, step, tally, false, allow);
                 allowed.accept(allow);
                 if (!completed && allow) {
                     log.trace("Proceeding on iteration: {} on: {} for: {} tally: {} on: {}", iteration(), digest,
@@ -160,8 +260,15 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
                 }
                 return;
             }
+            final var handled = new AtomicBoolean();
+            final var started = System.nanoTime();
             futureSailor.addListener(wrapped(() -> {
+                if (!handled.compareAndSet(false, true)) {
+                    return;
+                }
+                stepped(started);
                 final var allow = handler.handle(tally, Optional.of(futureSailor), next);
+                commit(event, digest, next, step, tally, true, allow);
                 allowed.accept(allow);
                 if (!completed && allow) {
                     log.trace("Scheduling next iteration: {} on: {} for: {} tally: {} on: {}", iteration(), digest,
@@ -172,6 +279,18 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
                               context.getId(), tally.get(), member.getId());
                 }
             }, log), exec);
+            stallAfterTimeout(futureSailor, handled, () -> {
+                log.warn("Stalled on iteration: {} of: {} for: {} ring: {} to: {} on: {}", step, digest,
+                         context.getId(), next.ring(), next.member() == null ? null : next.member().getId(),
+                         member.getId());
+                stepped(started);
+                final var allow = handler.handle(tally, Optional.empty(), next);
+                commit(event, digest, next, step, tally, false, allow);
+                allowed.accept(allow);
+                if (!completed && allow) {
+                    schedule(proceed);
+                }
+            });
         } catch (IOException e) {
             log.debug("Error closing", e);
         }
@@ -179,7 +298,7 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
 
     private void proceed(Digest key, final boolean allow, Runnable onMajority, Runnable failedMajority,
                          AtomicInteger tally, boolean finalIteration, Consumer<Integer> onComplete) {
-        final var current = currentIndex;
+        final var current = currentIndex();
         if (!finalIteration) {
             log.trace(
             "Determining: {} continuation of: {} for: {} tally: {} majority: {} final itr: {} allow: {} on: {}",
@@ -214,6 +333,229 @@ public class RingIterator<T extends Member, Comm extends Link> extends RingCommu
     }
 
     private void schedule(Runnable proceed) {
-        scheduler.schedule(() -> exec.execute(wrapped(proceed, log)), frequency.toNanos(), TimeUnit.NANOSECONDS);
+        final var current = cadence;
+        final var interval = current == null ? frequency : current.interval();
+        final var m = metrics;
+        if (m != null) {
+            m.cadence().update(interval.toMillis());
+        }
+        scheduler.schedule(() -> exec.execute(wrapped(proceed, log)), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedule the abandonment of the step if its round has not completed within the step timeout, if any. The step
+     * is handled exactly once, either by its future's listener or as stalled
+     */
+    private void stallAfterTimeout(ListenableFuture<?> futureSailor, AtomicBoolean handled, Runnable stalled) {
+        final var timeout = stepTimeout;
+        if (timeout == null) {
+            return;
+        }
+        scheduler.schedule(wrapped(() -> {
+            if (futureSailor.isDone() || !handled.compareAndSet(false, true)) {
+                return;
+            }
+            final var current = metrics;
+            if (current != null) {
+                current.stalled().mark();
+            }
+            futureSailor.cancel(true);
+            exec.execute(wrapped(stalled, log));
+        }, log), timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void stepped(long started) {
+        final var current = metrics;
+        if (current != null) {
+            current.stepDuration().update(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * The state of a concurrent fan out of a round to a traversal
+     */
+    private class FanOut<Q> {
+        private final Digest                                          digest;
+        private final PredicateHandler<T, Q, Comm>                    handler;
+        private final Lock                                            lock        = new ReentrantLock();
+        private final Runnable                                        failedMajority;
+        private final Runnable                                        onMajority;
+        private final Consumer<Integer>                               onComplete;
+        private final Set<ListenableFuture<Q>>                        outstanding = new HashSet<>();
+        private final BiFunction<Comm, Integer, ListenableFuture<Q>> round;
+        private final AtomicInteger                                   tally       = new AtomicInteger();
+        private final List<iteration<T>>                              traversal;
+        private       boolean                                         finished;
+        private       int                                             issued;
+        private       int                                             responded;
+
+        private FanOut(Digest digest, List<iteration<T>> traversal, Runnable onMajority,
+                       BiFunction<Comm, Integer, ListenableFuture<Q>> round, Runnable failedMajority,
+                       PredicateHandler<T, Q, Comm> handler, Consumer<Integer> onComplete) {
+            this.digest = digest;
+            this.traversal = traversal;
+            this.onMajority = onMajority;
+            this.round = round;
+            this.failedMajority = failedMajority;
+            this.handler = handler;
+            this.onComplete = onComplete;
+        }
+
+        /**
+         * Issue the round to the destination. A failure closing the link does not lose the issued round
+         *
+         * @return the future of the issued round, or null if there is no asynchronous response
+         */
+        private ListenableFuture<Q> apply(Destination<T, Comm> destination) {
+            ListenableFuture<Q> futureSailor = null;
+            try (Comm link = destination.link()) {
+                futureSailor = round.apply(link, destination.ring());
+            } catch (IOException e) {
+                log.debug("Error closing", e);
+            } catch (RuntimeException e) {
+                log.debug("Error issuing fan out of: {} for: {} ring: {} on: {}", digest, context.getId(),
+                          destination.ring(), member.getId(), e);
+            }
+            return futureSailor;
+        }
+
+        private void cancelOutstanding() {
+            var cancelled = new ArrayList<>(outstanding);
+            outstanding.clear();
+            cancelled.forEach(f -> f.cancel(true));
+        }
+
+        private void finish(Runnable decided) {
+            finished = true;
+            cancelOutstanding();
+            if (decided != null) {
+                decided.run();
+            }
+            if (onComplete != null) {
+                onComplete.accept(tally.get());
+            }
+        }
+
+        /**
+         * Handle the outcome of the round issued to the destination, and decide the majority if possible
+         *
+         * @return the number of further rounds to issue
+         */
+        private int handle(Optional<ListenableFuture<Q>> futureSailor, Destination<T, Comm> destination, int step,
+                           RingIterationEvent event) {
+            lock.lock();
+            try {
+                futureSailor.ifPresent(outstanding::remove);
+                if (finished) {
+                    return 0;
+                }
+                responded++;
+                final var allow = handler.handle(tally, futureSailor, destination);
+                commit(event, digest, destination, step, tally, futureSailor.isPresent(), allow);
+                final var majority = context.majority();
+                if (!allow) {
+                    log.trace("Termination of fan out: {} for: {} tally: {} on: {}", digest, context.getId(),
+                              tally.get(), member.getId());
+                    finished = true;
+                    cancelOutstanding();
+                    return 0;
+                }
+                if (tally.get() >= majority) {
+                    log.debug("Obtained fan out majority of: {} for: {} tally: {} on: {}", digest, context.getId(),
+                              tally.get(), member.getId());
+                    finish(onMajority);
+                    return 0;
+                }
+                if (tally.get() + (traversal.size() - responded) < majority) {
+                    log.debug("Failed to obtain fan out majority of: {} for: {} tally: {} required: {} on: {}",
+                              digest, context.getId(), tally.get(), majority, member.getId());
+                    finish(failedMajority);
+                    return 0;
+                }
+                if (responded == traversal.size()) {
+                    finish(null);
+                    return 0;
+                }
+                return issued < traversal.size() ? 1 : 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Issue the next round of the traversal, and any rounds that follow from its immediate completion
+         */
+        private void issue() {
+            int step;
+            lock.lock();
+            try {
+                if (finished || issued >= traversal.size()) {
+                    return;
+                }
+                step = issued++;
+            } finally {
+                lock.unlock();
+            }
+            var event = new RingIterationEvent();
+            event.begin();
+            var destination = linkFor(traversal.get(step));
+            if (destination.link() == null) {
+                log.trace("No successor found of: {} on: {} ring: {} on: {}", digest, context.getId(),
+                          destination.ring(), member.getId());
+                issue(handle(Optional.empty(), destination, step + 1, event));
+                return;
+            }
+            final var futureSailor = apply(destination);
+            if (futureSailor == null) {
+                log.trace("No asynchronous response for: {} on: {} ring: {} on: {}", digest, context.getId(),
+                          destination.ring(), member.getId());
+                issue(handle(Optional.empty(), destination, step + 1, event));
+                return;
+            }
+            lock.lock();
+            try {
+                if (finished) {
+                    futureSailor.cancel(true);
+                    return;
+                }
+                outstanding.add(futureSailor);
+            } finally {
+                lock.unlock();
+            }
+            final var handled = new AtomicBoolean();
+            final var started = System.nanoTime();
+            futureSailor.addListener(wrapped(() -> {
+                if (handled.compareAndSet(false, true)) {
+                    stepped(started);
+                    issue(handle(Optional.of(futureSailor), destination, step + 1, event));
+                }
+            }, log), exec);
+            stallAfterTimeout(futureSailor, handled, () -> {
+                log.warn("Stalled fan out of: {} for: {} ring: {} to: {} on: {}", digest, context.getId(),
+                         destination.ring(), destination.member() == null ? null : destination.member().getId(),
+                         member.getId());
+                stepped(started);
+                issue(handle(Optional.empty(), destination, step + 1, event));
+            });
+        }
+
+        private void issue(int count) {
+            for (int i = 0; i < count; i++) {
+                issue();
+            }
+        }
+
+        private void start(int parallelism) {
+            if (traversal.isEmpty()) {
+                lock.lock();
+                try {
+                    finish(context.majority() <= 0 ? onMajority : failedMajority);
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            issue(Math.min(parallelism, traversal.size()));
+        }
     }
 }
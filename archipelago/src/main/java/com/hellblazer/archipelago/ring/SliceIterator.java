@@ -10,8 +10,11 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.hellblazer.archipelago.Link;
 import com.hellblazer.archipelago.RouterImpl;
 import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.PeerSelector;
 import com.hellblazer.archipelago.membership.SigningMember;
 import com.hellblazer.cryptography.Entropy;
+import org.apache.commons.math3.random.BitsStreamGenerator;
+import org.apache.commons.math3.random.MersenneTwister;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +26,7 @@ import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -37,20 +41,32 @@ public class SliceIterator<Comm extends Link> {
     private final        Executor                                 exec;
     private final        String                                   label;
     private final        SigningMember                            member;
+    private final        PeerSelector                             selector;
     private final        List<? extends Member>                   slice;
     private              Member                                   current;
     private              Iterator<? extends Member>               currentIteration;
+    private              BitsStreamGenerator                      entropy;
+    private volatile     IterationMetrics                         metrics;
+    private volatile     Duration                                 stepTimeout;
 
     public SliceIterator(String label, SigningMember member, List<? extends Member> slice,
                          RouterImpl.CommonCommunications<Comm, ?> comm, Executor exec) {
+        this(label, member, slice, comm, exec, null);
+    }
+
+    /**
+     * @param selector - the strategy ordering each pass over the slice, or null to securely shuffle the slice
+     */
+    public SliceIterator(String label, SigningMember member, List<? extends Member> slice,
+                         RouterImpl.CommonCommunications<Comm, ?> comm, Executor exec, PeerSelector selector) {
         assert member != null && slice != null && comm != null;
         this.label = label;
         this.member = member;
         this.slice = slice;
         this.comm = comm;
         this.exec = exec;
-        Entropy.secureShuffle(slice);
-        this.currentIteration = slice.iterator();
+        this.selector = selector;
+        order();
         log.debug("Slice: {}", slice.stream().map(m -> m.getId()).toList());
     }
 
@@ -64,6 +80,24 @@ public class SliceIterator<Comm extends Link> {
         iterate(round, handler, null, scheduler, frequency);
     }
 
+    /**
+     * Record the steps of the iterations, and their stalls, in the metrics
+     */
+    public SliceIterator<Comm> setMetrics(IterationMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Abandon any step whose round has not completed within the timeout. The round's future is cancelled and the
+     * handler invoked with no response, so that an unresponsive member cannot stall the iteration. Null, the default,
+     * waits indefinitely
+     */
+    public SliceIterator<Comm> setStepTimeout(Duration stepTimeout) {
+        this.stepTimeout = stepTimeout;
+        return this;
+    }
+
     private <T> void internalIterate(BiFunction<Comm, Member, ListenableFuture<T>> round,
                                      SlicePredicateHandler<T, Comm> handler, Runnable onComplete,
                                      ScheduledExecutorService scheduler, Duration frequency) {
@@ -84,9 +118,31 @@ public class SliceIterator<Comm extends Link> {
                 allowed.accept(handler.handle(Optional.empty(), link, link.getMember()));
                 return;
             }
-            futureSailor.addListener(
-            wrapped(() -> allowed.accept(handler.handle(Optional.of(futureSailor), link, link.getMember())), log),
-            exec);
+            final var handled = new AtomicBoolean();
+            final var started = System.nanoTime();
+            futureSailor.addListener(wrapped(() -> {
+                if (handled.compareAndSet(false, true)) {
+                    stepped(started);
+                    allowed.accept(handler.handle(Optional.of(futureSailor), link, link.getMember()));
+                }
+            }, log), exec);
+            final var timeout = stepTimeout;
+            if (timeout != null) {
+                scheduler.schedule(wrapped(() -> {
+                    if (futureSailor.isDone() || !handled.compareAndSet(false, true)) {
+                        return;
+                    }
+                    log.warn("Stalled on: {} to: {} on: {}", label, link.getMember().getId(), member.getId());
+                    final var current = metrics;
+                    if (current != null) {
+                        current.stalled().mark();
+                    }
+                    futureSailor.cancel(true);
+                    stepped(started);
+                    exec.execute(
+                    wrapped(() -> allowed.accept(handler.handle(Optional.empty(), link, link.getMember())), log));
+                }, log), timeout.toNanos(), TimeUnit.NANOSECONDS);
+            }
         } catch (IOException e) {
             log.debug("Error closing", e);
         }
@@ -104,13 +160,27 @@ public class SliceIterator<Comm extends Link> {
 
     private Comm next() {
         if (!currentIteration.hasNext()) {
-            Entropy.secureShuffle(slice);
-            currentIteration = slice.iterator();
+            order();
         }
         current = currentIteration.next();
         return linkFor(current);
     }
 
+    /**
+     * Order the next pass over the slice
+     */
+    private void order() {
+        if (selector == null) {
+            Entropy.secureShuffle(slice);
+            currentIteration = slice.iterator();
+            return;
+        }
+        if (entropy == null) {
+            entropy = new MersenneTwister(Entropy.nextBitsStreamLong());
+        }
+        currentIteration = selector.select(slice, slice.size(), entropy).iterator();
+    }
+
     private void proceed(final boolean allow, Runnable proceed, Runnable onComplete, ScheduledExecutorService scheduler,
                          Duration frequency) {
         log.trace("Determining continuation for: {} final itr: {} allow: {} on: {}", label, !currentIteration.hasNext(),
@@ -129,6 +199,13 @@ public class SliceIterator<Comm extends Link> {
         }
     }
 
+    private void stepped(long started) {
+        final var current = metrics;
+        if (current != null) {
+            current.stepDuration().update(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
     @FunctionalInterface
     public interface SlicePredicateHandler<T, Comm> {
         boolean handle(Optional<ListenableFuture<T>> futureSailor, Comm communications, Member member);
@@ -8,9 +8,12 @@
 
 package com.hellblazer.archipelago.ring;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.hellblazer.archipelago.Link;
 import com.hellblazer.archipelago.RouterImpl;
 import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.ContextView;
 import com.hellblazer.archipelago.membership.Member;
 import com.hellblazer.archipelago.membership.Ring;
 import com.hellblazer.archipelago.membership.SigningMember;
@@ -21,11 +24,15 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -33,17 +40,20 @@ import java.util.function.Function;
  * @author hal.hildebrand
  **/
 public class SyncRingCommunications<T extends Member, Comm extends Link> {
-    private final static Logger                                   log            = LoggerFactory.getLogger(
+    private final static Logger                                   log                  = LoggerFactory.getLogger(
     SyncRingCommunications.class);
+    private static final int                                      PROBE_INTERVAL       = 16;
+    private static final int                                      TRAVERSAL_CACHE_SIZE = 64;
     final                Context<T>                               context;
     final                SigningMember                            member;
     private final        RouterImpl.CommonCommunications<Comm, ?> comm;
     private final        Direction                                direction;
     private final        boolean                                  ignoreSelf;
-    private final        Lock                                     lock           = new ReentrantLock();
-    private final        List<iteration<T>>                       traversalOrder = new ArrayList<>();
-    protected            boolean                                  noDuplicates   = false;
-    volatile             int                                      currentIndex   = -1;
+    private final        AtomicReference<Cursor<T>>               cursor;
+    private final        Cache<TraversalKey, List<iteration<T>>>  traversals;
+    private final        AtomicLong                               traversed            = new AtomicLong();
+    protected volatile   boolean                                  noDuplicates         = false;
+    private volatile     boolean                                  fast                 = false;
 
     public SyncRingCommunications(Context<T> context, SigningMember member,
                                   RouterImpl.CommonCommunications<Comm, ?> comm) {
@@ -63,6 +73,8 @@ public class SyncRingCommunications<T extends Member, Comm extends Link> {
         this.member = member;
         this.comm = comm;
         this.ignoreSelf = ignoreSelf;
+        this.cursor = new AtomicReference<>(new Cursor<>(List.of(), -1));
+        this.traversals = CacheBuilder.newBuilder().maximumSize(TRAVERSAL_CACHE_SIZE).build();
     }
 
     public <Q> void execute(BiFunction<Comm, Integer, Q> round, SyncHandler<T, Q, Comm> handler) {
@@ -80,73 +92,133 @@ public class SyncRingCommunications<T extends Member, Comm extends Link> {
         }
     }
 
+    /**
+     * Shuffle the traversal orders with a fast, insecure generator rather than the default secure entropy. Only for
+     * uses where an adversary predicting the order of the traversal is of no concern
+     */
+    public SyncRingCommunications<T, Comm> fastShuffle() {
+        fast = true;
+        return this;
+    }
+
     public SyncRingCommunications<T, Comm> noDuplicates() {
         noDuplicates = true;
         return this;
     }
 
     public void reset() {
-        currentIndex = 0;
-        traversalOrder.clear();
+        cursor.set(new Cursor<>(List.of(), 0));
         log.trace("Reset on: {}", member.getId());
     }
 
     @Override
     public String toString() {
-        return "RingCommunications [" + context.getId() + ":" + member.getId() + ":" + currentIndex + "]";
+        return "RingCommunications [" + context.getId() + ":" + member.getId() + ":" + currentIndex() + "]";
     }
 
     protected Logger getLog() {
         return log;
     }
 
+    /**
+     * Calculate the traversal of the rings of the view from the digest. When avoiding suspicion, members suspected of
+     * failure by the context are passed over in favor of the next unsuspected member of the ring, and fall back into
+     * the traversal only when a ring has no other candidate
+     */
     @SuppressWarnings("unchecked")
-    List<iteration<T>> calculateTraversal(Digest digest) {
+    List<iteration<T>> calculateTraversal(ContextView<T> view, Digest digest, boolean avoidSuspected) {
         var traversal = new ArrayList<iteration<T>>();
         var traversed = new TreeSet<T>();
-        context.rings().forEach(ring -> {
-            T successor = direction.retrieve(ring, digest, m -> {
-                if (ignoreSelf && m.equals(member)) {
-                    return Ring.IterateResult.CONTINUE;
-                }
-                if (!context.isActive(m)) {
+        view.rings().forEach(ring -> {
+            final var hash = view.hashFor(digest, ring.index());
+            final var passed = new boolean[1];
+            T successor = direction.retrieveActive(ring, hash, m -> {
+                if (avoidSuspected && context.isSuspected(m.getId())) {
+                    passed[0] = true;
                     return Ring.IterateResult.CONTINUE;
                 }
-                if (noDuplicates) {
-                    if (traversed.add(m)) {
-                        return Ring.IterateResult.SUCCESS;
-                    } else {
-                        return Ring.IterateResult.CONTINUE;
-                    }
-                }
-                return Ring.IterateResult.SUCCESS;
+                return select(m, traversed);
             });
-            traversal.add(new iteration<>(successor == null ? (T) member : successor, ring.getIndex()));
+            var suspected = false;
+            if (successor == null && passed[0]) {
+                successor = direction.retrieveActive(ring, hash, m -> select(m, traversed));
+                suspected = successor != null;
+            }
+            traversal.add(new iteration<>(successor == null ? (T) member : successor, ring.index(), suspected));
         });
         return traversal;
     }
 
-    final SyncRingCommunications.Destination<T, Comm> next(Digest digest) {
-        lock.lock();
+    /**
+     * @return the index of the current iteration in the traversal order
+     */
+    final int currentIndex() {
+        return cursor.get().index();
+    }
+
+    final Destination<T, Comm> linkFor(iteration<T> successor) {
         try {
-            final var current = currentIndex;
-            final var count = traversalOrder.size();
-            if (count == 0 || current == count - 1) {
-                traversalOrder.clear();
-                traversalOrder.addAll(calculateTraversal(digest));
-                assert traversalOrder.size() == context.getRingCount() : "Invalid traversal order size: "
-                + traversalOrder.size() + " expected: " + context.getRingCount();
-                Entropy.secureShuffle(traversalOrder);
-                log.trace("New traversal order: {}:{} on: {}", context.getRingCount(), traversalOrder, member.getId());
+            final Comm link = comm.connect(successor.m);
+            if (link == null) {
+                log.trace("No connection to {} on: {}", successor.m == null ? "<null>" : successor.m.getId(),
+                          member.getId());
+            }
+            return new Destination<>(successor.m, link, successor.ring);
+        } catch (Throwable e) {
+            log.trace("error opening connection to {}: {} on: {}", successor.m == null ? "<null>" : successor.m.getId(),
+                      (e.getCause() != null ? e.getCause() : e).getMessage(), member.getId());
+            return new Destination<>(successor.m, null, successor.ring);
+        }
+    }
+
+    /**
+     * Advance to the next iteration of the traversal order, starting a new order from the digest when the current
+     * order is exhausted
+     */
+    final Destination<T, Comm> next(Digest digest) {
+        while (true) {
+            final var current = cursor.get();
+            final var count = current.order().size();
+            final var next = count == 0 || current.index() == count - 1 ? new Cursor<>(traversal(digest), 0)
+                                                                         : new Cursor<>(current.order(),
+                                                                                        current.index() + 1);
+            if (cursor.compareAndSet(current, next)) {
+                return linkFor(next.order().get(next.index()));
             }
-            int next = count == 0 ? 0 : (current + 1) % count;
-            currentIndex = next;
-            return linkFor(digest);
-        } finally {
-            lock.unlock();
         }
     }
 
+    /**
+     * Answer a shuffled traversal of the rings from the digest. The unshuffled traversal is memoized against the
+     * version of the context's view, and recalculated to avoid suspected members only when one of its members is
+     * currently suspected, in which case the suspected members are ordered last. Every PROBE_INTERVAL traversals
+     * ignores suspicion, probing the suspected members so that those which have recovered may respond and be cleared
+     */
+    final List<iteration<T>> traversal(Digest digest) {
+        final var view = context.view();
+        final var key = new TraversalKey(view.version(), digest, direction, ignoreSelf, noDuplicates);
+        var memoized = traversals.getIfPresent(key);
+        if (memoized == null) {
+            memoized = List.copyOf(calculateTraversal(view, digest, false));
+            traversals.put(key, memoized);
+        }
+        assert memoized.size() == context.getRingCount() : "Invalid traversal order size: " + memoized.size()
+        + " expected: " + context.getRingCount();
+        final List<iteration<T>> traversal;
+        final var probe = traversed.incrementAndGet() % PROBE_INTERVAL == 0;
+        if (!probe && memoized.stream().anyMatch(i -> i.m != null && context.isSuspected(i.m.getId()))) {
+            traversal = calculateTraversal(view, digest, true);
+            shuffle(traversal);
+            // stable, so the unsuspected remain in random order ahead of the suspected
+            traversal.sort(Comparator.comparing(iteration::suspected));
+        } else {
+            traversal = new ArrayList<>(memoized);
+            shuffle(traversal);
+        }
+        log.trace("New traversal order: {}:{} on: {}", context.getRingCount(), traversal, member.getId());
+        return traversal;
+    }
+
     private <Q> void execute(BiFunction<Comm, Integer, Q> round, SyncHandler<T, Q, Comm> handler,
                              Destination<T, Comm> destination) {
         if (destination.link == null) {
@@ -157,23 +229,24 @@ public class SyncRingCommunications<T extends Member, Comm extends Link> {
         }
     }
 
-    private Destination<T, Comm> linkFor(Digest digest) {
-        final var current = currentIndex;
-        var successor = traversalOrder.get(current);
-        try {
-            final Comm link = comm.connect(successor.m);
-            if (link == null) {
-                log.trace("No connection to {} on: {}", successor.m == null ? "<null>" : successor.m.getId(),
-                          member.getId());
-            }
-            return new Destination<>(successor.m, link, successor.ring);
-        } catch (Throwable e) {
-            log.trace("error opening connection to {}: {} on: {}", successor.m == null ? "<null>" : successor.m.getId(),
-                      (e.getCause() != null ? e.getCause() : e).getMessage(), member.getId());
-            return new Destination<>(successor.m, null, successor.ring);
+    private void shuffle(List<iteration<T>> traversal) {
+        if (fast) {
+            Collections.shuffle(traversal, ThreadLocalRandom.current());
+        } else {
+            Entropy.secureShuffle(traversal);
         }
     }
 
+    private Ring.IterateResult select(T m, Set<T> traversed) {
+        if (ignoreSelf && m.equals(member)) {
+            return Ring.IterateResult.CONTINUE;
+        }
+        if (noDuplicates && !traversed.add(m)) {
+            return Ring.IterateResult.CONTINUE;
+        }
+        return Ring.IterateResult.SUCCESS;
+    }
+
     public enum Direction {
         PREDECESSOR {
             @Override
@@ -185,6 +258,18 @@ public class SyncRingCommunications<T extends Member, Comm extends Link> {
             public <T extends Member> T retrieve(Ring<T> ring, T member, Function<T, Ring.IterateResult> test) {
                 return ring.findPredecessor(member, test);
             }
+
+            @Override
+            public <T extends Member> T retrieve(ContextView.RingView<T> ring, Digest hash,
+                                                 Function<T, Ring.IterateResult> test) {
+                return ring.findPredecessor(hash, test);
+            }
+
+            @Override
+            public <T extends Member> T retrieveActive(ContextView.RingView<T> ring, Digest hash,
+                                                       Function<T, Ring.IterateResult> test) {
+                return ring.findActivePredecessor(hash, test);
+            }
         }, SUCCESSOR {
             @Override
             public <T extends Member> T retrieve(Ring<T> ring, Digest hash, Function<T, Ring.IterateResult> test) {
@@ -195,17 +280,54 @@ public class SyncRingCommunications<T extends Member, Comm extends Link> {
             public <T extends Member> T retrieve(Ring<T> ring, T member, Function<T, Ring.IterateResult> test) {
                 return ring.findSuccessor(member, test);
             }
+
+            @Override
+            public <T extends Member> T retrieve(ContextView.RingView<T> ring, Digest hash,
+                                                 Function<T, Ring.IterateResult> test) {
+                return ring.findSuccessor(hash, test);
+            }
+
+            @Override
+            public <T extends Member> T retrieveActive(ContextView.RingView<T> ring, Digest hash,
+                                                       Function<T, Ring.IterateResult> test) {
+                return ring.findActiveSuccessor(hash, test);
+            }
         };
 
         public abstract <T extends Member> T retrieve(Ring<T> ring, Digest hash, Function<T, Ring.IterateResult> test);
 
         public abstract <T extends Member> T retrieve(Ring<T> ring, T member, Function<T, Ring.IterateResult> test);
+
+        /**
+         * Retrieve from the ring of a view, starting at the hash of the ring
+         */
+        public abstract <T extends Member> T retrieve(ContextView.RingView<T> ring, Digest hash,
+                                                      Function<T, Ring.IterateResult> test);
+
+        /**
+         * Retrieve the first active member from the ring of a view, starting at the hash of the ring
+         */
+        public abstract <T extends Member> T retrieveActive(ContextView.RingView<T> ring, Digest hash,
+                                                            Function<T, Ring.IterateResult> test);
     }
 
     public record Destination<M, Q>(M member, Q link, int ring) {
     }
 
-    private record iteration<T extends Member>(T m, int ring) {
+    /**
+     * A traversal order and the index of the current iteration within it
+     */
+    private record Cursor<T extends Member>(List<iteration<T>> order, int index) {
+    }
+
+    /**
+     * The key of a memoized traversal
+     */
+    private record TraversalKey(long version, Digest digest, Direction direction, boolean ignoreSelf,
+                                boolean noDuplicates) {
+    }
+
+    record iteration<T extends Member>(T m, int ring, boolean suspected) {
 
         @Override
         public String toString() {
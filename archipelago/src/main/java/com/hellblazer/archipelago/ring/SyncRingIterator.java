@@ -84,7 +84,13 @@ public class SyncRingIterator<T extends Member, Comm extends Link> extends SyncR
     }
 
     public int iteration() {
-        return currentIndex + 1;
+        return currentIndex() + 1;
+    }
+
+    @Override
+    public SyncRingIterator<T, Comm> fastShuffle() {
+        super.fastShuffle();
+        return this;
     }
 
     @Override
@@ -104,7 +110,7 @@ public class SyncRingIterator<T extends Member, Comm extends Link> extends SyncR
 
         Runnable proceed = () -> internalIterate(digest, onMajority, round, failedMajority, handler, onComplete, tally,
                                                  traversed);
-        boolean completed = currentIndex == context.getRingCount() - 1;
+        boolean completed = currentIndex() == context.getRingCount() - 1;
 
         Consumer<Boolean> allowed = allow -> proceed(digest, allow, onMajority, failedMajority, tally, completed,
                                                      onComplete);
@@ -118,7 +124,7 @@ public class SyncRingIterator<T extends Member, Comm extends Link> extends SyncR
                   digest, context.getId(), next.ring(), member.getId());
         if (next.link() == null) {
             log.trace("No successor found of: {} on: {} iteration: {} traversed: {} ring: {} on: {}", digest,
-                      context.getId(), iteration(), traversed, context.ring(currentIndex).stream().toList(),
+                      context.getId(), iteration(), traversed, context.ring(currentIndex()).stream().toList(),
                       member.getId());
             final boolean allow = handler.handle(tally, Optional.empty(), next);
             allowed.accept(allow);
@@ -170,7 +176,7 @@ public class SyncRingIterator<T extends Member, Comm extends Link> extends SyncR
 
     private void proceed(Digest key, final boolean allow, Runnable onMajority, Runnable failedMajority,
                          AtomicInteger tally, boolean finalIteration, Consumer<Integer> onComplete) {
-        final var current = currentIndex;
+        final var current = currentIndex();
         if (!finalIteration) {
             log.trace(
             "Determining: {} continuation of: {} for: {} tally: {} majority: {} final itr: {} allow: {} on: {}",
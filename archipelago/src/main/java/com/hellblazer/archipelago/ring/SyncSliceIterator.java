@@ -19,11 +19,19 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
@@ -52,6 +60,30 @@ public class SyncSliceIterator<Comm extends Link> {
         log.debug("Slice: {}", slice.stream().map(m -> m.getId()).toList());
     }
 
+    /**
+     * Apply the blocking round to every member of the slice concurrently, each on its own virtual thread, with at
+     * most parallelism rounds in progress at any time. The handler is invoked serially as each round completes, with
+     * no response if the member could not be connected to or its round failed.
+     * <p>
+     * The fan out is structured: if the handler returns false no further rounds are started, the rounds in progress
+     * are interrupted and their results discarded, and onComplete is not run, as in iterate(). Otherwise onComplete
+     * is run once every member of the slice has been handled. Returns immediately; the fan out proceeds on a virtual
+     * thread
+     *
+     * @param parallelism - the maximum number of rounds in progress at any time, > 0
+     */
+    public <T> void fanOut(BiFunction<Comm, Member, T> round, SyncSlicePredicateHandler<T, Comm> handler,
+                           Runnable onComplete, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0 : " + parallelism);
+        }
+        final var order = new ArrayList<Member>(slice);
+        Entropy.secureShuffle(order);
+        Thread.ofVirtual()
+              .name("Fan out: " + label)
+              .start(Utils.wrapped(() -> fanOut(order, round, handler, onComplete, parallelism), log));
+    }
+
     public <T> void iterate(BiFunction<Comm, Member, T> round, SyncSlicePredicateHandler<T, Comm> handler,
                             Runnable onComplete, ScheduledExecutorService scheduler, Duration frequency) {
         internalIterate(round, handler, onComplete, scheduler, frequency);
@@ -62,6 +94,47 @@ public class SyncSliceIterator<Comm extends Link> {
         iterate(round, handler, null, scheduler, frequency);
     }
 
+    private <T> void fanOut(List<Member> order, BiFunction<Comm, Member, T> round,
+                            SyncSlicePredicateHandler<T, Comm> handler, Runnable onComplete, int parallelism) {
+        final var permits = new Semaphore(parallelism);
+        final var handling = new ReentrantLock();
+        final var stopped = new AtomicBoolean();
+        try (var executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory())) {
+            for (var m : order) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stopped.set(true);
+                    executor.shutdownNow();
+                    break;
+                }
+                if (stopped.get()) {
+                    break;
+                }
+                try {
+                    executor.execute(() -> {
+                        try {
+                            step(m, round, handler, handling, stopped, executor);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    break;
+                }
+            }
+        } // close() awaits the completion of every round in progress
+        if (stopped.get()) {
+            log.trace("Termination of fan out for: {} on: {}", label, member.getId());
+            return;
+        }
+        if (onComplete != null) {
+            log.trace("Completing fan out for: {} on: {}", label, member.getId());
+            onComplete.run();
+        }
+    }
+
     private <T> void internalIterate(BiFunction<Comm, Member, T> round, SyncSlicePredicateHandler<T, Comm> handler,
                                      Runnable onComplete, ScheduledExecutorService scheduler, Duration frequency) {
         Runnable proceed = () -> internalIterate(round, handler, onComplete, scheduler, frequency);
@@ -118,6 +191,41 @@ public class SyncSliceIterator<Comm extends Link> {
         }
     }
 
+    /**
+     * Apply the round to the member and handle the result, unless the fan out has been stopped. Stops the fan out,
+     * interrupting the rounds in progress, if the handler returns false
+     */
+    private <T> void step(Member m, BiFunction<Comm, Member, T> round, SyncSlicePredicateHandler<T, Comm> handler,
+                          Lock handling, AtomicBoolean stopped, ExecutorService executor) {
+        if (stopped.get()) {
+            return;
+        }
+        try (Comm link = linkFor(m)) {
+            Optional<T> result = Optional.empty();
+            if (link != null) {
+                try {
+                    log.trace("Fan out on: {} to: {} on: {}", label, m.getId(), member.getId());
+                    result = Optional.ofNullable(round.apply(link, m));
+                } catch (RuntimeException e) {
+                    if (!stopped.get()) {
+                        log.debug("Error in fan out on: {} to: {} on: {}", label, m.getId(), member.getId(), e);
+                    }
+                }
+            }
+            handling.lock();
+            try {
+                if (!stopped.get() && !handler.handle(result, link, m)) {
+                    stopped.set(true);
+                    executor.shutdownNow();
+                }
+            } finally {
+                handling.unlock();
+            }
+        } catch (IOException e) {
+            log.debug("Error closing", e);
+        }
+    }
+
     @FunctionalInterface
     public interface SyncSlicePredicateHandler<T, Comm> {
         boolean handle(Optional<T> result, Comm communications, Member member);
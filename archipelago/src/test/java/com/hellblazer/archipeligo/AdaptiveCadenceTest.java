@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo;
+
+import com.hellblazer.archipelago.AdaptiveCadence;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author hal.hildebrand
+ */
+public class AdaptiveCadenceTest {
+
+    @Test
+    public void adapts() {
+        var cadence = new AdaptiveCadence(Duration.ofMillis(10), Duration.ofMillis(100), 2.0, 0.5);
+        assertEquals(Duration.ofMillis(10), cadence.interval());
+
+        assertEquals(Duration.ofMillis(20), cadence.round(0));
+        assertEquals(Duration.ofMillis(40), cadence.idle());
+        assertEquals(Duration.ofMillis(80), cadence.idle());
+        assertEquals(Duration.ofMillis(100), cadence.idle());
+        assertEquals(Duration.ofMillis(100), cadence.idle());
+
+        assertEquals(Duration.ofMillis(50), cadence.round(3));
+        assertEquals(Duration.ofMillis(25), cadence.active());
+        assertEquals(Duration.ofMillis(12).plusNanos(500_000), cadence.active());
+        assertEquals(Duration.ofMillis(10), cadence.active());
+        assertEquals(Duration.ofMillis(10), cadence.active());
+
+        cadence.idle();
+        cadence.idle();
+        assertEquals(Duration.ofMillis(40), cadence.interval());
+        assertEquals(Duration.ofMillis(10), cadence.pulse());
+        assertEquals(Duration.ofMillis(10), cadence.interval());
+    }
+
+    @Test
+    public void fixed() {
+        var cadence = new AdaptiveCadence(Duration.ofMillis(10));
+        assertEquals(Duration.ofMillis(10), cadence.idle());
+        assertEquals(Duration.ofMillis(10), cadence.active());
+        assertEquals(Duration.ofMillis(10), cadence.pulse());
+    }
+
+    @Test
+    public void validates() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveCadence(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new AdaptiveCadence(Duration.ofMillis(10), Duration.ofMillis(5)));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new AdaptiveCadence(Duration.ofMillis(10), Duration.ofMillis(50), 0.5, 0.5));
+        assertThrows(IllegalArgumentException.class,
+                     () -> new AdaptiveCadence(Duration.ofMillis(10), Duration.ofMillis(50), 2.0, 0.0));
+    }
+}
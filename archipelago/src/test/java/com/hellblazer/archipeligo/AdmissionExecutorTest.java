@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo;
+
+import com.hellblazer.archipelago.AdmissionExecutor;
+import com.netflix.concurrency.limits.limit.FixedLimit;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class AdmissionExecutorTest {
+
+    @Test
+    public void shedsOnSojourn() throws Exception {
+        var exec = Executors.newSingleThreadExecutor();
+        try {
+            var admission = AdmissionExecutor.newBuilder()
+                                             .setTarget(Duration.ofMillis(1))
+                                             .setInterval(Duration.ofMillis(10))
+                                             .setLimit(() -> FixedLimit.of(1000))
+                                             .build("test", exec);
+            final var total = 200;
+            var ran = new AtomicInteger();
+            var shed = new AtomicInteger();
+            var done = new CountDownLatch(total);
+            for (int i = 0; i < total; i++) {
+                admission.execute(() -> {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    ran.incrementAndGet();
+                    done.countDown();
+                }, () -> {
+                    shed.incrementAndGet();
+                    done.countDown();
+                });
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(total, ran.get() + shed.get());
+            assertTrue(shed.get() > 0, "Nothing shed");
+            assertTrue(ran.get() > 0, "Everything shed");
+            assertEquals(0, admission.getDepth());
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
+    @Test
+    public void admitsBelowTarget() throws Exception {
+        var exec = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            var admission = AdmissionExecutor.newBuilder().setTarget(Duration.ofSeconds(1)).build("test", exec);
+            final var total = 100;
+            var ran = new AtomicInteger();
+            var done = new CountDownLatch(total);
+            for (int i = 0; i < total; i++) {
+                admission.execute(() -> {
+                    ran.incrementAndGet();
+                    done.countDown();
+                }, () -> fail("Should not shed"));
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertEquals(total, ran.get());
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+}
@@ -10,13 +10,17 @@ import com.google.common.primitives.Ints;
 import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.hellblazer.archipelago.Demultiplexer;
+import com.hellblazer.archipelago.RouteBalancer;
 import com.hellblazer.archipelago.Router;
+import com.hellblazer.archipelago.TrafficCapture;
+import com.hellblazer.archipelago.TrafficReplay;
 import com.hellblazer.comm.grpc.DomainSocketServerInterceptor;
 import com.hellblazer.cryptography.hash.DigestAlgorithm;
 import com.hellblazer.test.proto.ByteMessage;
 import com.hellblazer.test.proto.PeerCreds;
 import com.hellblazer.test.proto.TestItGrpc;
 import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
 import io.grpc.Server;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
@@ -25,12 +29,15 @@ import io.grpc.inprocess.InProcessServerBuilder;
 import io.grpc.netty.DomainSocketNegotiatorHandler.DomainSocketNegotiator;
 import io.grpc.netty.NettyChannelBuilder;
 import io.grpc.netty.NettyServerBuilder;
+import io.grpc.stub.MetadataUtils;
 import io.grpc.stub.StreamObserver;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.unix.DomainSocketAddress;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -38,9 +45,11 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static com.hellblazer.archipelago.RouterImpl.clientInterceptor;
 import static com.hellblazer.comm.grpc.DomainSocketServerInterceptor.PEER_CREDENTIALS_CONTEXT_KEY;
@@ -109,6 +118,107 @@ public class DemultiplexerTest {
         assertEquals("Hello Server", msg.getContents().toStringUtf8());
     }
 
+    @Test
+    public void balanced() throws Exception {
+        final var name = UUID.randomUUID().toString();
+        var replicas = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        var failing = UUID.randomUUID().toString();
+        var servers = new ArrayList<Server>();
+        for (var replica : replicas) {
+            servers.add(InProcessServerBuilder.forName(replica).addService(new Named(replica)).build().start());
+        }
+        servers.add(InProcessServerBuilder.forName(failing).addService(new Failing()).build().start());
+        var ctx = DigestAlgorithm.DEFAULT.getOrigin();
+        var endpoints = new ArrayList<>(replicas);
+        endpoints.add(failing);
+        var balancer = RouteBalancer.newBuilder()
+                                    .setPolicy(RouteBalancer.Policy.ROUND_ROBIN)
+                                    .setFailureThreshold(1)
+                                    .setEjection(Duration.ofMinutes(1))
+                                    .<String>build(route -> qb64(ctx).equals(route) ? endpoints : null,
+                                                   replica -> InProcessChannelBuilder.forName(replica).build());
+        try {
+            terminus = new Demultiplexer(InProcessServerBuilder.forName(name), Router.METADATA_CONTEXT_KEY, balancer);
+            terminus.start();
+
+            var channel = InProcessChannelBuilder.forName(name).intercept(clientInterceptor(ctx)).build();
+            opened.add(channel);
+            var client = TestItGrpc.newBlockingStub(channel);
+            var hits = new HashMap<String, Integer>();
+            int failures = 0;
+            for (int i = 0; i < 12; i++) {
+                try {
+                    var result = client.ping(Any.getDefaultInstance()).unpack(ByteMessage.class);
+                    hits.merge(result.getContents().toStringUtf8(), 1, Integer::sum);
+                } catch (StatusRuntimeException e) {
+                    assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+                    failures++;
+                }
+            }
+            assertEquals(1, failures, "Failing endpoint should be ejected after its first failure");
+            assertEquals(replicas.size(), hits.size());
+            hits.values().forEach(count -> assertTrue(count >= 5, "Unbalanced: " + hits));
+            assertEquals(0, balancer.outstanding(replicas.get(0)));
+        } finally {
+            servers.forEach(server -> server.shutdownNow());
+        }
+    }
+
+    @Test
+    public void captureAndReplay() throws Exception {
+        final var name = UUID.randomUUID().toString();
+        final var replica = UUID.randomUUID().toString();
+        var server = InProcessServerBuilder.forName(replica).addService(new Named(replica)).build().start();
+        var ctx = DigestAlgorithm.DEFAULT.getOrigin();
+        var captured = new ByteArrayOutputStream();
+        var capture = new TrafficCapture(Router.METADATA_CONTEXT_KEY, captured, Set.of("X-Tenant"));
+        try {
+            terminus = new Demultiplexer(InProcessServerBuilder.forName(name), Router.METADATA_CONTEXT_KEY,
+                                         route -> InProcessChannelBuilder.forName(replica).build(), capture);
+            terminus.start();
+
+            var credentials = new Metadata();
+            credentials.put(Metadata.Key.of("authorization", Metadata.ASCII_STRING_MARSHALLER), "Bearer secret");
+            credentials.put(Metadata.Key.of("cookie", Metadata.ASCII_STRING_MARSHALLER), "session=secret");
+            credentials.put(Metadata.Key.of("x-tenant", Metadata.ASCII_STRING_MARSHALLER), "tenant");
+            var channel = InProcessChannelBuilder.forName(name).intercept(clientInterceptor(ctx)).build();
+            opened.add(channel);
+            var client = TestItGrpc.newBlockingStub(channel)
+                                   .withInterceptors(MetadataUtils.newAttachHeadersInterceptor(credentials));
+            final var total = 20;
+            for (int i = 0; i < total; i++) {
+                client.ping(Any.pack(ByteMessage.newBuilder().setContents(ByteString.copyFrom(new byte[i])).build()));
+            }
+            capture.close();
+            assertEquals(total, capture.getRecorded());
+
+            List<TrafficCapture.Call> calls;
+            try (var reader = new TrafficCapture.Reader(new ByteArrayInputStream(captured.toByteArray()))) {
+                calls = reader.readAll();
+            }
+            assertEquals(total, calls.size());
+            for (var call : calls) {
+                assertEquals(TestItGrpc.getPingMethod().getFullMethodName(), call.method());
+                assertEquals(qb64(ctx), call.route());
+                assertEquals(1, call.requests().length);
+                assertEquals(1, call.responses().length);
+                assertEquals(Status.Code.OK.value(), call.status());
+                // only the routing and allowed headers are captured, never credentials
+                assertEquals(Set.of(Router.METADATA_CONTEXT_KEY.name(), "x-tenant"),
+                             call.headers().stream().map(TrafficCapture.Header::key).collect(Collectors.toSet()));
+            }
+            assertTrue(calls.get(total - 1).requests()[0] > calls.get(0).requests()[0]);
+
+            var report = TrafficReplay.newBuilder().setRate(10).build().replay(calls, channel);
+            assertEquals(total, report.calls());
+            assertEquals(0, report.failures());
+            assertTrue(report.throughput() > 0);
+            assertTrue(report.p50().compareTo(report.max()) <= 0);
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
     private ManagedChannel handler(DomainSocketAddress address) {
         return NettyChannelBuilder.forAddress(address)
                                   .eventLoopGroup(eventLoopGroup)
@@ -154,6 +264,28 @@ public class DemultiplexerTest {
         return address;
     }
 
+    public static class Failing extends TestItGrpc.TestItImplBase {
+        @Override
+        public void ping(Any request, StreamObserver<Any> responseObserver) {
+            responseObserver.onError(new StatusRuntimeException(Status.UNAVAILABLE));
+        }
+    }
+
+    public static class Named extends TestItGrpc.TestItImplBase {
+        private final String name;
+
+        public Named(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void ping(Any request, StreamObserver<Any> responseObserver) {
+            responseObserver.onNext(
+            Any.pack(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8(name)).build()));
+            responseObserver.onCompleted();
+        }
+    }
+
     public static class ServerA extends TestItGrpc.TestItImplBase {
         @Override
         public void ping(Any request, StreamObserver<Any> responseObserver) {
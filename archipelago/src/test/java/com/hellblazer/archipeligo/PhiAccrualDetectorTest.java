@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo;
+
+import com.hellblazer.archipelago.PhiAccrualDetector;
+import com.hellblazer.archipelago.ServerConnectionCache;
+import com.hellblazer.archipelago.Utils;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.impl.SigningMemberImpl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class PhiAccrualDetectorTest {
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void suspicion() {
+        var clock = new AtomicLong();
+        var detector = new PhiAccrualDetector(PhiAccrualDetector.DEFAULT_THRESHOLD, Duration.ofMillis(500),
+                                              Duration.ofMillis(10), 0.1, clock::get);
+        var id = new SigningMemberImpl(Utils.getMember(0)).getId();
+
+        // idle members are never suspected
+        assertEquals(0.0, detector.phi(id));
+        clock.addAndGet(10_000 * MILLIS);
+        assertFalse(detector.isSuspected(id));
+
+        for (int i = 0; i < 20; i++) {
+            detector.started(id);
+            clock.addAndGet(100 * MILLIS);
+            detector.responded(id, 100 * MILLIS);
+        }
+        assertEquals(0.0, detector.phi(id));
+
+        detector.started(id);
+        clock.addAndGet(100 * MILLIS);
+        assertFalse(detector.isSuspected(id));
+        clock.addAndGet(1_000 * MILLIS);
+        assertTrue(detector.isSuspected(id), "phi: " + detector.phi(id));
+
+        // any response is evidence of life
+        detector.responded(id, 1_100 * MILLIS);
+        assertFalse(detector.isSuspected(id));
+
+        // cancellation is neutral
+        detector.started(id);
+        detector.cancelled(id);
+        clock.addAndGet(10_000 * MILLIS);
+        assertEquals(0.0, detector.phi(id));
+
+        // within its quarantine, a failure accrues suspicion until the member responds
+        detector.started(id);
+        detector.failed(id);
+        clock.addAndGet(5_000 * MILLIS);
+        assertTrue(detector.isSuspected(id), "phi: " + detector.phi(id));
+        detector.started(id);
+        detector.responded(id, 100 * MILLIS);
+        assertFalse(detector.isSuspected(id));
+    }
+
+    @Test
+    public void departures() {
+        var clock = new AtomicLong();
+        var detector = new PhiAccrualDetector(PhiAccrualDetector.DEFAULT_THRESHOLD, Duration.ofMillis(500),
+                                              Duration.ofMillis(10), 0.1, clock::get);
+        var cache = ServerConnectionCache.newBuilder().setDetector(detector).build();
+        var member = new SigningMemberImpl(Utils.getMember(0));
+        detector.started(member.getId());
+        detector.failed(member.getId());
+        clock.addAndGet(5_000 * MILLIS);
+        assertTrue(detector.isSuspected(member.getId()));
+
+        // departed members are forgotten
+        cache.<Member>departures().offline(member);
+        assertEquals(0.0, detector.phi(member.getId()));
+    }
+
+    @Test
+    public void quarantine() {
+        var clock = new AtomicLong();
+        var detector = new PhiAccrualDetector(PhiAccrualDetector.DEFAULT_THRESHOLD, Duration.ofMillis(500),
+                                              Duration.ofMillis(10), 0.1, Duration.ofSeconds(10), clock::get);
+        var id = new SigningMemberImpl(Utils.getMember(0)).getId();
+        for (int i = 0; i < 20; i++) {
+            detector.started(id);
+            clock.addAndGet(100 * MILLIS);
+            detector.responded(id, 100 * MILLIS);
+        }
+
+        // a failed member, called no more, recovers by itself once its quarantine expires
+        detector.started(id);
+        detector.failed(id);
+        clock.addAndGet(5_000 * MILLIS);
+        assertTrue(detector.isSuspected(id), "phi: " + detector.phi(id));
+        clock.addAndGet(5_000 * MILLIS);
+        assertFalse(detector.isSuspected(id), "phi: " + detector.phi(id));
+        assertEquals(0.0, detector.phi(id));
+
+        // and is suspected again should its next call fail
+        detector.started(id);
+        detector.failed(id);
+        assertFalse(detector.isSuspected(id));
+        clock.addAndGet(5_000 * MILLIS);
+        assertTrue(detector.isSuspected(id), "phi: " + detector.phi(id));
+
+        // a call outstanding holds the quarantine open
+        detector.started(id);
+        clock.addAndGet(20_000 * MILLIS);
+        assertTrue(detector.isSuspected(id), "phi: " + detector.phi(id));
+        detector.responded(id, 100 * MILLIS);
+        assertFalse(detector.isSuspected(id));
+    }
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.hellblazer.archipelago.*;
+import com.hellblazer.archipelago.SimulatedNetwork.LatencyDistribution;
+import com.hellblazer.archipelago.SimulatedNetwork.LinkParameters;
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.SigningMember;
+import com.hellblazer.archipelago.membership.impl.SigningMemberImpl;
+import com.hellblazer.archipelago.ring.RingIterator;
+import com.hellblazer.archipeligo.LocalServerTest.TestIt;
+import com.hellblazer.archipeligo.LocalServerTest.TestItClient;
+import com.hellblazer.archipeligo.LocalServerTest.TestItService;
+import com.hellblazer.cryptography.hash.DigestAlgorithm;
+import com.hellblazer.test.proto.ByteMessage;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class SimulatedServerTest {
+
+    @Test
+    public void bandwidth() throws Exception {
+        final var network = SimulatedNetwork.newBuilder().build();
+        final var routers = new ArrayList<Router>();
+        final var members = members(2);
+        final var comms = cluster(network, members, Pong::new, routers);
+        network.setLink(members.get(0), members.get(1), new LinkParameters(LatencyDistribution.constant(Duration.ZERO),
+                                                                           1_000, 0.0));
+        network.start();
+        try {
+            var request = Any.pack(
+            ByteMessage.newBuilder().setContents(ByteString.copyFrom(new byte[2_000])).build());
+            var transmission = Duration.ofNanos((long) (request.getSerializedSize() * 1_000_000_000.0 / 1_000));
+            var client = comms.get(0).connect(members.get(1));
+
+            // the request takes its transmission time at 1000 bytes per second, the response is instant
+            var start = network.getClock().nanoTime();
+            client.ping(request);
+            var elapsed = Duration.ofNanos(network.getClock().nanoTime() - start);
+            assertTrue(elapsed.compareTo(transmission) >= 0, "Round trip too short: " + elapsed);
+            assertTrue(elapsed.compareTo(transmission.plusMillis(100)) < 0, "Round trip too long: " + elapsed);
+
+            // the link is idle again, so the next request is not queued behind the first
+            start = network.getClock().nanoTime();
+            client.ping(request);
+            elapsed = Duration.ofNanos(network.getClock().nanoTime() - start);
+            assertTrue(elapsed.compareTo(transmission.plusMillis(100)) < 0, "Round trip too long: " + elapsed);
+        } finally {
+            close(network, routers);
+        }
+    }
+
+    @Test
+    public void deterministicTiming() throws Exception {
+        var first = traffic(0x1638);
+        var second = traffic(0x1638);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void latencyAndPartition() throws Exception {
+        final var memberA = new SigningMemberImpl(Utils.getMember(0));
+        final var memberB = new SigningMemberImpl(Utils.getMember(1));
+        final var ctx = DigestAlgorithm.DEFAULT.getOrigin().prefix(0x666);
+        final var prefix = UUID.randomUUID().toString();
+        final var exec = Executors.newVirtualThreadPerTaskExecutor();
+        final var network = SimulatedNetwork.newBuilder()
+                                            .setDefaultLink(
+                                            SimulatedNetwork.LinkParameters.of(Duration.ofMillis(50)))
+                                            .build();
+        network.start();
+
+        var routerA = new SimulatedServer(prefix, memberA, exec, network).router(ServerConnectionCache.newBuilder(),
+                                                                                  exec);
+        var routerB = new SimulatedServer(prefix, memberB, exec, network).router(ServerConnectionCache.newBuilder(),
+                                                                                  exec);
+        RouterImpl.CommonCommunications<TestItService, TestIt> commsA = routerA.create(memberA, ctx, new Pong("A"),
+                                                                                       "A",
+                                                                                       r -> new LocalServerTest.Server(
+                                                                                       r), c -> new TestItClient(c),
+                                                                                       null);
+        routerB.<TestItService, TestIt>create(memberB, ctx, new Pong("B"), "B", r -> new LocalServerTest.Server(r),
+                                              c -> new TestItClient(c), null);
+        routerA.start();
+        routerB.start();
+        try {
+            var client = commsA.connect(memberB);
+            var start = network.getClock().nanoTime();
+            var result = client.ping(Any.getDefaultInstance());
+            assertEquals("B", result.unpack(ByteMessage.class).getContents().toStringUtf8());
+            var elapsed = Duration.ofNanos(network.getClock().nanoTime() - start);
+            assertTrue(elapsed.compareTo(Duration.ofMillis(100)) >= 0, "Round trip too short: " + elapsed);
+
+            network.partition(List.of(memberB));
+            var e = assertThrows(StatusRuntimeException.class, () -> client.ping(Any.getDefaultInstance()));
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+
+            network.heal();
+            result = client.ping(Any.getDefaultInstance());
+            assertEquals("B", result.unpack(ByteMessage.class).getContents().toStringUtf8());
+        } finally {
+            network.stop();
+            routerA.close(Duration.ofSeconds(1));
+            routerB.close(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    public void latencyDistributions() {
+        var random = new SplittableRandom(0x1638);
+        var samples = 10_000;
+
+        var constant = LatencyDistribution.constant(Duration.ofMillis(5));
+        for (int i = 0; i < samples; i++) {
+            assertEquals(Duration.ofMillis(5).toNanos(), constant.sample(random));
+        }
+
+        var uniform = LatencyDistribution.uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+        var total = 0.0;
+        for (int i = 0; i < samples; i++) {
+            var sample = uniform.sample(random);
+            assertTrue(sample >= Duration.ofMillis(10).toNanos() && sample < Duration.ofMillis(20).toNanos(),
+                       "Out of range: " + sample);
+            total += sample;
+        }
+        assertEquals(Duration.ofMillis(15).toNanos(), total / samples, Duration.ofMillis(1).toNanos());
+
+        var exponential = LatencyDistribution.exponential(Duration.ofMillis(10), Duration.ofMillis(30));
+        total = 0.0;
+        for (int i = 0; i < samples; i++) {
+            var sample = exponential.sample(random);
+            assertTrue(sample >= Duration.ofMillis(10).toNanos(), "Below minimum: " + sample);
+            total += sample;
+        }
+        assertEquals(Duration.ofMillis(30).toNanos(), total / samples, Duration.ofMillis(2).toNanos());
+
+        var normal = LatencyDistribution.normal(Duration.ofMillis(50), Duration.ofMillis(10));
+        total = 0.0;
+        for (int i = 0; i < samples; i++) {
+            var sample = normal.sample(random);
+            assertTrue(sample >= 0, "Negative latency: " + sample);
+            total += sample;
+        }
+        assertEquals(Duration.ofMillis(50).toNanos(), total / samples, Duration.ofMillis(1).toNanos());
+
+        // truncated at zero
+        var truncated = LatencyDistribution.normal(Duration.ZERO, Duration.ofMillis(10));
+        for (int i = 0; i < samples; i++) {
+            assertTrue(truncated.sample(random) >= 0);
+        }
+    }
+
+    @Test
+    public void loss() throws Exception {
+        final var network = SimulatedNetwork.newBuilder().build();
+        final var routers = new ArrayList<Router>();
+        final var members = members(2);
+        final var comms = cluster(network, members, name -> new Failing(), routers);
+        network.start();
+        try {
+            var client = comms.get(0).connect(members.get(1));
+            var e = assertThrows(StatusRuntimeException.class, () -> client.ping(Any.getDefaultInstance()));
+            assertEquals(Status.Code.NOT_FOUND, e.getStatus().getCode());
+
+            // the server's status is lost with its trailers
+            network.setLink(members.get(1), members.get(0),
+                            new LinkParameters(LatencyDistribution.constant(Duration.ZERO), 0, 1.0));
+            e = assertThrows(StatusRuntimeException.class, () -> client.ping(Any.getDefaultInstance()));
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+
+            // the request is lost
+            network.setLink(members.get(1), members.get(0), LinkParameters.INSTANT);
+            network.setLink(members.get(0), members.get(1),
+                            new LinkParameters(LatencyDistribution.constant(Duration.ZERO), 0, 1.0));
+            e = assertThrows(StatusRuntimeException.class, () -> client.ping(Any.getDefaultInstance()));
+            assertEquals(Status.Code.UNAVAILABLE, e.getStatus().getCode());
+        } finally {
+            close(network, routers);
+        }
+    }
+
+    @Test
+    public void ringIteration() throws Exception {
+        final var network = SimulatedNetwork.newBuilder()
+                                            .setDefaultLink(LinkParameters.of(Duration.ofMillis(10)))
+                                            .build();
+        final var routers = new ArrayList<Router>();
+        final var members = members(8);
+        final var comms = cluster(network, members, Pong::new, routers);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(context::activate);
+        final var scheduler = network.scheduler();
+        network.start();
+        try {
+            // a frequency of a minute elapses in virtual time
+            var iterator = new RingIterator<Member, TestItService>(Duration.ofMinutes(1), context, members.get(0),
+                                                                   scheduler, comms.get(0),
+                                                                   Executors.newVirtualThreadPerTaskExecutor());
+            var steps = new CopyOnWriteArrayList<Long>();
+            var complete = new CountDownLatch(1);
+            iterator.iterate(context.getId(), (link, ring) -> Futures.immediateFuture(
+                             link.ping(Any.getDefaultInstance())), (t, result, destination) -> {
+                                 steps.add(network.getClock().nanoTime());
+                                 return true;
+                             }, t -> complete.countDown());
+            assertTrue(complete.await(30, TimeUnit.SECONDS));
+            assertTrue(steps.size() > 1, "Too few steps: " + steps.size());
+            for (int i = 1; i < steps.size(); i++) {
+                assertTrue(steps.get(i) - steps.get(i - 1) >= Duration.ofMinutes(1).toNanos(),
+                           "step: " + i + " spaced: " + Duration.ofNanos(steps.get(i) - steps.get(i - 1)));
+            }
+        } finally {
+            scheduler.shutdown();
+            close(network, routers);
+        }
+    }
+
+    @Test
+    public void virtualScheduler() throws Exception {
+        final var network = SimulatedNetwork.newBuilder().build();
+        final var scheduler = network.scheduler();
+        final var clock = network.getClock();
+        network.start();
+        try {
+            var start = clock.nanoTime();
+            var ran = new CopyOnWriteArrayList<Integer>();
+            var done = new CountDownLatch(3);
+            for (var hours : List.of(3, 1, 2)) {
+                scheduler.schedule(() -> {
+                    ran.add(hours);
+                    done.countDown();
+                }, hours, TimeUnit.HOURS);
+            }
+            var cancelled = scheduler.schedule(() -> ran.add(4), 4, TimeUnit.HOURS);
+            assertEquals(4, cancelled.getDelay(TimeUnit.HOURS));
+            assertTrue(cancelled.cancel(false));
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+            assertEquals(List.of(1, 2, 3), ran);
+            assertTrue(clock.nanoTime() - start >= Duration.ofHours(3).toNanos());
+
+            var ticks = new CopyOnWriteArrayList<Long>();
+            var ticked = new CountDownLatch(5);
+            var periodic = scheduler.scheduleAtFixedRate(() -> {
+                ticks.add(clock.nanoTime());
+                ticked.countDown();
+            }, 1, 1, TimeUnit.MINUTES);
+            assertTrue(ticked.await(10, TimeUnit.SECONDS));
+            periodic.cancel(false);
+            for (int i = 1; i < 5; i++) {
+                assertEquals(Duration.ofMinutes(1).toNanos(), ticks.get(i) - ticks.get(i - 1));
+            }
+
+            scheduler.shutdown();
+            assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(List.of(1, 2, 3), ran);
+            assertThrows(java.util.concurrent.RejectedExecutionException.class, () -> scheduler.execute(() -> {
+            }));
+        } finally {
+            network.stop();
+        }
+    }
+
+    private void close(SimulatedNetwork network, List<Router> routers) {
+        network.stop();
+        routers.forEach(r -> r.close(Duration.ofSeconds(1)));
+    }
+
+    private List<RouterImpl.CommonCommunications<TestItService, TestIt>> cluster(SimulatedNetwork network,
+                                                                                   List<SigningMember> members,
+                                                                                   Function<String, TestIt> service,
+                                                                                   List<Router> routers) {
+        final var ctx = DigestAlgorithm.DEFAULT.getOrigin().prefix(0x666);
+        final var prefix = UUID.randomUUID().toString();
+        final var exec = Executors.newVirtualThreadPerTaskExecutor();
+        var comms = new ArrayList<RouterImpl.CommonCommunications<TestItService, TestIt>>();
+        for (var member : members) {
+            var router = new SimulatedServer(prefix, member, exec, network).router(ServerConnectionCache.newBuilder(),
+                                                                                   exec);
+            var name = String.valueOf(comms.size());
+            comms.add(router.create(member, ctx, service.apply(name), name, r -> new LocalServerTest.Server(r),
+                                    c -> new TestItClient(c), null));
+            routers.add(router);
+        }
+        routers.forEach(Router::start);
+        return comms;
+    }
+
+    private List<SigningMember> members(int count) {
+        var members = new ArrayList<SigningMember>();
+        for (int i = 0; i < count; i++) {
+            members.add(new SigningMemberImpl(Utils.getMember(i)));
+        }
+        return members;
+    }
+
+    /**
+     * Concurrent traffic around a ring of members, answering the virtual round trip times of each member's pings
+     */
+    private List<List<Long>> traffic(long seed) throws Exception {
+        final var network = SimulatedNetwork.newBuilder()
+                                            .setSeed(seed)
+                                            .setSettle(Duration.ofMillis(20))
+                                            .setDefaultLink(new LinkParameters(
+                                            LatencyDistribution.exponential(Duration.ofMillis(5),
+                                                                            Duration.ofMillis(25)), 0, 0.0))
+                                            .build();
+        final var routers = new ArrayList<Router>();
+        final var members = members(4);
+        final var comms = cluster(network, members, Pong::new, routers);
+        network.start();
+        try {
+            var times = new ArrayList<List<Long>>();
+            var threads = new ArrayList<Thread>();
+            for (int i = 0; i < members.size(); i++) {
+                var rtts = new CopyOnWriteArrayList<Long>();
+                times.add(rtts);
+                var client = comms.get(i).connect(members.get((i + 1) % members.size()));
+                threads.add(Thread.ofVirtual().start(() -> {
+                    for (int j = 0; j < 5; j++) {
+                        var start = network.getClock().nanoTime();
+                        client.ping(Any.getDefaultInstance());
+                        rtts.add(network.getClock().nanoTime() - start);
+                    }
+                }));
+            }
+            for (var thread : threads) {
+                thread.join(Duration.ofSeconds(30));
+            }
+            times.forEach(rtts -> assertEquals(5, rtts.size()));
+            return times;
+        } finally {
+            close(network, routers);
+        }
+    }
+
+    /**
+     * Fails every ping, closing the call with only trailers
+     */
+    private static class Failing implements TestIt {
+        @Override
+        public void ping(Any request, StreamObserver<Any> responseObserver) {
+            responseObserver.onError(Status.NOT_FOUND.asRuntimeException());
+        }
+    }
+
+    private record Pong(String name) implements TestIt {
+        @Override
+        public void ping(Any request, StreamObserver<Any> responseObserver) {
+            responseObserver.onNext(
+            Any.pack(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8(name)).build()));
+            responseObserver.onCompleted();
+        }
+    }
+}
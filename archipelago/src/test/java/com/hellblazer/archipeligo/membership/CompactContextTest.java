@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo.membership;
+
+import com.hellblazer.archipelago.membership.CompactContext;
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.ViewDelta;
+import com.hellblazer.cryptography.hash.Digest;
+import com.hellblazer.cryptography.hash.DigestAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class CompactContextTest {
+
+    private static List<Digest> ids(Iterable<Member> members) {
+        var result = new ArrayList<Digest>();
+        members.forEach(m -> result.add(m.getId()));
+        return result;
+    }
+
+    private static void assertEquivalent(CompactContext expected, CompactContext actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.getRingCount(), actual.getRingCount());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        for (int r = 0; r < expected.getRingCount(); r++) {
+            assertEquals(expected.ring(r).stream().toList(), actual.ring(r).stream().toList());
+            for (int i = 0; i < 5; i++) {
+                assertEquals(list(expected.ring(r).successors(key(i))), list(actual.ring(r).successors(key(i))));
+                assertEquals(expected.ring(r).predecessor(key(i)), actual.ring(r).predecessor(key(i)));
+            }
+        }
+    }
+
+    private static Digest key(int i) {
+        return DigestAlgorithm.DEFAULT.digest("key-" + i);
+    }
+
+    private static List<Digest> list(Iterable<Digest> iterable) {
+        var result = new ArrayList<Digest>();
+        iterable.forEach(result::add);
+        return result;
+    }
+
+    @Test
+    public void apply() {
+        var members = ContextTest.members(300);
+        var ids = ids(members);
+        var origin = DigestAlgorithm.DEFAULT.getOrigin();
+        for (var offHeap : new boolean[] { false, true }) {
+            var compact = new CompactContext(origin, ids.subList(0, 200), 5, offHeap);
+            assertSame(compact, compact.apply(ViewDelta.newBuilder().build()));
+            assertSame(compact, compact.apply(ids.subList(0, 10), List.of(ids.get(250))));
+
+            var delta = ViewDelta.<Member>newBuilder()
+                                 .join(members.subList(190, 260))
+                                 .leave(ids.subList(0, 40))
+                                 .leave(ids.get(255))
+                                 .leave(ids.get(299))
+                                 .build();
+            var next = compact.apply(delta);
+            assertEquals(offHeap, next.isOffHeap());
+            var expected = new ArrayList<>(ids.subList(40, 260));
+            expected.remove(ids.get(255));
+            var rebuilt = new CompactContext(origin, expected, 5);
+            assertEquals(rebuilt.size(), next.size());
+            for (int i = 0; i < rebuilt.size(); i++) {
+                assertEquals(rebuilt.get(i), next.get(i));
+            }
+            for (int r = 0; r < rebuilt.getRingCount(); r++) {
+                assertEquals(rebuilt.ring(r).stream().toList(), next.ring(r).stream().toList());
+                var key = ids.get(r);
+                assertEquals(list(rebuilt.ring(r).successors(key)), list(next.ring(r).successors(key)));
+            }
+            assertEquals(200, compact.size());
+            assertTrue(compact.contains(ids.get(0)));
+
+            var drained = next.apply(List.of(), expected);
+            assertEquals(0, drained.size());
+            assertNull(drained.ring(0).successor(key(0)));
+            assertEquals(rebuilt.ring(1).stream().toList(),
+                         drained.apply(expected, List.of()).ring(1).stream().toList());
+        }
+    }
+
+    @Test
+    public void empty() {
+        var compact = CompactContext.newBuilder().setMembers(List.of()).build();
+        var key = DigestAlgorithm.DEFAULT.digest("key");
+        assertEquals(0, compact.size());
+        assertNull(compact.ring(0).successor(key));
+        assertFalse(compact.ring(0).predecessors(key).iterator().hasNext());
+    }
+
+    @Test
+    public void equivalence() {
+        var members = ContextTest.members(300);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        var ids = ids(members);
+        Collections.shuffle(ids);
+        for (var offHeap : new boolean[] { false, true }) {
+            var compact = new CompactContext(context.getId(), ids, context.getRingCount(), offHeap);
+            assertEquals(offHeap, compact.isOffHeap());
+            assertEquals(members.size(), compact.size());
+            assertEquals(context.getRingCount(), compact.getRingCount());
+
+            var keys = new ArrayList<Digest>();
+            keys.add(DigestAlgorithm.DEFAULT.digest("key"));
+            members.subList(0, 10).forEach(m -> keys.add(m.getId()));
+            for (int r = 0; r < context.getRingCount(); r++) {
+                var ring = context.ring(r);
+                var compactRing = compact.ring(r);
+                assertEquals(ids(ring.getRing().values()), compactRing.stream().toList());
+                for (var key : keys) {
+                    var successors = ids(ring.successors(key, m -> false));
+                    var predecessors = ids(ring.predecessors(key, m -> false));
+                    assertEquals(successors, list(compactRing.successors(key)));
+                    assertEquals(predecessors, list(compactRing.predecessors(key)));
+                    assertEquals(successors.get(0), compactRing.successor(key));
+                    assertEquals(predecessors.get(0), compactRing.predecessor(key));
+
+                    var stop = successors.get(successors.size() / 2);
+                    assertEquals(successors.subList(0, successors.size() / 2),
+                                 list(compactRing.successors(key, d -> !d.equals(stop))));
+                    assertEquals(stop, compactRing.successor(key, d -> d.equals(stop)));
+                    assertNull(compactRing.predecessor(key, d -> false));
+                }
+            }
+            for (var m : members) {
+                assertTrue(compact.contains(m.getId()));
+                assertEquals(m.getId(), compact.get(compact.indexOf(m.getId())));
+            }
+            assertFalse(compact.contains(DigestAlgorithm.DEFAULT.digest("not a member")));
+        }
+    }
+
+    @Test
+    public void fromContext() {
+        var members = ContextTest.members(200);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        var compact = CompactContext.from(context);
+        var rebuilt = new CompactContext(context.getId(), ids(members), context.getRingCount());
+        assertEquivalent(rebuilt, compact);
+    }
+
+    @Test
+    public void large() {
+        var count = 40_000;
+        var ids = new ArrayList<Digest>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(DigestAlgorithm.DEFAULT.digest("member-" + i));
+        }
+        var compact = new CompactContext(DigestAlgorithm.DEFAULT.getOrigin(), ids, 3);
+        assertEquals(count, compact.size());
+        for (int r = 0; r < compact.getRingCount(); r++) {
+            var ring = compact.ring(r);
+            var expected = new ArrayList<Digest>();
+            ids.forEach(d -> expected.add(ring.hashFor(d)));
+            Collections.sort(expected);
+            var hashes = ring.stream().map(ring::hashFor).toList();
+            assertEquals(expected, hashes);
+
+            var member = ids.get(count - 1);
+            var position = expected.indexOf(ring.hashFor(member));
+            var successors = list(ring.successors(member));
+            assertEquals(count - 1, successors.size());
+            assertFalse(successors.contains(member));
+            assertEquals(ring.get((position + 1) % count), successors.get(0));
+            assertEquals(ring.get((position + count - 1) % count), ring.predecessor(member));
+        }
+    }
+
+    @Test
+    public void snapshot(@TempDir Path directory) throws Exception {
+        var ids = ids(ContextTest.members(500));
+        var compact = new CompactContext(DigestAlgorithm.DEFAULT.digest("context"), ids, 7);
+
+        var buffer = compact.snapshot();
+        assertEquals(CompactContext.SNAPSHOT_MAGIC, buffer.getInt(0));
+        assertEquivalent(compact, CompactContext.load(buffer));
+
+        var file = directory.resolve("context.snapshot");
+        compact.snapshot(file);
+        var loaded = CompactContext.load(file);
+        assertTrue(loaded.isOffHeap());
+        assertEquivalent(compact, loaded);
+        assertEquivalent(compact.apply(ids.subList(0, 10), ids.subList(400, 450)),
+                         loaded.apply(ids.subList(0, 10), ids.subList(400, 450)));
+
+        var empty = new CompactContext(DigestAlgorithm.DEFAULT.getOrigin(), List.of(), 3);
+        assertEquivalent(empty, CompactContext.load(empty.snapshot()));
+
+        var versioned = compact.snapshot();
+        versioned.putInt(Integer.BYTES, CompactContext.SNAPSHOT_VERSION + 1);
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(versioned));
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(ByteBuffer.allocate(64)));
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(compact.snapshot().limit(100)));
+
+        // malformed snapshots
+        var negative = compact.snapshot();
+        negative.putShort(2 * Integer.BYTES, (short) -1);
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(negative));
+
+        var overflow = compact.snapshot();
+        var sizeOffset = 2 * Integer.BYTES + Short.BYTES + overflow.getShort(2 * Integer.BYTES);
+        sizeOffset += Short.BYTES + overflow.getShort(sizeOffset);
+        assertEquals(500, overflow.getInt(sizeOffset));
+        overflow.putInt(sizeOffset, Integer.MAX_VALUE / 2);
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(overflow));
+
+        var unmapped = compact.snapshot();
+        unmapped.putInt(unmapped.limit() - Integer.BYTES, 500);
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(unmapped));
+        unmapped.putInt(unmapped.limit() - Integer.BYTES, -1);
+        assertThrows(IllegalArgumentException.class, () -> CompactContext.load(unmapped));
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo.membership;
+
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.DigestPool;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.Ring;
+import com.hellblazer.archipelago.membership.ViewDelta;
+import com.hellblazer.cryptography.JohnHancock;
+import com.hellblazer.cryptography.hash.Digest;
+import com.hellblazer.cryptography.hash.DigestAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class ContextTest {
+
+    static List<Member> members(int count) {
+        var members = new ArrayList<Member>();
+        for (int i = 0; i < count; i++) {
+            members.add(new TestMember(DigestAlgorithm.DEFAULT.digest("member-" + i)));
+        }
+        return members;
+    }
+
+    /**
+     * Compares adding members one at a time against adding them in bulk. Run with -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmarkStartup() {
+        for (var size : new int[] { 1_000, 10_000, 100_000 }) {
+            var members = members(size);
+            for (int round = 0; round < 3; round++) {
+                Context<Member> serial = Context.newBuilder().setCardinality(size).build();
+                var start = System.nanoTime();
+                members.forEach(m -> serial.add(m));
+                var single = System.nanoTime() - start;
+
+                Context<Member> bulk = Context.newBuilder().setCardinality(size).build();
+                start = System.nanoTime();
+                bulk.add(members);
+                var bulked = System.nanoTime() - start;
+                assertEquals(serial.ring(0).getRing(), bulk.ring(0).getRing());
+                System.out.printf("members: %s rings: %s single: %s ms bulk: %s ms%n", size, bulk.getRingCount(),
+                                  single / 1_000_000, bulked / 1_000_000);
+            }
+        }
+    }
+
+    @Test
+    public void bulkAdd() {
+        var members = members(500);
+        Context<Member> serial = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(m -> serial.add(m));
+        Context<Member> bulk = Context.newBuilder().setCardinality(members.size()).build();
+        bulk.add(members.subList(0, 300));
+        bulk.add(members.subList(200, 400));
+        bulk.add(members.subList(390, 500));
+        assertEquals(members.size(), bulk.memberCount());
+        assertEquals(members.size(), bulk.offlineCount());
+        assertEquals(serial.getRingCount(), bulk.getRingCount());
+        for (int i = 0; i < serial.getRingCount(); i++) {
+            assertEquals(serial.ring(i).getRing(), bulk.ring(i).getRing());
+        }
+
+        bulk.rebalance(members.size() * 4);
+        serial.rebalance(members.size() * 4);
+        assertEquals(serial.getRingCount(), bulk.getRingCount());
+        for (int i = 0; i < serial.getRingCount(); i++) {
+            assertEquals(serial.ring(i).getRing(), bulk.ring(i).getRing());
+        }
+    }
+
+    @Test
+    public void counts() throws Exception {
+        var members = members(100);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.add(members);
+        assertEquals(100, context.memberCount());
+        assertEquals(0, context.activeCount());
+        assertEquals(100, context.offlineCount());
+
+        var exec = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 4; i++) {
+            exec.execute(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    var m = members.get(j % members.size());
+                    if (j % 3 == 0) {
+                        context.offline(m);
+                    } else {
+                        context.activate(m);
+                    }
+                }
+            });
+        }
+        exec.shutdown();
+        assertTrue(exec.awaitTermination(10, TimeUnit.SECONDS));
+
+        var active = context.activeMembers();
+        var offline = context.getOffline();
+        assertEquals(context.activeCount(), active.size());
+        assertEquals(context.offlineCount(), offline.size());
+        assertEquals(members.size(), active.size() + offline.size());
+        active.forEach(m -> assertTrue(context.isActive(m)));
+        offline.forEach(m -> assertTrue(context.isOffline(m)));
+        assertEquals(active, context.active().toList());
+        var union = new HashSet<>(active);
+        union.addAll(offline);
+        assertEquals(new HashSet<>(members), union);
+
+        var removed = active.get(0);
+        context.remove(removed);
+        assertEquals(active.size() - 1, context.activeCount());
+        assertEquals(members.size() - 1, context.memberCount());
+        assertFalse(context.activeMembers().contains(removed));
+        assertFalse(context.activateIfMember(removed));
+
+        context.clear();
+        assertEquals(0, context.memberCount());
+        assertEquals(0, context.activeCount());
+        assertEquals(0, context.offlineCount());
+    }
+
+    @Test
+    public void derivedViews() {
+        var members = members(60);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members.subList(0, 30));
+        members.subList(30, 60).forEach(m -> context.add(m));
+        var previous = context.view();
+        var entropy = new Random(0x1638);
+        for (int step = 0; step < 50; step++) {
+            for (int i = 0; i < 1 + entropy.nextInt(5); i++) {
+                var m = members.get(entropy.nextInt(members.size()));
+                if (context.isActive(m.getId())) {
+                    context.offline(m);
+                } else {
+                    context.activate(m);
+                }
+            }
+            var view = context.view();
+            assertNotSame(previous, view);
+            assertEquals(context.activeMembers(), view.activeMembers());
+            assertEquals(context.activeCount(), view.activeCount());
+            for (int r = 0; r < view.getRingCount(); r++) {
+                var ring = view.ring(r);
+                assertEquals(context.activeCount(), ring.activeSize());
+                for (int i = 0; i < ring.size(); i++) {
+                    assertEquals(context.isActive(ring.get(i).getId()), ring.isActive(i));
+                    Member expected = null;
+                    for (int k = 1; k <= ring.size() && expected == null; k++) {
+                        var candidate = (i + k) % ring.size();
+                        if (candidate != i && ring.isActive(candidate)) {
+                            expected = ring.get(candidate);
+                        }
+                    }
+                    assertEquals(expected, ring.findActiveSuccessor(ring.hash(i), m -> Ring.IterateResult.SUCCESS));
+                }
+            }
+            previous = view;
+        }
+    }
+
+    @Test
+    public void publishedViews() throws Exception {
+        var members = members(60);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members.subList(0, 30));
+        members.subList(30, 60).forEach(m -> context.add(m));
+
+        // every change publishes the view of its version
+        assertEquals(context.version(), context.view().version());
+        context.offline(members.get(0));
+        assertEquals(context.version(), context.view().version());
+        assertFalse(context.view().isActive(members.get(0).getId()));
+
+        // concurrent flips are all reflected once they complete
+        var exec = Executors.newFixedThreadPool(5);
+        var flips = new ArrayList<Future<?>>();
+        for (int t = 0; t < 4; t++) {
+            final var entropy = new Random(t);
+            flips.add(exec.submit(() -> {
+                for (int i = 0; i < 500; i++) {
+                    var m = members.get(entropy.nextInt(members.size()));
+                    if (entropy.nextBoolean()) {
+                        context.activate(m);
+                    } else {
+                        context.offline(m);
+                    }
+                }
+            }));
+        }
+        var reading = exec.submit(() -> {
+            var last = context.view().version();
+            for (int i = 0; i < 2000; i++) {
+                var current = context.view();
+                assertTrue(current.version() >= last);
+                last = current.version();
+            }
+        });
+        for (var flip : flips) {
+            flip.get(30, TimeUnit.SECONDS);
+        }
+        reading.get(30, TimeUnit.SECONDS);
+        exec.shutdown();
+
+        var view = context.view();
+        assertEquals(context.version(), view.version());
+        assertEquals(context.activeMembers(), view.activeMembers());
+        for (int r = 0; r < view.getRingCount(); r++) {
+            var ring = view.ring(r);
+            assertEquals(context.activeCount(), ring.activeSize());
+            for (int i = 0; i < ring.size(); i++) {
+                assertEquals(context.isActive(ring.get(i).getId()), ring.isActive(i));
+            }
+        }
+    }
+
+    @Test
+    public void memoizedLookups() {
+        var members = members(50);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        var key = DigestAlgorithm.DEFAULT.digest("key");
+        Predicate<Member> active = context::isActive;
+
+        var successors = context.successors(key);
+        var hits = context.lookupStats().hitCount();
+        assertSame(successors, context.successors(key));
+        assertEquals(hits + 1, context.lookupStats().hitCount());
+        assertEquals(context.view().successors(key, active), successors);
+
+        // lookups with a predicate are answered from the view, and do not touch the memo
+        var requests = context.lookupStats().requestCount();
+        final var excluded = members.get(0);
+        Predicate<Member> others = m -> !m.equals(excluded);
+        assertEquals(context.view().successors(key, others), context.successors(key, others));
+        assertEquals(requests, context.lookupStats().requestCount());
+
+        var unique = context.uniqueSuccessors(key);
+        assertEquals(unique.size(), new HashSet<>(unique).size());
+        assertTrue(unique.size() <= context.getRingCount());
+        assertSame(unique, context.uniqueSuccessors(key));
+
+        var first = successors.get(0);
+        context.offline(first);
+        var next = context.successors(key);
+        assertNotSame(successors, next);
+        assertEquals(context.view().successors(key, m -> true), next);
+        assertFalse(context.successors(key, active).contains(first));
+        assertTrue(context.lookupStats().hitRate() > 0.0);
+    }
+
+    @Test
+    public void sharedRingHashes() {
+        var members = members(100);
+        var pool = new DigestPool();
+        var id = DigestAlgorithm.DEFAULT.digest("shared");
+        Context<Member> foundation = Context.newBuilder().setId(id).setPool(pool).setCardinality(100).build();
+        Context<Member> derived = Context.newBuilder().setId(id).setPool(pool).setCardinality(100).build();
+        Context<Member> other = Context.newBuilder()
+                                       .setId(DigestAlgorithm.DEFAULT.digest("other"))
+                                       .setPool(pool)
+                                       .setCardinality(100)
+                                       .build();
+        derived.dependUpon(foundation);
+        foundation.activate(members);
+        derived.add(members);
+        other.add(members);
+        assertEquals(members.size() * 2, pool.size());
+        for (var m : members) {
+            for (int r = 0; r < foundation.getRingCount(); r++) {
+                assertSame(foundation.hashFor(m, r), derived.hashFor(m, r));
+                assertNotSame(foundation.hashFor(m, r), other.hashFor(m, r));
+                assertEquals(foundation.hashFor(m.getId(), r), derived.hashFor(m, r));
+            }
+            assertSame(pool.intern(m.getId()), pool.intern(new Digest(m.getId().getAlgorithm(),
+                                                                      m.getId().getLongs())));
+        }
+        assertEquals(foundation.ring(0).getRing().keySet(), derived.ring(0).getRing().keySet());
+    }
+
+    @Test
+    public void viewDeltas() throws Exception {
+        var members = members(100);
+        Context<Member> foundation = Context.newBuilder().setCardinality(members.size()).build();
+        Context<Member> dependent = Context.newBuilder().setCardinality(members.size()).build();
+        dependent.add(members.subList(0, 50));
+        dependent.dependUpon(foundation);
+
+        var batches = new ArrayList<ViewDelta<Member>>();
+        var singles = new AtomicInteger();
+        foundation.register(new Context.MembershipListener<>() {
+            @Override
+            public void active(Member member) {
+                singles.incrementAndGet();
+            }
+
+            @Override
+            public void changed(ViewDelta<Member> delta) {
+                batches.add(delta);
+            }
+        });
+        var exec = Executors.newSingleThreadExecutor();
+        var delivered = new CountDownLatch(1);
+        var thread = new AtomicReference<Thread>();
+        foundation.register(new Context.MembershipListener<>() {
+            @Override
+            public void changed(ViewDelta<Member> delta) {
+                thread.set(Thread.currentThread());
+                delivered.countDown();
+            }
+        }, exec);
+
+        var version = foundation.version();
+        foundation.activate(members);
+        assertEquals(version + 1, foundation.version());
+        assertEquals(1, batches.size());
+        assertEquals(0, singles.get());
+        assertEquals(members.size(), batches.get(0).joins().size());
+        assertEquals(members.size(), batches.get(0).activations().size());
+        assertEquals(members.size(), foundation.activeCount());
+        assertTrue(delivered.await(10, TimeUnit.SECONDS));
+        assertNotEquals(Thread.currentThread(), thread.get());
+        exec.shutdown();
+
+        // the cascade activates only the members of the dependent context
+        assertEquals(50, dependent.memberCount());
+        assertEquals(50, dependent.activeCount());
+
+        var applied = foundation.apply(ViewDelta.<Member>newBuilder()
+                                                .offline(members.subList(0, 10))
+                                                .offline(members.get(0))
+                                                .leave(members.get(99).getId())
+                                                .leave(DigestAlgorithm.DEFAULT.digest("not a member"))
+                                                .build());
+        assertEquals(version + 2, foundation.version());
+        assertEquals(2, batches.size());
+        assertEquals(10, applied.offlines().size());
+        assertEquals(List.of(members.get(99).getId()), applied.leaves());
+        assertEquals(members.size() - 11, foundation.activeCount());
+        assertEquals(40, dependent.activeCount());
+
+        assertTrue(foundation.apply(ViewDelta.<Member>newBuilder().offline(members.get(0)).build()).isEmpty());
+        assertEquals(version + 2, foundation.version());
+        assertEquals(2, batches.size());
+
+        foundation.activate(members.get(0));
+        assertEquals(1, singles.get());
+    }
+
+    @Test
+    public void views() throws Exception {
+        var members = members(50);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        var view = context.view();
+        assertSame(view, context.view());
+        assertEquals(context.version(), view.version());
+        assertEquals(members.size(), view.activeCount());
+        assertEquals(context.getRingCount(), view.getRingCount());
+
+        var key = DigestAlgorithm.DEFAULT.digest("key");
+        for (int i = 0; i < context.getRingCount(); i++) {
+            var ring = context.ring(i);
+            assertEquals(ring.successor(key), view.ring(i).successor(key, m -> true));
+            assertEquals(ring.predecessor(key), view.ring(i).predecessor(view.hashFor(key, i), m -> true));
+            assertEquals(ring.successor(members.get(0)),
+                         view.ring(i).successor(context.hashFor(members.get(0), i), m -> true));
+        }
+
+        context.offline(members.get(0));
+        assertTrue(context.version() > view.version());
+        assertTrue(view.isActive(members.get(0).getId()));
+        var next = context.view();
+        assertNotSame(view, next);
+        assertFalse(next.isActive(members.get(0).getId()));
+        assertEquals(members.size() - 1, next.activeCount());
+
+        var exec = Executors.newFixedThreadPool(2);
+        var rebalancing = exec.submit(() -> {
+            for (int i = 0; i < 20; i++) {
+                context.rebalance(i % 2 == 0 ? 10 : members.size());
+            }
+        });
+        var viewing = exec.submit(() -> {
+            for (int i = 0; i < 200; i++) {
+                var current = context.view();
+                current.rings().forEach(r -> assertEquals(members.size(), r.size()));
+                assertEquals(current.getRingCount(), current.successors(key, m -> true).size());
+            }
+        });
+        exec.shutdown();
+        // surface the assertion failures of the pool threads
+        rebalancing.get(30, TimeUnit.SECONDS);
+        viewing.get(30, TimeUnit.SECONDS);
+        assertTrue(exec.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    record TestMember(Digest id) implements Member {
+        @Override
+        public int compareTo(Member o) {
+            return id.compareTo(o.getId());
+        }
+
+        @Override
+        public Digest getId() {
+            return id;
+        }
+
+        @Override
+        public boolean verify(JohnHancock signature, InputStream message) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo.membership;
+
+import com.hellblazer.archipelago.CallStatistics;
+import com.hellblazer.archipelago.ServerConnectionCache;
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.GroupIterator;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.PeerSelector;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class PeerSelectorTest {
+
+    private static void assertSelection(PeerSelector selector, List<Member> members) {
+        var entropy = new MersenneTwister(0x1638);
+        for (var count : new int[] { 0, 1, 10, members.size(), members.size() * 2 }) {
+            var selected = selector.select(members, count, entropy);
+            assertEquals(Math.min(count, members.size()), selected.size());
+            assertEquals(selected.size(), new HashSet<>(selected).size());
+            assertTrue(members.containsAll(selected));
+        }
+    }
+
+    @Test
+    public void groupIterator() {
+        var members = ContextTest.members(20);
+        var statistics = new CallStatistics();
+        for (int i = 0; i < 10; i++) {
+            statistics.started(members.get(i).getId());
+        }
+        var iterator = new GroupIterator(members, PeerSelector.powerOfTwo(statistics));
+        for (int pass = 0; pass < 3; pass++) {
+            var visited = new HashSet<Member>();
+            for (int i = 0; i < members.size(); i++) {
+                visited.add(iterator.next());
+            }
+            assertEquals(new HashSet<>(members), visited);
+        }
+    }
+
+    @Test
+    public void latencyWeighted() {
+        var members = ContextTest.members(40);
+        var statistics = new CallStatistics();
+        for (int i = 0; i < members.size(); i++) {
+            statistics.started(members.get(i).getId());
+            statistics.completed(members.get(i).getId(), i < 20 ? 1_000_000 : 100_000_000);
+        }
+        var selector = PeerSelector.latencyWeighted(statistics);
+        assertSelection(selector, members);
+
+        var entropy = new MersenneTwister(0x1638);
+        var fast = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (members.indexOf(selector.select(members, 5, entropy).get(0)) < 20) {
+                fast++;
+            }
+        }
+        assertTrue(fast > 900, "fast: " + fast);
+    }
+
+    @Test
+    public void powerOfTwo() {
+        var members = ContextTest.members(40);
+        var statistics = new CallStatistics();
+        for (int i = 20; i < members.size(); i++) {
+            statistics.started(members.get(i).getId());
+        }
+        var selector = PeerSelector.powerOfTwo(statistics);
+        assertSelection(selector, members);
+
+        var entropy = new MersenneTwister(0x1638);
+        var idle = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (members.indexOf(selector.select(members, 1, entropy).get(0)) < 20) {
+                idle++;
+            }
+        }
+        // the busy member is chosen only when both choices are busy: ~ 1/4 of the time
+        assertTrue(idle > 650 && idle < 850, "idle: " + idle);
+    }
+
+    @Test
+    public void sample() {
+        var members = ContextTest.members(50);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members.subList(0, 40));
+        var entropy = new MersenneTwister(0x1638);
+        var excluded = members.get(0);
+        var counts = new HashMap<Member, Integer>();
+        for (int i = 0; i < 500; i++) {
+            var sample = context.sample(10, entropy, excluded.getId(), PeerSelector.uniform());
+            assertEquals(10, sample.size());
+            assertEquals(10, new HashSet<>(sample).size());
+            assertFalse(sample.contains(excluded));
+            sample.forEach(m -> counts.merge(m, 1, Integer::sum));
+        }
+        assertEquals(39, counts.size());
+        assertTrue(members.subList(1, 40).containsAll(counts.keySet()));
+        assertEquals(40, context.sample(100, entropy, null, PeerSelector.uniform()).size());
+    }
+
+    @Test
+    public void statistics() {
+        var statistics = new CallStatistics(0.5);
+        var id = ContextTest.members(1).get(0).getId();
+        assertEquals(0, statistics.inFlight(id));
+        assertEquals(-1, statistics.latency(id));
+        statistics.started(id);
+        statistics.started(id);
+        assertEquals(2, statistics.inFlight(id));
+        statistics.completed(id, 100);
+        assertEquals(100, statistics.latency(id));
+        statistics.completed(id, 200);
+        assertEquals(150, statistics.latency(id));
+        assertEquals(0, statistics.inFlight(id));
+        statistics.started(id);
+        statistics.failed(id);
+        assertEquals(150, statistics.latency(id));
+        assertEquals(0, statistics.inFlight(id));
+        statistics.remove(id);
+        assertEquals(-1, statistics.latency(id));
+
+        // departed members are forgotten
+        var cache = ServerConnectionCache.newBuilder().setStatistics(statistics).build();
+        var member = ContextTest.members(2).get(1);
+        statistics.started(member.getId());
+        statistics.completed(member.getId(), 100);
+        cache.<Member>departures().offline(member);
+        assertEquals(-1, statistics.latency(member.getId()));
+    }
+
+    @Test
+    public void uniform() {
+        assertSelection(PeerSelector.uniform(), ContextTest.members(40));
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo.membership;
+
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.Ring;
+import com.hellblazer.cryptography.hash.Digest;
+import com.hellblazer.cryptography.hash.DigestAlgorithm;
+import org.apache.commons.math3.random.MersenneTwister;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class RingTest {
+
+    private static List<Member> clockwise(NavigableMap<Digest, Member> ring, Digest from, Digest to) {
+        var result = new ArrayList<Member>();
+        Comparator<? super Digest> order = ring.comparator() == null ? Comparator.naturalOrder() : ring.comparator();
+        if (order.compare(from, to) < 0) {
+            result.addAll(ring.subMap(from, false, to, false).values());
+        } else {
+            result.addAll(ring.tailMap(from, false).values());
+            result.addAll(ring.headMap(to, false).values());
+        }
+        return result;
+    }
+
+    private static List<Member> list(Iterable<Member> iterable) {
+        var result = new ArrayList<Member>();
+        iterable.forEach(result::add);
+        return result;
+    }
+
+    private static List<Member> traversal(NavigableMap<Digest, Member> ring, Digest from) {
+        var result = new ArrayList<Member>(ring.tailMap(from, false).values());
+        result.addAll(ring.headMap(from, false).values());
+        return result;
+    }
+
+    @Test
+    public void activeScans() {
+        var members = ContextTest.members(200);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        for (int i = 0; i < members.size(); i++) {
+            if (i % 17 != 0) {
+                context.offline(members.get(i));
+            }
+        }
+        var view = context.view();
+        for (int r = 0; r < view.getRingCount(); r++) {
+            var ring = view.ring(r);
+            assertEquals(context.activeCount(), ring.activeSize());
+            for (var m : members) {
+                var hash = view.hashFor(m.getId(), r);
+                Function<Member, Ring.IterateResult> active = s -> view.isActive(s.getId())
+                                                                   ? Ring.IterateResult.SUCCESS
+                                                                   : Ring.IterateResult.CONTINUE;
+                assertEquals(ring.findSuccessor(hash, active),
+                             ring.findActiveSuccessor(hash, s -> Ring.IterateResult.SUCCESS));
+                assertEquals(ring.findPredecessor(hash, active),
+                             ring.findActivePredecessor(hash, s -> Ring.IterateResult.SUCCESS));
+            }
+        }
+        members.forEach(m -> context.offline(m));
+        var empty = context.view().ring(0);
+        assertNull(empty.findActiveSuccessor(members.get(0).getId(), s -> Ring.IterateResult.SUCCESS));
+    }
+
+    @Test
+    public void equivalence() {
+        var members = ContextTest.members(200);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members.subList(0, 150));
+        verify(context, members.subList(0, 150));
+
+        members.subList(150, 200).forEach(m -> context.activate(m));
+        members.subList(0, 25).forEach(m -> context.remove(m));
+        verify(context, members.subList(25, 200));
+    }
+
+    /**
+     * Compares lookups on the sorted array index of the ring against the equivalent navigation of the skip list. Run
+     * with -Dbenchmark=true
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    public void benchmark() {
+        for (var size : new int[] { 1_000, 10_000, 100_000 }) {
+            var members = ContextTest.members(size);
+            Context<Member> context = Context.newBuilder().setCardinality(size).build();
+            context.activate(members);
+            var ring = context.ring(0);
+            NavigableMap<Digest, Member> skipList = new ConcurrentSkipListMap<>(ring.getRing());
+            var keys = new Digest[10_000];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = DigestAlgorithm.DEFAULT.digest("key-" + i);
+            }
+            for (int round = 0; round < 5; round++) {
+                long found = 0;
+                var start = System.nanoTime();
+                for (var key : keys) {
+                    var entry = skipList.higherEntry(key);
+                    found += (entry == null ? skipList.firstEntry() : entry).getValue().hashCode();
+                }
+                var skipped = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (var key : keys) {
+                    found -= ring.successor(key).hashCode();
+                }
+                var indexed = System.nanoTime() - start;
+                assertEquals(0, found);
+                System.out.printf("size: %s skip list: %s ns/op array: %s ns/op%n", size, skipped / keys.length,
+                                  indexed / keys.length);
+            }
+        }
+    }
+
+    @Test
+    public void sample() {
+        var members = ContextTest.members(100);
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        context.activate(members);
+        var view = context.view();
+        var entropy = new MersenneTwister(0x1638);
+        var excluded = members.get(0);
+        var counts = new HashMap<Member, Integer>();
+        for (int i = 0; i < 1000; i++) {
+            var sample = view.sample(10, entropy, excluded.getId());
+            assertEquals(10, sample.size());
+            assertEquals(10, new HashSet<>(sample).size());
+            assertFalse(sample.contains(excluded));
+            sample.forEach(m -> counts.merge(m, 1, Integer::sum));
+        }
+        assertEquals(members.size() - 1, counts.size());
+        assertEquals(members.size() - 1, view.sample(members.size() * 2, entropy, excluded.getId()).size());
+        assertEquals(members.size(), view.sample(members.size(), entropy, null).size());
+        assertTrue(view.sample(0, entropy, null).isEmpty());
+
+        // the order of the sample is uniform as well: each member leads a full sample equally often
+        var few = ContextTest.members(10);
+        Context<Member> small = Context.newBuilder().setCardinality(few.size()).build();
+        small.activate(few);
+        var leading = new HashMap<Member, Integer>();
+        for (int i = 0; i < 10_000; i++) {
+            leading.merge(small.view().sample(few.size(), entropy, null).get(0), 1, Integer::sum);
+        }
+        assertEquals(few.size(), leading.size());
+        leading.values().forEach(count -> assertTrue(count > 800 && count < 1200, "leading: " + count));
+    }
+
+    private void verify(Context<Member> context, List<Member> members) {
+        var key = DigestAlgorithm.DEFAULT.digest("key");
+        for (int r = 0; r < context.getRingCount(); r++) {
+            Ring<Member> ring = context.ring(r);
+            NavigableMap<Digest, Member> reference = new TreeMap<>(ring.getRing());
+            assertEquals(members.size(), reference.size());
+
+            var location = ring.hash(key);
+            assertEquals(traversal(reference, key).get(0), ring.successor(key));
+            var expected = traversal(reference, location);
+            assertEquals(expected, list(ring.successors(key, m -> false)));
+
+            var descending = traversal(reference.descendingMap(), location);
+            assertEquals(descending.get(0), ring.predecessor(key));
+            assertEquals(descending, list(ring.predecessors(key, m -> false)));
+
+            var stop = members.get(members.size() / 2);
+            assertEquals(expected.subList(0, expected.indexOf(stop)), list(ring.successors(key, m -> m == stop)));
+
+            for (int i = 0; i < 10; i++) {
+                var start = members.get(i);
+                var end = members.get(members.size() - 1 - i);
+                var startHash = ring.hash(start);
+                var endHash = ring.hash(end);
+
+                var around = traversal(reference, startHash);
+                assertEquals(around, list(ring.traverse(start)));
+                assertEquals(around.get(0), ring.successor(start));
+                assertEquals(traversal(reference.descendingMap(), startHash).get(0), ring.predecessor(start));
+
+                var between = clockwise(reference, startHash, endHash);
+                assertEquals(between, list(ring.betweenSuccessor(start, end)));
+                assertEquals(between.size(), ring.rank(start, end));
+                assertEquals(clockwise(reference.descendingMap(), startHash, endHash),
+                             list(ring.betweenPredecessors(start, end)));
+            }
+
+            var ordered = new ArrayList<>(reference.values());
+            for (int i = 0; i < ordered.size() * 2; i += 7) {
+                assertEquals(ordered.get(i % ordered.size()), ring.get(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.archipeligo.ring;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.protobuf.Any;
+import com.hellblazer.archipelago.AdaptiveCadence;
+import com.hellblazer.archipelago.RouterImpl;
+import com.hellblazer.archipelago.ServerConnectionCache;
+import com.hellblazer.archipelago.Utils;
+import com.hellblazer.archipelago.membership.Context;
+import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.SigningMember;
+import com.hellblazer.archipelago.membership.impl.SigningMemberImpl;
+import com.hellblazer.archipelago.ring.IterationMetricsImpl;
+import com.hellblazer.archipelago.ring.RingIterator;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author hal.hildebrand
+ */
+public class RingIteratorTest {
+    private RouterImpl.CommonCommunications<TestItService, TestIt>        comms;
+    private Context<Member>                                               context;
+    private List<SigningMember>                                           members;
+    private RouterImpl                                                    router;
+    private ScheduledExecutorService                                      scheduler;
+
+    @AfterEach
+    public void after() {
+        if (router != null) {
+            router.close(Duration.ofSeconds(1));
+        }
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @BeforeEach
+    public void before() {
+        members = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            members.add(new SigningMemberImpl(Utils.getMember(i)));
+        }
+        context = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(m -> context.activate(m));
+
+        final var name = UUID.randomUUID().toString();
+        var cacheBuilder = ServerConnectionCache.newBuilder()
+                                                .setFactory(to -> InProcessChannelBuilder.forName(name).build());
+        router = new RouterImpl(members.get(0), InProcessServerBuilder.forName(name), cacheBuilder, null);
+        var local = new TestItService() {
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Member getMember() {
+                return members.get(0);
+            }
+
+            @Override
+            public Any ping(Any request) {
+                return Any.getDefaultInstance();
+            }
+        };
+        comms = router.create(members.get(0), context.getId(), new ServiceImpl(local, "A"), "A", ServerImpl::new,
+                              TestItClient::new, local);
+        router.start();
+        scheduler = Executors.newScheduledThreadPool(1, Thread.ofVirtual().factory());
+    }
+
+    @Test
+    public void fanOutFailedMajority() throws Exception {
+        var iterator = iterator();
+        var futures = new CopyOnWriteArrayList<SettableFuture<Boolean>>();
+        var succeeded = new AtomicBoolean();
+        var failed = new CountDownLatch(1);
+        var complete = new CountDownLatch(1);
+        var tally = new AtomicInteger(-1);
+        iterator.fanOut(context.getId(), () -> succeeded.set(true), (link, ring) -> {
+            var future = SettableFuture.<Boolean>create();
+            futures.add(future);
+            return future;
+        }, failed::countDown, (t, result, destination) -> {
+            if (success(result)) {
+                t.incrementAndGet();
+            }
+            return true;
+        }, t -> {
+            tally.set(t);
+            complete.countDown();
+        });
+        var rings = context.getRingCount();
+        assertTrue(awaitIssued(futures, rings));
+        var failing = rings - context.majority() + 1;
+        for (int i = 0; i < failing; i++) {
+            futures.get(i).set(false);
+        }
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+        assertTrue(complete.await(1, TimeUnit.SECONDS));
+        assertFalse(succeeded.get());
+        assertEquals(0, tally.get());
+        for (int i = failing; i < rings; i++) {
+            assertTrue(futures.get(i).isCancelled());
+        }
+    }
+
+    @Test
+    public void cadence() throws Exception {
+        var metrics = new IterationMetricsImpl("test", new MetricRegistry());
+        var cadence = new AdaptiveCadence(Duration.ofMillis(10), Duration.ofMillis(80), 2.0, 0.5);
+        var iterator = iterator().setCadence(cadence).setMetrics(metrics);
+        var steps = new CopyOnWriteArrayList<Long>();
+        var intervals = new CopyOnWriteArrayList<Duration>();
+        var complete = new CountDownLatch(1);
+
+        // the handler stretches the cadence on every step, as a protocol does on idle rounds
+        iterator.iterate(context.getId(), (link, ring) -> Futures.immediateFuture(true), (t, result, destination) -> {
+            steps.add(System.nanoTime());
+            intervals.add(cadence.idle());
+            return true;
+        }, t -> complete.countDown());
+        assertTrue(complete.await(10, TimeUnit.SECONDS));
+
+        var rings = context.getRingCount();
+        assertEquals(rings, steps.size());
+        for (int i = 1; i < steps.size(); i++) {
+            // the steps are spaced by the cadence's interval, not the iterator's frequency of 1ms
+            var expected = intervals.get(i - 1);
+            assertTrue(steps.get(i) - steps.get(i - 1) >= expected.toNanos(),
+                       "step: " + i + " spaced: " + Duration.ofNanos(steps.get(i) - steps.get(i - 1)) + " expected: "
+                       + expected);
+        }
+        assertEquals(Math.min(80, 10L << rings), intervals.get(rings - 1).toMillis());
+        assertEquals(rings, metrics.cadence().getCount());
+        assertEquals(Math.min(80, 10L << rings), metrics.cadence().getSnapshot().getMax());
+    }
+
+    @Test
+    public void fanOutCloseFailure() throws Exception {
+        var local = new TestItService() {
+            @Override
+            public void close() throws IOException {
+                throw new IOException("close");
+            }
+
+            @Override
+            public Member getMember() {
+                return members.get(0);
+            }
+
+            @Override
+            public Any ping(Any request) {
+                return Any.getDefaultInstance();
+            }
+        };
+        ServerConnectionCache.CreateClientCommunications<TestItService> client = c -> new TestItClient(c) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                throw new IOException("close");
+            }
+        };
+        var closing = router.create(members.get(0), context.getId(), new ServiceImpl(local, "B"), "B",
+                                    ServerImpl::new, client, local);
+        var iterator = new RingIterator<>(Duration.ofMillis(1), context, members.get(0), scheduler, closing,
+                                          Executors.newVirtualThreadPerTaskExecutor());
+        var majority = new CountDownLatch(1);
+        var complete = new CountDownLatch(1);
+        var tally = new AtomicInteger(-1);
+
+        // the rounds issued are handled even though closing their links fails
+        iterator.fanOut(context.getId(), majority::countDown,
+                        (link, ring) -> Futures.immediateFuture(true), () -> {
+                        }, (t, result, destination) -> {
+                            if (success(result)) {
+                                t.incrementAndGet();
+                            }
+                            return true;
+                        }, t -> {
+                            tally.set(t);
+                            complete.countDown();
+                        });
+        assertTrue(majority.await(1, TimeUnit.SECONDS));
+        assertTrue(complete.await(1, TimeUnit.SECONDS));
+        assertEquals(context.majority(), tally.get());
+    }
+
+    @Test
+    public void fanOutFailedRound() throws Exception {
+        var iterator = iterator();
+        var failed = new CountDownLatch(1);
+        var complete = new CountDownLatch(1);
+        var empty = new AtomicInteger();
+
+        // a round that fails to issue is handled as having no response
+        iterator.fanOut(context.getId(), () -> {
+        }, (link, ring) -> {
+            throw new IllegalStateException("round");
+        }, failed::countDown, (t, result, destination) -> {
+            if (result.isEmpty()) {
+                empty.incrementAndGet();
+            }
+            return true;
+        }, t -> complete.countDown());
+        assertTrue(failed.await(1, TimeUnit.SECONDS));
+        assertTrue(complete.await(1, TimeUnit.SECONDS));
+        assertTrue(empty.get() > 0);
+    }
+
+    @Test
+    public void fanOutMajority() throws Exception {
+        var iterator = iterator();
+        var futures = new CopyOnWriteArrayList<SettableFuture<Boolean>>();
+        var majority = new CountDownLatch(1);
+        var failed = new AtomicBoolean();
+        var complete = new CountDownLatch(1);
+        var tally = new AtomicInteger(-1);
+        var handled = new AtomicInteger();
+        final var parallelism = 2;
+        iterator.fanOut(context.getId(), parallelism, majority::countDown, (link, ring) -> {
+            var future = SettableFuture.<Boolean>create();
+            futures.add(future);
+            return future;
+        }, () -> failed.set(true), (t, result, destination) -> {
+            handled.incrementAndGet();
+            if (success(result)) {
+                t.incrementAndGet();
+            }
+            return true;
+        }, t -> {
+            tally.set(t);
+            complete.countDown();
+        });
+
+        // no more than the parallelism outstanding
+        assertTrue(awaitIssued(futures, parallelism));
+        Thread.sleep(50);
+        assertEquals(parallelism, futures.size());
+
+        var required = context.majority();
+        for (int i = 0; i < required; i++) {
+            futures.get(i).set(true);
+            assertTrue(awaitIssued(futures, Math.min(i + 1 + parallelism, context.getRingCount())));
+        }
+        assertTrue(majority.await(1, TimeUnit.SECONDS));
+        assertTrue(complete.await(1, TimeUnit.SECONDS));
+        assertFalse(failed.get());
+        assertEquals(required, tally.get());
+        assertEquals(required, handled.get());
+        futures.subList(required, futures.size()).forEach(f -> assertTrue(f.isCancelled()));
+    }
+
+    @Test
+    public void stalledSteps() throws Exception {
+        var metrics = new IterationMetricsImpl("test", new MetricRegistry());
+        var iterator = iterator().setStepTimeout(Duration.ofMillis(10)).setMetrics(metrics);
+        var futures = new CopyOnWriteArrayList<SettableFuture<Boolean>>();
+        var empty = new AtomicInteger();
+        var complete = new CountDownLatch(1);
+        iterator.iterate(context.getId(), (link, ring) -> {
+            var future = SettableFuture.<Boolean>create();
+            futures.add(future);
+            return future;
+        }, (t, result, destination) -> {
+            if (result.isEmpty()) {
+                empty.incrementAndGet();
+            }
+            return true;
+        }, t -> complete.countDown());
+        assertTrue(complete.await(5, TimeUnit.SECONDS));
+        var rings = context.getRingCount();
+        assertEquals(rings, futures.size());
+        assertEquals(rings, empty.get());
+        futures.forEach(f -> assertTrue(f.isCancelled()));
+        assertEquals(rings, metrics.stalled().getCount());
+        assertEquals(rings, metrics.stepDuration().getCount());
+    }
+
+    private boolean awaitIssued(List<?> futures, int count) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 1000;
+        while (futures.size() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    private RingIterator<Member, TestItService> iterator() {
+        return new RingIterator<>(Duration.ofMillis(1), context, members.get(0), scheduler, comms,
+                                  Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    private boolean success(Optional<ListenableFuture<Boolean>> result) {
+        try {
+            return result.isPresent() && result.get().get();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.hellblazer.archipeligo.ring;
 
 import com.google.protobuf.Any;
+import com.hellblazer.archipelago.PhiAccrualDetector;
 import com.hellblazer.archipelago.RouterImpl;
 import com.hellblazer.archipelago.ServerConnectionCache;
 import com.hellblazer.archipelago.Utils;
@@ -14,12 +15,16 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -93,4 +98,142 @@ public class SyncRingCommunicationsTest {
             router.close(Duration.ofSeconds(1));
         }
     }
+
+    @Test
+    public void recovers() throws Exception {
+        var serverMember1 = new SigningMemberImpl(Utils.getMember(0));
+        var serverMember2 = new SigningMemberImpl(Utils.getMember(1));
+        var serverMember3 = new SigningMemberImpl(Utils.getMember(2));
+        var context = Context.newBuilder().build();
+        context.activate(serverMember1);
+        context.activate(serverMember2);
+        context.activate(serverMember3);
+        var clock = new AtomicLong();
+        var detector = new PhiAccrualDetector(PhiAccrualDetector.DEFAULT_THRESHOLD, Duration.ofMillis(500),
+                                              Duration.ofMillis(10), 0.1, clock::get);
+        context.setSuspicion(detector);
+
+        final var name = UUID.randomUUID().toString();
+        var cacheBuilder = ServerConnectionCache.newBuilder()
+                                                .setDetector(detector)
+                                                .setFactory(to -> InProcessChannelBuilder.forName(name).build());
+        var router = new RouterImpl(serverMember1, InProcessServerBuilder.forName(name), cacheBuilder, null);
+        var local = service(serverMember1);
+        var comms = router.create(serverMember1, context.getId(), new ServiceImpl(local, "A"), "A", ServerImpl::new,
+                                  TestItClient::new, local);
+        try {
+            router.start();
+            var sync = new SyncRingCommunications<Member, TestItService>(context, serverMember1, comms);
+            var target = destinations(sync, context.getRingCount()).get(0);
+
+            // a failure routes traversals around the target, which is then called only by the probe traversals
+            detector.started(target.getId());
+            detector.failed(target.getId());
+            clock.addAndGet(Duration.ofSeconds(5).toNanos());
+            assertTrue(detector.isSuspected(target.getId()));
+
+            var rounds = context.getRingCount() * 16;
+            var destinations = destinations(sync, rounds);
+            assertEquals(rounds, destinations.size());
+            assertTrue(destinations.contains(target), "Destinations: " + destinations);
+            assertFalse(detector.isSuspected(target.getId()));
+        } finally {
+            router.close(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    public void suspected() throws Exception {
+        var serverMember1 = new SigningMemberImpl(Utils.getMember(0));
+        var serverMember2 = new SigningMemberImpl(Utils.getMember(1));
+        var serverMember3 = new SigningMemberImpl(Utils.getMember(2));
+        var context = Context.newBuilder().build();
+        context.activate(serverMember1);
+        context.activate(serverMember2);
+        context.activate(serverMember3);
+        context.setSuspicion(id -> id.equals(serverMember2.getId()));
+
+        final var name = UUID.randomUUID().toString();
+        var cacheBuilder = ServerConnectionCache.newBuilder()
+                                                .setFactory(to -> InProcessChannelBuilder.forName(name).build());
+        var router = new RouterImpl(serverMember1, InProcessServerBuilder.forName(name), cacheBuilder, null);
+        var local = service(serverMember1);
+        var comms = router.create(serverMember1, context.getId(), new ServiceImpl(local, "A"), "A", ServerImpl::new,
+                                  TestItClient::new, local);
+        try {
+            router.start();
+            var sync = new SyncRingCommunications<Member, TestItService>(context, serverMember1, comms);
+            var rounds = context.getRingCount() * 2;
+            var destinations = destinations(sync, rounds);
+            assertEquals(rounds, destinations.size());
+            assertTrue(destinations.stream().allMatch(serverMember3::equals), "Destinations: " + destinations);
+        } finally {
+            router.close(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    public void viewChanges() throws Exception {
+        var serverMember1 = new SigningMemberImpl(Utils.getMember(0));
+        var serverMember2 = new SigningMemberImpl(Utils.getMember(1));
+        var serverMember3 = new SigningMemberImpl(Utils.getMember(2));
+        var context = Context.newBuilder().build();
+        context.activate(serverMember1);
+        context.activate(serverMember2);
+        context.activate(serverMember3);
+
+        final var name = UUID.randomUUID().toString();
+        var cacheBuilder = ServerConnectionCache.newBuilder()
+                                                .setFactory(to -> InProcessChannelBuilder.forName(name).build());
+        var router = new RouterImpl(serverMember1, InProcessServerBuilder.forName(name), cacheBuilder, null);
+        var local = service(serverMember1);
+        var comms = router.create(serverMember1, context.getId(), new ServiceImpl(local, "A"), "A", ServerImpl::new,
+                                  TestItClient::new, local);
+        try {
+            router.start();
+            var sync = new SyncRingCommunications<Member, TestItService>(context, serverMember1, comms);
+            var rounds = context.getRingCount();
+            var destinations = destinations(sync, rounds * 2);
+            assertEquals(rounds * 2, destinations.size());
+            assertTrue(destinations.contains(serverMember2) || destinations.contains(serverMember3));
+
+            // the memoized traversals of the previous view are not reused
+            var offline = destinations.get(destinations.size() - 1);
+            var remaining = offline.equals(serverMember2) ? serverMember3 : serverMember2;
+            context.offline(offline);
+            destinations = destinations(sync, rounds);
+            assertEquals(rounds, destinations.size());
+            assertTrue(destinations.stream().allMatch(remaining::equals), "Destinations: " + destinations);
+        } finally {
+            router.close(Duration.ofSeconds(1));
+        }
+    }
+
+    private List<Member> destinations(SyncRingCommunications<Member, TestItService> sync, int rounds) {
+        var destinations = new ArrayList<Member>();
+        for (int i = 0; i < rounds; i++) {
+            sync.execute((link, round) -> link.ping(Any.getDefaultInstance()),
+                         (result, destination) -> destinations.add(destination.member()));
+        }
+        return destinations;
+    }
+
+    private TestItService service(Member member) {
+        return new TestItService() {
+
+            @Override
+            public void close() throws IOException {
+            }
+
+            @Override
+            public Member getMember() {
+                return member;
+            }
+
+            @Override
+            public Any ping(Any request) {
+                return Any.getDefaultInstance();
+            }
+        };
+    }
 }
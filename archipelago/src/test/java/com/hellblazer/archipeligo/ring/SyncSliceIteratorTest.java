@@ -6,27 +6,141 @@ import com.hellblazer.archipelago.ServerConnectionCache;
 import com.hellblazer.archipelago.Utils;
 import com.hellblazer.archipelago.membership.Context;
 import com.hellblazer.archipelago.membership.Member;
+import com.hellblazer.archipelago.membership.SigningMember;
 import com.hellblazer.archipelago.membership.impl.SigningMemberImpl;
 import com.hellblazer.archipelago.ring.SyncSliceIterator;
+import com.hellblazer.cryptography.hash.DigestAlgorithm;
 import io.grpc.inprocess.InProcessChannelBuilder;
 import io.grpc.inprocess.InProcessServerBuilder;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * @author hal.hildebrand
  **/
 public class SyncSliceIteratorTest {
+    @Test
+    public void fanOut() throws Exception {
+        var members = new ArrayList<SigningMember>();
+        for (int i = 0; i < 20; i++) {
+            members.add(new SigningMemberImpl(Utils.getMember(i)));
+        }
+        var fixture = fixture(members.get(0));
+        try {
+            var slice = new SyncSliceIterator<TestItService>("Test Me", members.get(0), members,
+                                                             fixture.comms());
+            var running = new AtomicInteger();
+            var maxRunning = new AtomicInteger();
+            var handled = new ConcurrentSkipListSet<Member>();
+            var completed = new CountDownLatch(1);
+            var handledAtCompletion = new AtomicInteger();
+            slice.fanOut((link, member) -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                }
+                return member;
+            }, (result, comms, member) -> {
+                assertEquals(member, result.get());
+                handled.add(member);
+                return true;
+            }, () -> {
+                handledAtCompletion.set(handled.size());
+                completed.countDown();
+            }, 4);
+            assertTrue(completed.await(5, TimeUnit.SECONDS));
+            assertEquals(members.size(), handledAtCompletion.get());
+            assertTrue(maxRunning.get() <= 4, "max running: " + maxRunning.get());
+            assertTrue(maxRunning.get() > 1, "max running: " + maxRunning.get());
+        } finally {
+            fixture.router().close(Duration.ofSeconds(1));
+        }
+    }
+
+    @Test
+    public void fanOutStopsEarly() throws Exception {
+        var members = new ArrayList<SigningMember>();
+        for (int i = 0; i < 20; i++) {
+            members.add(new SigningMemberImpl(Utils.getMember(i)));
+        }
+        var fixture = fixture(members.get(0));
+        try {
+            var slice = new SyncSliceIterator<TestItService>("Test Me", members.get(0), members,
+                                                             fixture.comms());
+            var started = new AtomicInteger();
+            var handled = new AtomicInteger();
+            var completed = new AtomicBoolean();
+            var stopped = new CountDownLatch(1);
+            slice.fanOut((link, member) -> {
+                if (started.incrementAndGet() > 1) {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return member;
+            }, (result, comms, member) -> {
+                handled.incrementAndGet();
+                stopped.countDown();
+                return false;
+            }, () -> completed.set(true), 2);
+            assertTrue(stopped.await(5, TimeUnit.SECONDS));
+            Thread.sleep(100);
+            assertEquals(1, handled.get());
+            assertTrue(started.get() <= 3, "started: " + started.get());
+            assertFalse(completed.get());
+        } finally {
+            fixture.router().close(Duration.ofSeconds(1));
+        }
+    }
+
+    private Fixture fixture(Member member) {
+        var local = new TestItService() {
+            @Override
+            public void close() {
+            }
+
+            @Override
+            public Member getMember() {
+                return member;
+            }
+
+            @Override
+            public Any ping(Any request) {
+                return Any.getDefaultInstance();
+            }
+        };
+        final var name = UUID.randomUUID().toString();
+        var cacheBuilder = ServerConnectionCache.newBuilder()
+                                                .setFactory(to -> InProcessChannelBuilder.forName(name).build());
+        var router = new RouterImpl(member, InProcessServerBuilder.forName(name), cacheBuilder, null);
+        RouterImpl.CommonCommunications<TestItService, TestIt> comms = router.create(member, DigestAlgorithm.DEFAULT
+                                                                                             .getOrigin(),
+                                                                                     new ServiceImpl(local, "A"), "A",
+                                                                                     ServerImpl::new,
+                                                                                     TestItClient::new, local);
+        router.start();
+        return new Fixture(router, comms);
+    }
+
     @Test
     public void smokin() throws Exception {
         var serverMember1 = new SigningMemberImpl(Utils.getMember(0));
@@ -101,4 +215,7 @@ public class SyncSliceIteratorTest {
             router.close(Duration.ofSeconds(10));
         }
     }
+
+    private record Fixture(RouterImpl router, RouterImpl.CommonCommunications<TestItService, TestIt> comms) {
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023. Hal Hildebrand, All Rights Reserved.
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ */
+
+package com.hellblazer.rbc;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for one gossip round of the ReliableBroadcaster. The event duration covers the round, from
+ * the gossip to the ring successor until the reconciliation update has been sent.
+ *
+ * @author hal.hildebrand
+ */
+@Name("com.hellblazer.rbc.GossipRound")
+@Label("Reliable Broadcast Gossip Round")
+@Category({ "Archipelago", "RBC" })
+@Description("One gossip round of reliable broadcast, with messages reconciled and delivered")
+@StackTrace(false)
+public class GossipRoundEvent extends Event {
+    @Label("Buffered")
+    @Description("Messages held in the buffer at the end of the round")
+    public int    buffered;
+    @Label("Context")
+    public String context;
+    @Label("Delivered")
+    @Description("Messages received in the round that were newly delivered")
+    public int    delivered;
+    @Label("Member")
+    public String member;
+    @Label("Peer")
+    public String peer;
+    @Label("Received")
+    @Description("Messages received from the peer")
+    public int    received;
+    @Label("Reconciled")
+    @Description("Messages sent to the peer to reconcile")
+    public int    reconciled;
+    @Label("Ring")
+    public int    ring;
+    @Label("Round")
+    public int    round;
+}
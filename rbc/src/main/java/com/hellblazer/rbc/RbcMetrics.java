@@ -16,6 +16,11 @@ import com.hellblazer.archipelago.protocols.EndpointMetrics;
  */
 public interface RbcMetrics extends EndpointMetrics {
 
+    /**
+     * @return the effective interval between gossip rounds, in milliseconds
+     */
+    Histogram gossipCadence();
+
     Histogram gossipReply();
 
     Histogram gossipResponse();
@@ -18,6 +18,7 @@ import static com.codahale.metrics.MetricRegistry.name;
  * @author hal.hildebrand
  */
 public class RbcMetricsImpl extends EndpointMetricsImpl implements RbcMetrics {
+    private final Histogram gossipCadence;
     private final Histogram gossipReply;
     private final Histogram gossipResponse;
     private final Timer     gossipRoundDuration;
@@ -53,6 +54,12 @@ public class RbcMetricsImpl extends EndpointMetricsImpl implements RbcMetrics {
         MetricRegistry.name(context.shortString(), system, "rbc.gossip.reply.outbound.bytes"));
         gossipRoundDuration = registry.timer(
         MetricRegistry.name(context.shortString(), system, "rbc.gossip.round.duration"));
+        gossipCadence = registry.histogram(MetricRegistry.name(context.shortString(), system, "rbc.gossip.cadence"));
+    }
+
+    @Override
+    public Histogram gossipCadence() {
+        return gossipCadence;
     }
 
     @Override
@@ -18,6 +18,7 @@ import com.google.protobuf.Any;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
+import com.hellblazer.archipelago.AdaptiveCadence;
 import com.hellblazer.archipelago.Router;
 import com.hellblazer.archipelago.RouterImpl;
 import com.hellblazer.archipelago.membership.Context;
@@ -40,23 +41,31 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import static com.hellblazer.archipelago.Utils.wrapped;
 import static com.hellblazer.rbc.comms.RbcClient.getCreate;
 
 /**
  * Content agnostic reliable broadcast of messages.
+ * <p>
+ * Messages are disseminated by rounds of pull gossip, reconciling the buffered messages of each member with those of
+ * its successor on one of the context's rings. With eager push enabled in the Parameters, newly published messages are
+ * also pushed immediately to this member's successor on each ring, batched over the push linger. Pull reconciliation
+ * remains the repair path for any push that is lost.
  *
  * @author hal.hildebrand
  */
 public class ReliableBroadcaster {
 
-    private static final Logger                                                      log     = LoggerFactory.getLogger(
+    private static final Logger                                                      log       = LoggerFactory.getLogger(
     ReliableBroadcaster.class);
     private final        MessageAdapter                                              adapter;
+    private final        AtomicReference<ScheduledFuture<?>>                         nextRound = new AtomicReference<>();
     private final        Buffer                                                      buffer;
     private final        RouterImpl.CommonCommunications<ReliableBroadcast, Service> comm;
     private final        Context<Member>                                             context;
@@ -64,9 +73,13 @@ public class ReliableBroadcaster {
     private final        SigningMember                                               member;
     private final        RbcMetrics                                                  metrics;
     private final        Parameters                                                  params;
-    private final        AtomicBoolean                                               started = new AtomicBoolean();
-    private volatile     Consumer<Integer>                                           roundListener;
+    private final        AtomicBoolean                                               pushing   = new AtomicBoolean();
+    private final        Queue<AgedMessage>                                          pushQueue = new ConcurrentLinkedQueue<>();
+    private final        AtomicBoolean                                               started   = new AtomicBoolean();
+    private volatile     AdaptiveCadence                                             cadence;
     private volatile     MessageHandler                                              channelHandler;
+    private volatile     Consumer<Integer>                                           roundListener;
+    private volatile     ScheduledExecutorService                                    scheduler;
 
     public ReliableBroadcaster(Context<Member> context, SigningMember member, Parameters parameters,
                                Router communications, RbcMetrics metrics, MessageAdapter adapter) {
@@ -158,11 +171,15 @@ public class ReliableBroadcaster {
         }
         log.debug("publishing message on: {}", member.getId());
         AgedMessage m = buffer.send(Any.pack(message), member);
+        if (params.eagerPush) {
+            push(m);
+        }
         if (notifyLocal) {
             deliver(Collections.singletonList(
             new Msg(Collections.singletonList(member.getId()), adapter.extractor.apply(m),
                     adapter.hasher.apply(m.getContent()))));
         }
+        hasten();
     }
 
     public void register(Consumer<Integer> roundListener) {
@@ -181,14 +198,28 @@ public class ReliableBroadcaster {
         roundListener = null;
     }
 
+    /**
+     * Start gossiping at a fixed interval
+     */
     public void start(Duration duration, ScheduledExecutorService scheduler) {
+        start(new AdaptiveCadence(duration), scheduler);
+    }
+
+    /**
+     * Start gossiping at an adaptive interval. The interval stretches toward the cadence's maximum while gossip rounds
+     * neither deliver nor reconcile messages, shrinks toward its minimum as they do, and returns to the minimum when a
+     * message is published
+     */
+    public void start(AdaptiveCadence cadence, ScheduledExecutorService scheduler) {
         if (!started.compareAndSet(false, true)) {
             return;
         }
-        var initialDelay = Entropy.nextBitsStreamLong(duration.toMillis());
+        this.cadence = cadence;
+        this.scheduler = scheduler;
+        var initialDelay = Entropy.nextBitsStreamLong(cadence.getMin().toMillis());
         log.info("Starting Reliable Broadcaster[{}] for {}", context.getId(), member.getId());
         comm.register(context.getId(), new Service());
-        scheduler.schedule(() -> oneRound(duration, scheduler), initialDelay, TimeUnit.MILLISECONDS);
+        nextRound.set(scheduler.schedule(this::oneRound, initialDelay, TimeUnit.MILLISECONDS));
     }
 
     public void stop() {
@@ -201,6 +232,23 @@ public class ReliableBroadcaster {
         comm.deregister(context.getId());
     }
 
+    private void commit(GossipRoundEvent event, SyncRingCommunications.Destination<Member, ReliableBroadcast> destination,
+                        int received, int delivered, int reconciled) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.context = context.getId().toString();
+            event.member = member.getId().toString();
+            event.peer = destination.member() == null ? null : destination.member().getId().toString();
+            event.ring = destination.ring();
+            event.round = buffer.round();
+            event.received = received;
+            event.delivered = delivered;
+            event.reconciled = reconciled;
+            event.buffered = buffer.size();
+            event.commit();
+        }
+    }
+
     private void deliver(List<Msg> newMsgs) {
         if (newMsgs.isEmpty()) {
             return;
@@ -238,9 +286,33 @@ public class ReliableBroadcaster {
         }
     }
 
+    /**
+     * Bring the next gossip round forward to the minimum interval of the cadence, so that newly published messages
+     * spread without waiting out an interval stretched by idle rounds
+     */
+    private void hasten() {
+        final var current = cadence;
+        final var pending = nextRound.get();
+        if (current == null || pending == null) {
+            return;
+        }
+        var min = current.pulse().toNanos();
+        if (pending.getDelay(TimeUnit.NANOSECONDS) <= min || !pending.cancel(false)) {
+            return;
+        }
+        try {
+            nextRound.compareAndSet(pending, scheduler.schedule(this::oneRound, min, TimeUnit.NANOSECONDS));
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+    }
+
     private void handle(Optional<Reconcile> result,
-                        SyncRingCommunications.Destination<Member, ReliableBroadcast> destination, Duration duration,
-                        ScheduledExecutorService scheduler, Timer.Context timer) {
+                        SyncRingCommunications.Destination<Member, ReliableBroadcast> destination,
+                        Timer.Context timer, GossipRoundEvent event) {
+        int received = 0;
+        int delivered = 0;
+        int reconciled = 0;
         try {
             Reconcile gossip;
             try {
@@ -253,17 +325,17 @@ public class ReliableBroadcaster {
                 log.debug("Received: {} updates from: {} on: {}", gossip.getUpdatesList().size(),
                           destination.member().getId(), member.getId());
             }
-            buffer.receive(gossip.getUpdatesList());
-            destination.link().update(ReconcileContext.newBuilder()
-                                                      .setRing(destination.ring())
-                                                      .addAllUpdates(
-                                                      buffer.reconcile(BloomFilter.from(gossip.getDigests()),
-                                                                       destination.member().getId()))
-                                                      .build());
+            received = gossip.getUpdatesCount();
+            delivered = buffer.receive(gossip.getUpdatesList());
+            var updates = buffer.reconcile(BloomFilter.from(gossip.getDigests()), destination.member().getId());
+            reconciled = updates.size();
+            destination.link().update(
+            ReconcileContext.newBuilder().setRing(destination.ring()).addAllUpdates(updates).build());
         } finally {
             if (timer != null) {
                 timer.stop();
             }
+            commit(event, destination, received, delivered, reconciled);
             if (started.get()) {
                 buffer.tick();
                 if (roundListener != null) {
@@ -274,8 +346,12 @@ public class ReliableBroadcaster {
                         log.error("error sending round() to listener on: {}", member.getId(), e);
                     }
                 }
+                var interval = result.isPresent() ? cadence.round(delivered + reconciled) : cadence.interval();
+                if (metrics != null) {
+                    metrics.gossipCadence().update(interval.toMillis());
+                }
                 try {
-                    scheduler.schedule(() -> oneRound(duration, scheduler), duration.toNanos(), TimeUnit.NANOSECONDS);
+                    nextRound.set(scheduler.schedule(this::oneRound, interval.toNanos(), TimeUnit.NANOSECONDS));
                 } catch (RejectedExecutionException e) {
                     return;
                 }
@@ -283,14 +359,79 @@ public class ReliableBroadcaster {
         }
     }
 
-    private void oneRound(Duration duration, ScheduledExecutorService scheduler) {
+    /**
+     * Queue the published message for eager push, scheduling the push of the queue after the linger if none is pending
+     */
+    private void push(AgedMessage message) {
+        final var current = scheduler;
+        if (current == null) {
+            return;
+        }
+        pushQueue.add(message);
+        if (!pushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            current.schedule(wrapped(this::pushQueued, log), params.pushLinger.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            pushing.set(false);
+        }
+    }
+
+    /**
+     * Push the queued messages to the successor of this member on each ring, through the update of the reconciliation
+     * protocol. Each successor is pushed to once, on the first ring it succeeds this member, and the messages are
+     * batched by the maximum messages a member will receive in one update
+     */
+    private void pushQueued() {
+        pushing.set(false);
+        var batches = new ArrayList<List<AgedMessage>>();
+        var batch = new ArrayList<AgedMessage>();
+        AgedMessage next;
+        while ((next = pushQueue.poll()) != null) {
+            if (batch.size() == params.maxMessages) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+            batch.add(next);
+        }
+        if (batch.isEmpty() || !started.get()) {
+            return;
+        }
+        batches.add(batch);
+        var pushed = new HashSet<Member>();
+        for (int ring = 0; ring < context.getRingCount(); ring++) {
+            var successor = context.ring(ring).successor(member);
+            if (successor == null || successor.equals(member) || !pushed.add(successor)) {
+                continue;
+            }
+            final var r = ring;
+            Thread.ofVirtual().start(wrapped(() -> {
+                try (var link = comm.connect(successor)) {
+                    if (link == null) {
+                        log.trace("No connection for push to: {} on: {}", successor.getId(), member.getId());
+                        return;
+                    }
+                    for (var updates : batches) {
+                        link.update(ReconcileContext.newBuilder().setRing(r).addAllUpdates(updates).build());
+                    }
+                } catch (Throwable e) {
+                    log.trace("Push to: {} on ring: {} failed on: {}", successor.getId(), r, member.getId(), e);
+                }
+            }, log));
+        }
+    }
+
+    private void oneRound() {
         if (!started.get()) {
             return;
         }
 
         var timer = metrics == null ? null : metrics.gossipRoundDuration().time();
+        var event = new GossipRoundEvent();
+        event.begin();
         gossiper.execute((link, ring) -> gossipRound(link, ring),
-                         (futureSailor, destination) -> handle(futureSailor, destination, duration, scheduler, timer));
+                         (futureSailor, destination) -> handle(futureSailor, destination, timer, event));
     }
 
     @FunctionalInterface
@@ -309,8 +450,12 @@ public class ReliableBroadcaster {
     public record Msg(List<Digest> source, Any content, Digest hash) {
     }
 
+    /**
+     * @param eagerPush  - push newly published messages to the successors of the member on each ring
+     * @param pushLinger - the time published messages are batched for before they are eagerly pushed
+     */
     public record Parameters(int bufferSize, int maxMessages, DigestAlgorithm digestAlgorithm, double falsePositiveRate,
-                             int deliveredCacheSize) {
+                             int deliveredCacheSize, boolean eagerPush, Duration pushLinger) {
         public static Builder newBuilder() {
             return new Builder();
         }
@@ -319,11 +464,14 @@ public class ReliableBroadcaster {
             private int             bufferSize         = 1500;
             private int             deliveredCacheSize = 100;
             private DigestAlgorithm digestAlgorithm    = DigestAlgorithm.DEFAULT;
+            private boolean         eagerPush          = false;
             private double          falsePositiveRate  = 0.00125;
             private int             maxMessages        = 500;
+            private Duration        pushLinger         = Duration.ofMillis(5);
 
             public Parameters build() {
-                return new Parameters(bufferSize, maxMessages, digestAlgorithm, falsePositiveRate, deliveredCacheSize);
+                return new Parameters(bufferSize, maxMessages, digestAlgorithm, falsePositiveRate, deliveredCacheSize,
+                                      eagerPush, pushLinger);
             }
 
             @Override
@@ -362,6 +510,15 @@ public class ReliableBroadcaster {
                 return this;
             }
 
+            public boolean isEagerPush() {
+                return eagerPush;
+            }
+
+            public Builder setEagerPush(boolean eagerPush) {
+                this.eagerPush = eagerPush;
+                return this;
+            }
+
             public double getFalsePositiveRate() {
                 return falsePositiveRate;
             }
@@ -379,6 +536,15 @@ public class ReliableBroadcaster {
                 this.maxMessages = maxMessages;
                 return this;
             }
+
+            public Duration getPushLinger() {
+                return pushLinger;
+            }
+
+            public Builder setPushLinger(Duration pushLinger) {
+                this.pushLinger = pushLinger;
+                return this;
+            }
         }
 
     }
@@ -443,25 +609,29 @@ public class ReliableBroadcaster {
             return biff;
         }
 
-        public void receive(List<AgedMessage> messages) {
+        public int receive(List<AgedMessage> messages) {
             if (messages.size() == 0) {
-                return;
+                return 0;
             }
             log.debug("receiving: {} msgs on: {}", messages.size(), member);
-            deliver(messages.stream()
-                            .limit(params.maxMessages)
-                            .map(am -> new state(adapter.hasher.apply(am.getContent()), AgedMessage.newBuilder(am)))
-                            .filter(s -> !dup(s))
-                            .filter(s -> adapter.verifier.test(s.msg.getContent()))
-                            .map(s -> state.merge(s.hash, s, (a, b) -> a.msg.getAge() >= b.msg.getAge() ? a : b))
-                            .map(s -> new Msg(adapter.source.apply(s.msg.getContent()), adapter.extractor.apply(s.msg),
-                                              s.hash))
-                            .filter(m -> delivered.add(m.hash, null))
-                            .toList());
+            var newMsgs = messages.stream()
+                                  .limit(params.maxMessages)
+                                  .map(am -> new state(adapter.hasher.apply(am.getContent()),
+                                                       AgedMessage.newBuilder(am)))
+                                  .filter(s -> !dup(s))
+                                  .filter(s -> adapter.verifier.test(s.msg.getContent()))
+                                  .map(s -> state.merge(s.hash, s,
+                                                        (a, b) -> a.msg.getAge() >= b.msg.getAge() ? a : b))
+                                  .map(s -> new Msg(adapter.source.apply(s.msg.getContent()),
+                                                    adapter.extractor.apply(s.msg), s.hash))
+                                  .filter(m -> delivered.add(m.hash, null))
+                                  .toList();
+            deliver(newMsgs);
             gc();
+            return newMsgs.size();
         }
 
-        public Iterable<? extends AgedMessage> reconcile(BloomFilter<Digest> biff, Digest from) {
+        public List<AgedMessage> reconcile(BloomFilter<Digest> biff, Digest from) {
             PriorityQueue<AgedMessage.Builder> mailBox = new PriorityQueue<>(Comparator.comparingInt(s -> s.getAge()));
             state.values().stream().filter(s -> !biff.contains(s.hash)).filter(s -> s.msg.getAge() < maxAge).forEach(
             s -> mailBox.add(s.msg));
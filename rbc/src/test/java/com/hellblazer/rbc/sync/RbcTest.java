@@ -29,14 +29,18 @@ import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -132,6 +136,198 @@ public class RbcTest {
                        .report();
     }
 
+    @Test
+    public void cadence() throws Exception {
+        MetricRegistry registry = new MetricRegistry();
+        List<SigningMember> members = IntStream.range(0, 5).mapToObj(i -> Utils.getMember(i)).map(
+        cpk -> new SigningMemberImpl(cpk)).map(e -> (SigningMember) e).toList();
+
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        RbcMetrics metrics = new RbcMetricsImpl(context.getId(), "test", registry);
+        members.forEach(m -> context.activate(m));
+
+        var exec = Executors.newVirtualThreadPerTaskExecutor();
+        final var prefix = UUID.randomUUID().toString();
+        final var authentication = ReliableBroadcaster.defaultMessageAdapter(context, DigestAlgorithm.DEFAULT);
+        messengers = members.stream().map(node -> {
+            var comms = new LocalServer(prefix, node, exec).router(ServerConnectionCache.newBuilder().setTarget(30),
+                                                                   exec);
+            communications.add(comms);
+            comms.start();
+            return new ReliableBroadcaster(context, node, parameters.build(), comms, metrics, authentication);
+        }).collect(Collectors.toList());
+
+        var max = Duration.ofMillis(200);
+        var cadences = new HashMap<ReliableBroadcaster, RecordingCadence>();
+        var scheduler = Executors.newScheduledThreadPool(2);
+        messengers.forEach(view -> {
+            var cadence = new RecordingCadence(Duration.ofMillis(5), max);
+            cadences.put(view, cadence);
+            view.start(cadence, scheduler);
+        });
+
+        // idle rounds stretch the interval to the maximum
+        assertTrue(await(() -> cadences.values().stream().allMatch(c -> c.interval().equals(max))),
+                   "Intervals not stretched: " + cadences.values().stream().map(c -> c.interval()).toList());
+        cadences.values().forEach(c -> assertTrue(c.stretched(), "Not stretched: " + c.rounds));
+        assertEquals(max.toMillis(), metrics.gossipCadence().getSnapshot().getMax());
+
+        // the rounds spreading a publication shrink the interval
+        var publisher = messengers.get(0);
+        var received = new CountDownLatch(messengers.size() - 1);
+        messengers.stream().filter(view -> view != publisher).forEach(view -> {
+            var once = new AtomicBoolean();
+            view.registerHandler((ctx, messages) -> {
+                if (once.compareAndSet(false, true)) {
+                    received.countDown();
+                }
+            });
+        });
+        publisher.publish(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8("cadence")).build());
+        assertTrue(received.await(30, TimeUnit.SECONDS), "Not received by: " + received.getCount() + " members");
+        var spreading = cadences.get(publisher);
+        assertTrue(await(spreading::shrunk), "Not shrunk: " + spreading.rounds);
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void eagerPush() throws Exception {
+        List<SigningMember> members = IntStream.range(0, 10).mapToObj(i -> Utils.getMember(i)).map(
+        cpk -> new SigningMemberImpl(cpk)).map(e -> (SigningMember) e).toList();
+
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(m -> context.activate(m));
+
+        var exec = Executors.newVirtualThreadPerTaskExecutor();
+        final var prefix = UUID.randomUUID().toString();
+        final var authentication = ReliableBroadcaster.defaultMessageAdapter(context, DigestAlgorithm.DEFAULT);
+        var eager = parameters.clone().setEagerPush(true).build();
+        messengers = members.stream().map(node -> {
+            var comms = new LocalServer(prefix, node, exec).router(ServerConnectionCache.newBuilder().setTarget(30),
+                                                                   exec);
+            communications.add(comms);
+            comms.start();
+            return new ReliableBroadcaster(context, node, eager, comms, null, authentication);
+        }).collect(Collectors.toList());
+
+        // gossip rounds so infrequent that only the eager push can deliver within the test
+        var scheduler = Executors.newScheduledThreadPool(1);
+        var cadence = new AdaptiveCadence(Duration.ofHours(1));
+        messengers.forEach(view -> view.start(cadence, scheduler));
+
+        var publisher = messengers.get(0);
+        var successors = new HashSet<Member>();
+        for (int ring = 0; ring < context.getRingCount(); ring++) {
+            successors.add(context.ring(ring).successor(publisher.getMember()));
+        }
+        var received = new CountDownLatch(successors.size());
+        messengers.stream().filter(view -> successors.contains(view.getMember())).forEach(
+        view -> view.registerHandler((ctx, messages) -> received.countDown()));
+
+        publisher.publish(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8("eager")).build());
+        assertTrue(received.await(30, TimeUnit.SECONDS), "Not pushed to: " + received.getCount() + " successors");
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void hasten() throws Exception {
+        List<SigningMember> members = IntStream.range(0, 5).mapToObj(i -> Utils.getMember(i)).map(
+        cpk -> new SigningMemberImpl(cpk)).map(e -> (SigningMember) e).toList();
+
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(m -> context.activate(m));
+
+        var exec = Executors.newVirtualThreadPerTaskExecutor();
+        final var prefix = UUID.randomUUID().toString();
+        final var authentication = ReliableBroadcaster.defaultMessageAdapter(context, DigestAlgorithm.DEFAULT);
+        messengers = members.stream().map(node -> {
+            var comms = new LocalServer(prefix, node, exec).router(ServerConnectionCache.newBuilder().setTarget(30),
+                                                                   exec);
+            communications.add(comms);
+            comms.start();
+            return new ReliableBroadcaster(context, node, parameters.build(), comms, null, authentication);
+        }).collect(Collectors.toList());
+
+        // a single idle round stretches the interval to an hour
+        var max = Duration.ofHours(1);
+        var cadences = new ArrayList<AdaptiveCadence>();
+        var scheduler = Executors.newScheduledThreadPool(2);
+        messengers.forEach(view -> {
+            var cadence = new AdaptiveCadence(Duration.ofMillis(10), max, 1_000_000.0, 0.5);
+            cadences.add(cadence);
+            view.start(cadence, scheduler);
+        });
+        assertTrue(await(() -> cadences.stream().allMatch(c -> c.interval().equals(max))),
+                   "Intervals not stretched: " + cadences.stream().map(c -> c.interval()).toList());
+
+        // publishing brings the publisher's pending round forward from an hour away
+        var received = new CountDownLatch(1);
+        messengers.subList(1, messengers.size()).forEach(view -> view.registerHandler((ctx, messages) -> {
+            received.countDown();
+        }));
+        messengers.get(0).publish(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8("hasten")).build());
+        assertTrue(received.await(30, TimeUnit.SECONDS), "Publication not hastened");
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void simulated() throws Exception {
+        List<SigningMember> members = IntStream.range(0, 5).mapToObj(i -> Utils.getMember(i)).map(
+        cpk -> new SigningMemberImpl(cpk)).map(e -> (SigningMember) e).toList();
+
+        Context<Member> context = Context.newBuilder().setCardinality(members.size()).build();
+        members.forEach(m -> context.activate(m));
+
+        var network = SimulatedNetwork.newBuilder()
+                                      .setDefaultLink(SimulatedNetwork.LinkParameters.of(Duration.ofMillis(20)))
+                                      .setSettle(Duration.ofMillis(5))
+                                      .build();
+        var exec = Executors.newVirtualThreadPerTaskExecutor();
+        final var prefix = UUID.randomUUID().toString();
+        final var authentication = ReliableBroadcaster.defaultMessageAdapter(context, DigestAlgorithm.DEFAULT);
+        messengers = members.stream().map(node -> {
+            var comms = new SimulatedServer(prefix, node, exec, network).router(
+            ServerConnectionCache.newBuilder().setTarget(30), exec);
+            communications.add(comms);
+            comms.start();
+            return new ReliableBroadcaster(context, node, parameters.build(), comms, null, authentication);
+        }).collect(Collectors.toList());
+
+        // gossip rounds a minute apart elapse in virtual time
+        var scheduler = network.scheduler();
+        network.start();
+        messengers.forEach(view -> view.start(Duration.ofMinutes(1), scheduler));
+
+        var received = new CountDownLatch(messengers.size() - 1);
+        messengers.subList(1, messengers.size()).forEach(view -> {
+            var once = new AtomicBoolean();
+            view.registerHandler((ctx, messages) -> {
+                if (once.compareAndSet(false, true)) {
+                    received.countDown();
+                }
+            });
+        });
+        messengers.get(0).publish(ByteMessage.newBuilder().setContents(ByteString.copyFromUtf8("simulated")).build());
+        try {
+            // far sooner than a single round would take in real time
+            assertTrue(received.await(30, TimeUnit.SECONDS), "Not delivered to: " + received.getCount() + " members");
+        } finally {
+            scheduler.shutdownNow();
+            network.stop();
+        }
+    }
+
+    private boolean await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 30_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
     class Receiver implements ReliableBroadcaster.MessageHandler {
         final Set<Digest>                     counted = Collections.newSetFromMap(new ConcurrentHashMap<>());
         final AtomicInteger                   current;
@@ -180,4 +376,37 @@ public class RbcTest {
             counted.clear();
         }
     }
+
+    /**
+     * Records the volume of each gossip round and the interval before and after it. Publication holds the interval,
+     * rather than returning it to the minimum, so that the shrinking of the rounds spreading a publication is observable
+     */
+    static class RecordingCadence extends AdaptiveCadence {
+        final List<long[]> rounds = new CopyOnWriteArrayList<>();
+
+        RecordingCadence(Duration min, Duration max) {
+            super(min, max, 2.0, 0.5);
+        }
+
+        @Override
+        public Duration pulse() {
+            return interval();
+        }
+
+        @Override
+        public synchronized Duration round(long volume) {
+            var before = interval().toNanos();
+            var after = super.round(volume);
+            rounds.add(new long[] { volume, before, after.toNanos() });
+            return after;
+        }
+
+        boolean shrunk() {
+            return rounds.stream().anyMatch(r -> r[0] > 0 && r[2] < r[1]);
+        }
+
+        boolean stretched() {
+            return rounds.stream().anyMatch(r -> r[0] == 0 && r[2] > r[1]);
+        }
+    }
 }